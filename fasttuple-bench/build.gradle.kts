@@ -19,4 +19,7 @@ application {
 
 tasks.shadowJar {
     archiveFileName.set("microbenchmarks.jar")
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
 }
\ No newline at end of file
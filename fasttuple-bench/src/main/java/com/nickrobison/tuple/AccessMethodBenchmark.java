@@ -20,7 +20,9 @@ import java.util.concurrent.BlockingQueue;
 
 @State(Scope.Benchmark)
 public class AccessMethodBenchmark {
+    private static final int BLOCK_SIZE = 1024;
     private DirectTupleSchema schema;
+    private DirectTupleSchema arenaSchema;
     private BlockingQueue<Container> containers;
     private PoolSettings<Container> poolSettings = new PoolSettings<>(
             new PoolableObjectBase<Container>() {
@@ -41,6 +43,11 @@ public class AccessMethodBenchmark {
     TuplePool<Container> pool3;
     ObjectPool<Container> pool;
     long record2;
+    long block;
+    TupleCursor cursor;
+    TupleField.LongField handleA;
+    TupleField.IntField handleB;
+    TupleField.ShortField handleC;
     Field fieldA;
     Field fieldB;
     Field fieldC;
@@ -62,7 +69,20 @@ public class AccessMethodBenchmark {
                     implementInterface(StaticBinding.class).
                     directMemory().
                     build();
+            arenaSchema = TupleSchema.builder().
+                    addField("a", Long.TYPE).
+                    addField("b", Integer.TYPE).
+                    addField("c", Short.TYPE).
+                    implementInterface(StaticBinding.class).
+                    directMemory().
+                    arenaAllocator(1024).
+                    build();
             record2 = schema.createRecord();
+            block = schema.createRecordArray(BLOCK_SIZE);
+            cursor = schema.cursor(block, BLOCK_SIZE);
+            handleA = schema.longField("a");
+            handleB = schema.intField("b");
+            handleC = schema.shortField("c");
             poolSettings.min(1).max(10);
             pool = poolSettings.pool();
             pool2 = new FastObjectPool<>(() -> new Container(0, 0, (short) 0), 10);
@@ -106,6 +126,18 @@ public class AccessMethodBenchmark {
         return r;
     }
 
+    @Benchmark
+    public long testArenaAllocateSetAndDeallocate() {
+        long record = arenaSchema.createRecord();
+        arenaSchema.setLong(record, 0, 100);
+        arenaSchema.setInt(record, 1, 200);
+        arenaSchema.setShort(record, 2, (short)300);
+
+        long r = arenaSchema.getLong(record, 0) + arenaSchema.getInt(record, 1) + arenaSchema.getShort(record, 2);
+        arenaSchema.destroy(record);
+        return r;
+    }
+
     @Benchmark
     public long testOffheapSchemaSet() {
         schema.setLong(record2, 0, 100);
@@ -241,6 +273,30 @@ public long testOffheapAllocateAndSet() {
         return tuple.getLong(1) + tuple.getInt(2) + tuple.getShort(3);
     }
 
+    @Benchmark
+    public long testFastTupleFieldHandles() {
+        FastTuple tuple = schema.createTuple(record2);
+        handleA.set(tuple, 100L);
+        handleB.set(tuple, 200);
+        handleC.set(tuple, (short) 300);
+        return handleA.get(tuple) + handleB.get(tuple) + handleC.get(tuple);
+    }
+
+    /**
+     * Re-points a single flyweight at each record of a block, which compares the Unsafe and FFM backends of
+     * the generated accessors on a hot loop.
+     */
+    @Benchmark
+    public long testFastTupleCursorScan() {
+        final StaticBinding tuple = cursor.tuple(StaticBinding.class);
+        long sum = 0;
+        cursor.reset();
+        while (cursor.next()) {
+            sum += tuple.a() + tuple.b() + tuple.c();
+        }
+        return sum;
+    }
+
     @Benchmark
     public long testFastTupleStaticBinding() {
         StaticBinding tuple = (StaticBinding) schema.createTuple(record2);
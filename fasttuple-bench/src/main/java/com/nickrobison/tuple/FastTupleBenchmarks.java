@@ -1,5 +1,7 @@
 package com.nickrobison.tuple;
 
+import com.nickrobison.tuple.codegen.FusedExpressionGenerator;
+import com.nickrobison.tuple.codegen.FusedTupleExpression;
 import com.nickrobison.tuple.codegen.TupleExpressionGenerator;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
@@ -16,10 +18,17 @@ public class FastTupleBenchmarks {
     @State(Scope.Benchmark)
     public static class DirectSchema {
         public DirectTupleSchema schema;
-        public TupleExpressionGenerator.TupleExpression eval1;
-        public TupleExpressionGenerator.LongTupleExpression eval2;
+        public TupleExpressionGenerator.DirectTupleExpression eval1;
+        public TupleExpressionGenerator.DirectLongTupleExpression eval2;
+        public TupleExpressionGenerator.DirectLongTupleExpression eval3;
+        public FusedTupleExpression fused;
         public ArrayDeque<FastTuple> deque;
         public FastTuple tuple;
+        public FastTuple[] tuples;
+        public long records;
+        public long[] out;
+        public long[] out2;
+        public Object[] columns;
 
         @Setup
         public void setup() throws Exception {
@@ -39,6 +48,15 @@ public class FastTupleBenchmarks {
                     expression("tuple.a() + tuple.b() + tuple.c()").
                     schema(schema).
                     returnLong();
+            eval3 = TupleExpressionGenerator.builder().
+                    expression("tuple.a() * tuple.b() - tuple.c()").
+                    schema(schema).
+                    returnLong();
+            fused = FusedExpressionGenerator.builder().
+                    schema(schema).
+                    expression("sum", "tuple.a() + tuple.b() + tuple.c()", Long.TYPE).
+                    expression("product", "tuple.a() * tuple.b() - tuple.c()", Long.TYPE).
+                    build();
 
             deque = new ArrayDeque<>();
             for (FastTuple tuple : schema.createTupleArray(10)) {
@@ -46,6 +64,11 @@ public class FastTupleBenchmarks {
             }
 
             tuple = schema.createTuple();
+            tuples = schema.createTupleArray(1024);
+            records = schema.createRecordArray(1024);
+            out = new long[1024];
+            out2 = new long[1024];
+            columns = new Object[]{out, out2};
         }
     }
 
@@ -193,6 +216,44 @@ public class FastTupleBenchmarks {
             return ds.eval2.evaluate(tuple);
         }
 
+        @Benchmark
+        public long measureDirectSchemaEvalAddress(DirectSchema ds) throws Exception {
+            return ds.eval2.evaluate(ds.records);
+        }
+
+        @Benchmark
+        public long[] measureDirectSchemaEvalLoop(DirectSchema ds) throws Exception {
+            for (int i = 0; i < ds.tuples.length; i++) {
+                ds.out[i] = ds.eval2.evaluate(ds.tuples[i]);
+            }
+            return ds.out;
+        }
+
+        @Benchmark
+        public long[] measureDirectSchemaEvalAll(DirectSchema ds) throws Exception {
+            ds.eval2.evaluateAll(ds.tuples, ds.out);
+            return ds.out;
+        }
+
+        @Benchmark
+        public long[] measureDirectSchemaEvalRange(DirectSchema ds) throws Exception {
+            ds.eval2.evaluateRange(ds.records, ds.out.length, ds.out);
+            return ds.out;
+        }
+
+        @Benchmark
+        public long[] measureDirectSchemaEvalAllSeparate(DirectSchema ds) throws Exception {
+            ds.eval2.evaluateAll(ds.tuples, ds.out);
+            ds.eval3.evaluateAll(ds.tuples, ds.out2);
+            return ds.out2;
+        }
+
+        @Benchmark
+        public Object[] measureDirectSchemaEvalAllFused(DirectSchema ds) throws Exception {
+            ds.fused.evaluateAll(ds.tuples, ds.columns);
+            return ds.columns;
+        }
+
         @Benchmark
         public long measureDirectSchemaPoolIface(DirectSchema ds) throws Exception {
             StaticBinding tuple = (StaticBinding)ds.schema.pool().checkout();
@@ -27,6 +27,59 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Java 22+ variants of selected classes, packaged into META-INF/versions/22 of a multi-release jar.
+// Currently this swaps the sun.misc.Unsafe based Coterie for one built on the Foreign Function & Memory API.
+val java22: SourceSet by sourceSets.creating {
+    java.srcDir("src/main/java22")
+}
+
+tasks.named<JavaCompile>(java22.compileJavaTaskName) {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(22))
+    })
+    options.release = 22
+}
+
+tasks.jar {
+    into("META-INF/versions/22") {
+        from(java22.output)
+    }
+    manifest {
+        attributes(
+            "Multi-Release" to "true",
+            // Keys the on-disk bytecode cache, so upgrades never load classes generated by another release
+            "Implementation-Version" to project.version
+        )
+    }
+}
+
+// Runs the test suite against the packaged jar, so that the Java 22 classes are actually exercised
+val multiReleaseTest by tasks.registering(Test::class) {
+    description = "Runs the tests against the multi-release jar."
+    group = "verification"
+    useJUnitPlatform()
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = files(tasks.jar) + sourceSets.test.get().runtimeClasspath - sourceSets.main.get().output
+    jvmArgs("--enable-native-access=ALL-UNNAMED")
+    onlyIf { javaLauncher.get().metadata.languageVersion.canCompileOrRun(22) }
+}
+
+// The default test run uses the oldest supported JDK, where generated classes can't be hidden classes
+val hiddenClassTest by tasks.registering(Test::class) {
+    description = "Runs the tests on Java 17, where generated classes are loaded as hidden classes."
+    group = "verification"
+    useJUnitPlatform()
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    })
+}
+
+tasks.check {
+    dependsOn(multiReleaseTest, hiddenClassTest)
+}
+
 val isRelease = !version.toString().endsWith("SNAPSHOT")
 
 publishing {
@@ -0,0 +1,109 @@
+package com.nickrobison.tuple;
+
+/**
+ * Bulk operations over off-heap columns, such as those created by {@link ColumnarTupleSchema#createColumns(long)}.
+ * Each column is addressed by the address of its first value, which must be packed with no padding between rows.
+ * <p>
+ * The fasttuple-vector module provides a SIMD implementation built on the incubating Vector API, which is picked up
+ * automatically via {@link java.util.ServiceLoader} when it is on the class or module path, the JVM is Java 22 or later and the
+ * jdk.incubator.vector module is available. Otherwise {@link #get()} falls back to plain scalar loops.
+ */
+public interface ColumnKernels {
+
+    /**
+     * Returns the best available implementation.
+     *
+     * @return - {@link ColumnKernels}
+     */
+    static ColumnKernels get() {
+        return ColumnKernelsHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the scalar implementation, regardless of what else is available.
+     *
+     * @return - {@link ColumnKernels}
+     */
+    static ColumnKernels scalar() {
+        return ScalarColumnKernels.INSTANCE;
+    }
+
+    /**
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - sum of every value in the column
+     */
+    long sumLong(long column, long rows);
+
+    /**
+     * Sums a double column. Vectorized implementations add the values in a different order to a sequential loop,
+     * so the result may differ in the last few bits.
+     *
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - sum of every value in the column
+     */
+    double sumDouble(long column, long rows);
+
+    /**
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - smallest value in the column, or {@link Long#MAX_VALUE} when it is empty
+     */
+    long minLong(long column, long rows);
+
+    /**
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - largest value in the column, or {@link Long#MIN_VALUE} when it is empty
+     */
+    long maxLong(long column, long rows);
+
+    /**
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - smallest value in the column, or {@link Double#POSITIVE_INFINITY} when it is empty
+     */
+    double minDouble(long column, long rows);
+
+    /**
+     * @param column - address of the column
+     * @param rows   - number of rows
+     * @return - largest value in the column, or {@link Double#NEGATIVE_INFINITY} when it is empty
+     */
+    double maxDouble(long column, long rows);
+
+    /**
+     * Writes the index of every row whose value lies within [min, max] into the selection vector.
+     *
+     * @param column    - address of the column
+     * @param rows      - number of rows
+     * @param min       - inclusive lower bound
+     * @param max       - inclusive upper bound
+     * @param selection - receives the matching row indexes, must hold at least rows elements
+     * @return - number of matching rows
+     */
+    int filterLongRange(long column, int rows, long min, long max, int[] selection);
+
+    /**
+     * Writes the index of every row whose value lies within [min, max] into the selection vector.
+     *
+     * @param column    - address of the column
+     * @param rows      - number of rows
+     * @param min       - inclusive lower bound
+     * @param max       - inclusive upper bound
+     * @param selection - receives the matching row indexes, must hold at least rows elements
+     * @return - number of matching rows
+     */
+    int filterDoubleRange(long column, int rows, double min, double max, int[] selection);
+
+    /**
+     * Computes y = a * x + y over two double columns, in place.
+     *
+     * @param a    - scalar multiplier
+     * @param x    - address of the x column
+     * @param y    - address of the y column, which is overwritten with the result
+     * @param rows - number of rows
+     */
+    void axpyDouble(double a, long x, long y, long rows);
+}
@@ -0,0 +1,26 @@
+package com.nickrobison.tuple;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Lazily resolves the {@link ColumnKernels} implementation the first time it is requested.
+ */
+final class ColumnKernelsHolder {
+    static final ColumnKernels INSTANCE = load();
+
+    private ColumnKernelsHolder() {
+        // Not used
+    }
+
+    private static ColumnKernels load() {
+        try {
+            for (ColumnKernels kernels : ServiceLoader.load(ColumnKernels.class, ColumnKernels.class.getClassLoader())) {
+                return kernels;
+            }
+        } catch (ServiceConfigurationError | LinkageError ex) {
+            // Provider is present, but cannot run on this JVM (e.g. jdk.incubator.vector has not been added)
+        }
+        return ScalarColumnKernels.INSTANCE;
+    }
+}
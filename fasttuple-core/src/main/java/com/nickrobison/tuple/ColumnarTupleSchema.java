@@ -0,0 +1,234 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.ColumnarTupleCodeGenerator;
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.unsafe.Coterie;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import static com.nickrobison.tuple.SizeOf.sizeOf;
+
+/**
+ * Stores each field of the schema in its own off-heap column, rather than packing whole records together.
+ * A set of columns is represented as a {@code long[]} of column base addresses, indexed by the 0-based field index.
+ * Scans which only touch a few fields then stream through contiguous memory for just those fields.
+ */
+public class ColumnarTupleSchema extends TupleSchema {
+    protected final int[] widths;
+    protected long columnsOffset;
+    protected TupleAllocatorGenerator.FlyweightAllocator allocator;
+
+    public static class Builder extends TupleSchema.Builder {
+
+        public Builder(TupleSchema.Builder builder) {
+            super(builder);
+        }
+
+        public ColumnarTupleSchema build() throws Exception {
+            return new ColumnarTupleSchema(this);
+        }
+    }
+
+    public ColumnarTupleSchema(Builder builder) throws Exception {
+        super(builder);
+        this.widths = new int[fieldNames.length];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = sizeOf(fieldTypes[i]);
+        }
+        generateClass();
+    }
+
+    public long getLong(long[] columns, long row, int index) {
+        return Coterie.getLong(columns[index] + row * widths[index]);
+    }
+
+    public int getInt(long[] columns, long row, int index) {
+        return Coterie.getInt(columns[index] + row * widths[index]);
+    }
+
+    public short getShort(long[] columns, long row, int index) {
+        return Coterie.getShort(columns[index] + row * widths[index]);
+    }
+
+    public char getChar(long[] columns, long row, int index) {
+        return Coterie.getChar(columns[index] + row * widths[index]);
+    }
+
+    public byte getByte(long[] columns, long row, int index) {
+        return Coterie.getByte(columns[index] + row * widths[index]);
+    }
+
+    public double getDouble(long[] columns, long row, int index) {
+        return Coterie.getDouble(columns[index] + row * widths[index]);
+    }
+
+    public float getFloat(long[] columns, long row, int index) {
+        return Coterie.getFloat(columns[index] + row * widths[index]);
+    }
+
+    public void setLong(long[] columns, long row, int index, long value) {
+        Coterie.putLong(columns[index] + row * widths[index], value);
+    }
+
+    public void setInt(long[] columns, long row, int index, int value) {
+        Coterie.putInt(columns[index] + row * widths[index], value);
+    }
+
+    public void setShort(long[] columns, long row, int index, short value) {
+        Coterie.putShort(columns[index] + row * widths[index], value);
+    }
+
+    public void setChar(long[] columns, long row, int index, char value) {
+        Coterie.putChar(columns[index] + row * widths[index], value);
+    }
+
+    public void setByte(long[] columns, long row, int index, byte value) {
+        Coterie.putByte(columns[index] + row * widths[index], value);
+    }
+
+    public void setFloat(long[] columns, long row, int index, float value) {
+        Coterie.putFloat(columns[index] + row * widths[index], value);
+    }
+
+    public void setDouble(long[] columns, long row, int index, double value) {
+        Coterie.putDouble(columns[index] + row * widths[index], value);
+    }
+
+    /**
+     * Returns the width, in bytes, of each column.
+     *
+     * @return - column widths indexed by the 0-based field index
+     */
+    public int[] getWidths() {
+        return widths.clone();
+    }
+
+    /**
+     * Allocates one off-heap column per field, each large enough to hold the given number of rows.
+     *
+     * @param rows - number of rows in each column
+     * @return - base address of each column, indexed by the 0-based field index
+     */
+    public long[] createColumns(long rows) {
+        long[] columns = new long[widths.length];
+        for (int i = 0; i < widths.length; i++) {
+            columns[i] = Coterie.allocateMemory(rows * widths[i]);
+        }
+        return columns;
+    }
+
+    /**
+     * Deallocates a set of columns created by {@link #createColumns(long)}.
+     *
+     * @param columns - column base addresses to free
+     */
+    public void destroyColumns(long[] columns) {
+        for (long column : columns) {
+            Coterie.freeMemory(column);
+        }
+    }
+
+    /**
+     * Creates a tuple which reads and writes the given row of a set of columns.
+     * The tuple does not own the columns, they must be freed separately.
+     *
+     * @param columns - column base addresses
+     * @param row     - 0-based row the tuple points at
+     * @return - {@link FastTuple}
+     */
+    public FastTuple createTuple(long[] columns, long row) {
+        FastTuple tuple = allocator.allocate();
+        Coterie.putObject(tuple, columnsOffset, columns);
+        allocator.moveTo(tuple, row);
+        return tuple;
+    }
+
+    /**
+     * Creates a cursor over the rows of a set of columns.
+     * The cursor re-uses a single tuple for every row, rather than allocating one per row.
+     *
+     * @param columns - column base addresses
+     * @param rows    - number of rows in the columns
+     * @return - {@link TupleCursor}
+     */
+    public TupleCursor cursor(long[] columns, long rows) {
+        return new TupleCursor(createTuple(columns, 0), allocator, 0, 1, rows);
+    }
+
+    @Override
+    public FastTuple createTuple() throws Exception {
+        return createTuple(createColumns(1), 0);
+    }
+
+    @Override
+    public <T> T createTypedTuple(Class<T> clazz) throws Exception {
+        return clazz.cast(createTuple());
+    }
+
+    @Override
+    public FastTuple[] createTupleArray(int size) throws Exception {
+        long[] columns = createColumns(size);
+        FastTuple[] tuples = new FastTuple[size];
+        for (int i = 0; i < size; i++) {
+            tuples[i] = createTuple(columns, i);
+        }
+        return tuples;
+    }
+
+    @Override
+    public <T> T[] createTypedTupleArray(Class<T> clazz, int size) throws Exception {
+        final long[] columns = createColumns(size);
+        @SuppressWarnings("unchecked")
+        T[] tuples = (T[]) Array.newInstance(clazz, size);
+        for (int i = 0; i < size; i++) {
+            tuples[i] = clazz.cast(createTuple(columns, i));
+        }
+        return tuples;
+    }
+
+    @Override
+    public void destroyTuple(FastTuple tuple) {
+        destroyColumns((long[]) Coterie.getObject(tuple, columnsOffset));
+    }
+
+    @Override
+    public <T> void destroyTypedTuple(T tuple) {
+        destroyTuple((FastTuple) tuple);
+    }
+
+    @Override
+    public void destroyTupleArray(FastTuple[] ary) {
+        destroyColumns((long[]) Coterie.getObject(ary[0], columnsOffset));
+    }
+
+    @Override
+    public <T> void destroyTypedTupleArray(T[] ary) {
+        destroyColumns((long[]) Coterie.getObject(ary[0], columnsOffset));
+    }
+
+    @Override
+    protected void generateClass() throws Exception {
+        if (this.clazz == null) {
+            this.allocator = (TupleAllocatorGenerator.FlyweightAllocator) internClass(widths, () -> {
+                final Class<?> generated = new ColumnarTupleCodeGenerator(iface, fieldNames, fieldTypes, widths).cookToClass();
+                return new TupleClassRegistry.Entry(generated, new TupleAllocatorGenerator(generated, ColumnarTupleCodeGenerator.ROW).createAllocator());
+            });
+            this.columnsOffset = Coterie.objectFieldOffset(clazz.getField(ColumnarTupleCodeGenerator.COLUMNS));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ColumnarTupleSchema)) return false;
+        if (!super.equals(o)) return false;
+        ColumnarTupleSchema that = (ColumnarTupleSchema) o;
+        return Arrays.equals(widths, that.widths);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(widths);
+    }
+}
@@ -0,0 +1,24 @@
+package com.nickrobison.tuple;
+
+/**
+ * A {@link TupleAggregator} generated for a {@link DirectTupleSchema}, which can also aggregate blocks of records
+ * without a tuple for each one.
+ */
+public abstract class DirectTupleAggregator extends TupleAggregator {
+
+    /**
+     * @param outputSchema   - {@link DirectTupleSchema} of the result rows
+     * @param expectedGroups - number of groups to size the table for up front
+     */
+    protected DirectTupleAggregator(DirectTupleSchema outputSchema, int expectedGroups) {
+        super(outputSchema, expectedGroups);
+    }
+
+    /**
+     * Adds every record in a block allocated by {@link DirectTupleSchema#createRecordArray(long)}.
+     *
+     * @param address - address of the first record
+     * @param count   - number of records
+     */
+    public abstract void addRange(long address, int count);
+}
@@ -2,9 +2,12 @@ package com.nickrobison.tuple;
 
 import com.nickrobison.tuple.codegen.DirectTupleCodeGenerator;
 import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.codegen.TupleBytecodeGenerator;
 import com.nickrobison.tuple.unsafe.Coterie;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -14,16 +17,23 @@ import static com.nickrobison.tuple.SizeOf.sizeOf;
  * Created by cliff on 5/9/14.
  */
 public class DirectTupleSchema extends TupleSchema {
+    // Size of the version word at the start of sequence locked records
+    private static final int VERSION_SIZE = 8;
     // layout is the mapping from the given logical index to an offset in the tuple
     protected final int[] layout;
     protected final int[] widths;
     protected int byteSize;
     protected long addressOffset;
     protected final int wordSize;
-    protected TupleAllocatorGenerator.TupleAllocator allocator;
+    protected TupleAllocatorGenerator.FlyweightAllocator allocator;
+    private final boolean sequenceLocked;
+    private final RecordArena.Depot arenaDepot;
+    private volatile ThreadLocal<RecordArena> arena;
 
     public static class Builder extends TupleSchema.Builder {
         protected int wordSize = 8;
+        protected int arenaSlabSize = 0;
+        protected boolean sequenceLocked = false;
 
         public Builder(TupleSchema.Builder builder) {
             super(builder);
@@ -42,6 +52,37 @@ public class DirectTupleSchema extends TupleSchema {
             return this;
         }
 
+        /**
+         * Allocates individual records out of large slabs, rather than calling malloc for each one.
+         * Each thread carves records from its own arena and destroyed records are recycled through a free list,
+         * so {@link DirectTupleSchema#createRecord()} and {@link DirectTupleSchema#destroy(long)} avoid the system allocator
+         * on the fast path. Records may be destroyed on a different thread to the one which created them, freed records
+         * are handed back to allocating threads in batches of {@code recordsPerSlab}. Slab memory is only returned by {@link DirectTupleSchema#destroyArena()}, once no thread
+         * is using the arena.
+         *
+         * @param recordsPerSlab - number of records to carve out of each slab
+         * @return - {@link Builder}
+         */
+        public Builder arenaAllocator(int recordsPerSlab) {
+            if (recordsPerSlab <= 0) {
+                throw new IllegalArgumentException("Arena slabs must hold at least one record");
+            }
+            this.arenaSlabSize = recordsPerSlab;
+            return this;
+        }
+
+        /**
+         * Reserves a version word at the start of each record and makes the generated tuples implement
+         * {@link SequenceLock}, so readers can take consistent snapshots of records updated by another thread.
+         * The fields follow the version word, so the layout differs from that of an unlocked schema.
+         *
+         * @return - {@link Builder}
+         */
+        public Builder sequenceLocked() {
+            this.sequenceLocked = true;
+            return this;
+        }
+
         public DirectTupleSchema build() throws Exception {
             return new DirectTupleSchema(this);
         }
@@ -53,8 +94,16 @@ public class DirectTupleSchema extends TupleSchema {
         this.layout = new int[size];
         this.widths = new int[size];
         this.wordSize = builder.wordSize;
+        this.sequenceLocked = builder.sequenceLocked;
         generateLayout();
         generateClass();
+        if (builder.arenaSlabSize > 0) {
+            this.arenaDepot = new RecordArena.Depot(byteSize, builder.arenaSlabSize, wordSize);
+            this.arena = newArena();
+        } else {
+            this.arenaDepot = null;
+            this.arena = null;
+        }
     }
 
     public long getLong(long address, int index) {
@@ -121,18 +170,96 @@ public class DirectTupleSchema extends TupleSchema {
         return byteSize;
     }
 
+    /**
+     * @return - true if records start with a version word, see {@link Builder#sequenceLocked()}
+     */
+    public boolean isSequenceLocked() {
+        return sequenceLocked;
+    }
+
     public FastTuple createTuple(long address) {
         FastTuple tuple = allocator.allocate();
-        Coterie.putLong(tuple, addressOffset, address);
+        allocator.moveTo(tuple, address);
         return tuple;
     }
 
+    /**
+     * Allocates a single record. If the schema was built with {@link Builder#arenaAllocator(int)} the record is
+     * carved out of the calling thread's arena, otherwise it is allocated directly.
+     * Records must be released with {@link #destroy(long)}.
+     * The version word of a sequence locked record starts out at zero, the rest of the record is uninitialized.
+     *
+     * @return - address of the record
+     */
     public long createRecord() {
-        return Coterie.allocateMemory(byteSize);
+        final long address = arena != null ? arena.get().allocate() : Coterie.allocateMemory(byteSize);
+        if (sequenceLocked) {
+            // Neither malloc nor the arena's free list leave a stable version behind
+            Coterie.putLong(address, 0L);
+        }
+        return address;
     }
 
+    /**
+     * Allocates a contiguous block of records. The records of a sequence locked schema are zeroed, so that each
+     * starts out with a stable version, otherwise the block is uninitialized.
+     * Blocks must be released with {@link #destroyRecordArray(long)}.
+     *
+     * @param size - number of records in the block
+     * @return - address of the first record
+     */
     public long createRecordArray(long size) {
-        return Coterie.allocateMemory(size * byteSize);
+        final long address = Coterie.allocateMemory(size * byteSize);
+        if (sequenceLocked) {
+            Coterie.setMemory(address, size * byteSize, (byte) 0);
+        }
+        return address;
+    }
+
+    /**
+     * Creates a cursor over a block of records allocated by {@link #createRecordArray(long)}.
+     * The cursor re-uses a single tuple for every record, rather than allocating one per record.
+     *
+     * @param address - address of the first record
+     * @param size    - number of records in the block
+     * @return - {@link TupleCursor}
+     */
+    public TupleCursor cursor(long address, long size) {
+        return new TupleCursor(allocator.allocate(), allocator, address, byteSize, size);
+    }
+
+    /**
+     * Maps an array of records onto a file, creating or extending the file as necessary.
+     * Records written to the store are persisted in the file, so re-mapping the same file with an
+     * identical schema makes them available again without having to repopulate them.
+     *
+     * @param path - file to map
+     * @param size - number of records in the array
+     * @return - {@link MappedRecordStore} which must be closed to release the mapping
+     * @throws IOException - if the file cannot be opened or mapped
+     */
+    public MappedRecordStore mapRecordArray(Path path, long size) throws IOException {
+        return new MappedRecordStore(this, path, size);
+    }
+
+    /**
+     * Creates a ring buffer of records for passing tuples from a single producer thread to a single consumer thread.
+     *
+     * @param capacity - number of slots, which must be a power of two
+     * @return - {@link TupleRing} which must be closed to release its memory
+     */
+    public TupleRing createRing(int capacity) {
+        return new TupleRing(this, allocator, capacity, false);
+    }
+
+    /**
+     * Creates a ring buffer of records for passing tuples from several producer threads to a single consumer thread.
+     *
+     * @param capacity - number of slots, which must be a power of two
+     * @return - {@link TupleRing} which must be closed to release its memory
+     */
+    public TupleRing createMultiProducerRing(int capacity) {
+        return new TupleRing(this, allocator, capacity, true);
     }
 
     @Override
@@ -169,8 +296,8 @@ public class DirectTupleSchema extends TupleSchema {
 
     @Override
     public void destroyTuple(FastTuple tuple) {
-        long address = Coterie.getLong(tuple, addressOffset);
-        Coterie.freeMemory(address);
+        long address = allocator.position(tuple);
+        release(address);
     }
 
     @Override
@@ -180,39 +307,128 @@ public class DirectTupleSchema extends TupleSchema {
 
     @Override
     public void destroyTupleArray(FastTuple[] ary) {
-        long address = Coterie.getLong(ary[0], addressOffset);
+        long address = allocator.position(ary[0]);
         Coterie.freeMemory(address);
     }
 
     @Override
     public <T> void destroyTypedTupleArray(T[] ary) {
-        long address = Coterie.getLong(ary[0], addressOffset);
+        long address = allocator.position((FastTuple) ary[0]);
         Coterie.freeMemory(address);
     }
 
     public void destroy(FastTuple tuple) {
         if (clazz.isInstance(tuple)) {
-            long address = Coterie.getLong(tuple, addressOffset);
-            destroy(address);
+            long address = allocator.position(tuple);
+            release(address);
         }
     }
 
+    /**
+     * Deallocates a single record created by {@link #createRecord()}.
+     * Arena records are returned to the calling thread's free list rather than to the system allocator.
+     *
+     * @param address - address of the record
+     */
     public void destroy(long address) {
+        if (arena != null) {
+            arena.get().free(address);
+        } else {
+            Coterie.freeMemory(address);
+        }
+    }
+
+    /**
+     * Tuples may point at records which did not come from the arena, such as a tuple created over a record array,
+     * so only records carved out of a slab are recycled.
+     */
+    private void release(long address) {
+        if (arena != null && arenaDepot.owns(address)) {
+            arena.get().free(address);
+        } else {
+            Coterie.freeMemory(address);
+        }
+    }
+
+    /**
+     * Deallocates a block of records created by {@link #createRecordArray(long)}.
+     *
+     * @param address - address of the first record
+     */
+    public void destroyRecordArray(long address) {
         Coterie.freeMemory(address);
     }
 
+    /**
+     * Releases every slab allocated by the arena, invalidating all records created through it.
+     * Subsequent calls to {@link #createRecord()} start from fresh slabs.
+     * <p>
+     * The arenas are not locked, so every thread must have stopped creating and destroying records of this schema
+     * before calling this method, and must not touch any of the released records afterwards. Allocating concurrently
+     * would carve records out of a slab after it has been freed.
+     */
+    public void destroyArena() {
+        if (arenaDepot == null) {
+            return;
+        }
+        arena = newArena();
+        arenaDepot.release();
+    }
+
+    private ThreadLocal<RecordArena> newArena() {
+        return ThreadLocal.withInitial(() -> new RecordArena(arenaDepot));
+    }
+
     @Override
     protected void generateClass() throws Exception {
         if (this.clazz == null) {
-            this.clazz = new DirectTupleCodeGenerator(iface, fieldNames, fieldTypes, layout).cookToClass();
+            // The version word is part of the layout the generated class depends on
+            final int[] classLayout = sequenceLocked ? lockedLayout() : layout;
+            // Every allocator of a direct tuple re-points it at a record
+            this.allocator = (TupleAllocatorGenerator.FlyweightAllocator) internClass(classLayout, () -> {
+                final Class<?> pregenerated = sequenceLocked ? null : PregeneratedTuples.find(iface, PregeneratedTuples.DIRECT, fieldNames, fieldTypes, layout);
+                if (pregenerated != null) {
+                    return new TupleClassRegistry.Entry(pregenerated,
+                            TupleAllocatorGenerator.flyweight(PregeneratedTuples.allocator(pregenerated), pregenerated, "address"));
+                }
+                if (TupleBytecodeGenerator.isEnabled()) {
+                    final TupleBytecodeGenerator generator = new TupleBytecodeGenerator(iface, fieldNames, fieldTypes, layout, sequenceLocked);
+                    return new TupleClassRegistry.Entry(generator.generateClass(), generator.createAllocator());
+                }
+                final Class<?> generated = new DirectTupleCodeGenerator(iface, fieldNames, fieldTypes, layout, sequenceLocked).cookToClass();
+                return new TupleClassRegistry.Entry(generated, new TupleAllocatorGenerator(generated, "address").createAllocator());
+            });
             this.addressOffset = Coterie.objectFieldOffset(clazz.getField("address"));
-            TupleAllocatorGenerator generator = new TupleAllocatorGenerator(clazz);
-            this.allocator = generator.createAllocator();
         }
     }
 
     protected void generateLayout() {
-        Member[] members = new Member[fieldNames.length];
+        byteSize = generateLayout(fieldTypes, wordSize, layout, widths);
+        if (sequenceLocked) {
+            for (int i = 0; i < layout.length; i++) {
+                layout[i] += VERSION_SIZE;
+            }
+            byteSize = ((byteSize + VERSION_SIZE + wordSize - 1) / wordSize) * wordSize;
+        }
+    }
+
+    private int[] lockedLayout() {
+        final int[] locked = Arrays.copyOf(layout, layout.length + 1);
+        locked[layout.length] = 0;
+        return locked;
+    }
+
+    /**
+     * Packs the fields into a record, largest first, and pads the record out to a multiple of the word size.
+     *
+     * @param fieldTypes - types of each field
+     * @param wordSize   - word size to pad each record to
+     * @param layout     - populated with the offset of each field within the record
+     * @param widths     - populated with the size of each field
+     * @return - size of each record, in bytes
+     */
+    static int generateLayout(Class<?>[] fieldTypes, int wordSize, int[] layout, int[] widths) {
+        Member[] members = new Member[fieldTypes.length];
         for (int i = 0; i < members.length; i++) {
             members[i] = new Member(i, sizeOf(fieldTypes[i]));
         }
@@ -224,7 +440,7 @@ public class DirectTupleSchema extends TupleSchema {
             offset += m.size;
         }
         int padding = wordSize - (offset % wordSize);
-        byteSize = offset + padding;
+        return offset + padding;
     }
 
     @Override
@@ -236,6 +452,7 @@ public class DirectTupleSchema extends TupleSchema {
         return byteSize == that.byteSize &&
                 addressOffset == that.addressOffset &&
                 wordSize == that.wordSize &&
+                sequenceLocked == that.sequenceLocked &&
                 Arrays.equals(layout, that.layout) &&
                 Arrays.equals(widths, that.widths) &&
                 Objects.equals(allocator, that.allocator);
@@ -244,7 +461,7 @@ public class DirectTupleSchema extends TupleSchema {
     @Override
     public int hashCode() {
 
-        int result = Objects.hash(super.hashCode(), byteSize, addressOffset, wordSize, allocator);
+        int result = Objects.hash(super.hashCode(), byteSize, addressOffset, wordSize, sequenceLocked, allocator);
         result = 31 * result + Arrays.hashCode(layout);
         result = 31 * result + Arrays.hashCode(widths);
         return result;
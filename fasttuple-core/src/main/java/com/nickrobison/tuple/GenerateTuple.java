@@ -0,0 +1,22 @@
+package com.nickrobison.tuple;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a tuple interface for build time code generation by the fasttuple-processor annotation processor.
+ * <p>
+ * Each getter on the interface, a no argument method returning a primitive, declares a field, in declaration order.
+ * Setters take a single value of the same type and return void. The processor emits heap and direct tuple classes
+ * implementing the interface, their allocators, and a {@code <Interface>TupleSchemas} class whose builder adds
+ * the fields in the right order. Schemas built with {@link TupleSchema.Builder#implementInterface(Class)} and a
+ * matching field list then load those classes, rather than compiling new ones at runtime.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GenerateTuple {
+}
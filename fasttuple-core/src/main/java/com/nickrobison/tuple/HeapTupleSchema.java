@@ -2,6 +2,7 @@ package com.nickrobison.tuple;
 
 import com.nickrobison.tuple.codegen.HeapTupleCodeGenerator;
 import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.codegen.TupleBytecodeGenerator;
 
 import java.lang.reflect.Array;
 
@@ -29,8 +30,18 @@ public class HeapTupleSchema extends TupleSchema {
 
     @Override
     protected void generateClass() throws Exception {
-        this.clazz = new HeapTupleCodeGenerator(iface, fieldNames, fieldTypes).cookToClass();
-        this.allocator = new TupleAllocatorGenerator(clazz).createAllocator();
+        this.allocator = internClass(null, () -> {
+            final Class<?> pregenerated = PregeneratedTuples.find(iface, PregeneratedTuples.HEAP, fieldNames, fieldTypes, null);
+            if (pregenerated != null) {
+                return new TupleClassRegistry.Entry(pregenerated, PregeneratedTuples.allocator(pregenerated));
+            }
+            if (TupleBytecodeGenerator.isEnabled()) {
+                final TupleBytecodeGenerator generator = new TupleBytecodeGenerator(iface, fieldNames, fieldTypes, null);
+                return new TupleClassRegistry.Entry(generator.generateClass(), generator.createAllocator());
+            }
+            final Class<?> generated = new HeapTupleCodeGenerator(iface, fieldNames, fieldTypes).cookToClass();
+            return new TupleClassRegistry.Entry(generated, new TupleAllocatorGenerator(generated).createAllocator());
+        });
     }
 
     @Override
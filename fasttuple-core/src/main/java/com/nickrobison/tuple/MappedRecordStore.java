@@ -0,0 +1,213 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An array of records, laid out according to a {@link DirectTupleSchema}, which lives in a memory mapped file.
+ * Records survive restarts of the JVM, and are paged in and out by the operating system rather than being
+ * held on the heap or in malloc'd memory.
+ * <p>
+ * A single mapping is limited to 2GB, so larger stores are split across several mappings.
+ * Records never straddle two mappings, which means every record address is valid for {@link DirectTupleSchema#getByteSize()} bytes.
+ * <p>
+ * The file starts with a header recording the record size and a fingerprint of the schema's fields and layout,
+ * which is checked whenever the file is re-mapped, so a file is never silently read through a different schema.
+ * The records follow the header, which is a page long so they keep the alignment of the mapping.
+ * <p>
+ * Tuples created from this store must never be passed to {@link DirectTupleSchema#destroy(FastTuple)},
+ * the memory is released by {@link #close()}.
+ * <p>
+ * Records may be read and written from any number of threads, but the store must not be closed while any of them
+ * may still touch a record. Closing only stops the store from handing out further addresses, it cannot stop a
+ * thread which already holds one from touching the unmapped memory, which crashes the JVM. {@link #force()} and
+ * {@link #close()} are serialized, so forcing the store never races with its mappings being unmapped.
+ */
+public class MappedRecordStore implements Closeable {
+    private static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+    static final long MAGIC = 0x4654524543530001L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4096;
+
+    private final DirectTupleSchema schema;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] mappings;
+    private final long[] addresses;
+    private final long recordsPerMapping;
+    private final long size;
+    private volatile boolean closed = false;
+
+    MappedRecordStore(DirectTupleSchema schema, Path path, long size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Store must contain at least one record");
+        }
+        this.schema = schema;
+        this.size = size;
+        final long byteSize = schema.getByteSize();
+        this.recordsPerMapping = MAX_MAPPING_SIZE / byteSize;
+        final int count = (int) ((size + recordsPerMapping - 1) / recordsPerMapping);
+        this.mappings = new MappedByteBuffer[count];
+        this.addresses = new long[count];
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            checkHeader(path);
+            for (int i = 0; i < count; i++) {
+                final long records = Math.min(recordsPerMapping, size - i * recordsPerMapping);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * recordsPerMapping * byteSize, records * byteSize);
+                addresses[i] = Coterie.getBufferAddress(mappings[i]);
+            }
+        } catch (IOException | RuntimeException ex) {
+            unmap();
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private void checkHeader(Path path) throws IOException {
+        final long fingerprint = fingerprint(schema);
+        final ByteBuffer header = ByteBuffer.allocate(24);
+        if (channel.size() == 0) {
+            header.putLong(MAGIC).putInt(VERSION).putInt(schema.getByteSize()).putLong(fingerprint).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return;
+        }
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(path + " is not a record store");
+            }
+        }
+        header.flip();
+        if (header.getLong() != MAGIC) {
+            throw new IOException(path + " is not a record store");
+        }
+        final int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(path + " has unsupported record store version " + version);
+        }
+        final int byteSize = header.getInt();
+        if (byteSize != schema.getByteSize() || header.getLong() != fingerprint) {
+            throw new IllegalArgumentException(path + " holds " + byteSize + " byte records of a different schema than " + schema);
+        }
+    }
+
+    /**
+     * Hashes the field names, types and offsets of the schema, which together determine how records are read.
+     */
+    static long fingerprint(DirectTupleSchema schema) {
+        final StringBuilder str = new StringBuilder();
+        final String[] names = schema.getFieldNames();
+        final Class<?>[] types = schema.getFieldTypes();
+        final int[] layout = schema.getLayout();
+        for (int i = 0; i < names.length; i++) {
+            str.append(names[i]).append(':').append(types[i].getName()).append('@').append(layout[i]).append(';');
+        }
+        str.append(schema.getByteSize());
+        // 64-bit FNV-1a, which unlike String#hashCode is wide enough to make collisions unlikely
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : str.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the address of the record at the given index.
+     *
+     * @param index - 0-based record index
+     * @return - address of the record
+     * @throws IllegalStateException - if the store has been closed
+     */
+    public long address(long index) {
+        checkOpen();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " is outside of store of size " + size);
+        }
+        return addresses[(int) (index / recordsPerMapping)] + (index % recordsPerMapping) * schema.getByteSize();
+    }
+
+    /**
+     * Creates a tuple pointing directly at the record at the given index.
+     *
+     * @param index - 0-based record index
+     * @return - {@link FastTuple} backed by the mapped file
+     * @throws IllegalStateException - if the store has been closed
+     */
+    public FastTuple createTuple(long index) {
+        return schema.createTuple(address(index));
+    }
+
+    /**
+     * Number of records in the store.
+     *
+     * @return - number of records
+     */
+    public long size() {
+        return size;
+    }
+
+    public DirectTupleSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Forces any changes to the records to be written to the underlying file.
+     */
+    public synchronized void force() {
+        checkOpen();
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    /**
+     * Forces any changes to the file, then unmaps it and closes the underlying channel. Any tuples or addresses
+     * handed out by this store are invalid after this call. The file is unmapped and closed even if forcing the
+     * changes fails.
+     *
+     * @throws IOException - if the channel cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            force();
+        } finally {
+            closed = true;
+            try {
+                unmap();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        // Touching an unmapped address crashes the JVM, rather than throwing. This catches use after close, but
+        // not a close racing with an access, which callers have to prevent
+        if (closed) {
+            throw new IllegalStateException("Record store has been closed");
+        }
+    }
+
+    private void unmap() {
+        for (int i = 0; i < mappings.length; i++) {
+            if (mappings[i] != null) {
+                Coterie.invokeCleaner(mappings[i]);
+                mappings[i] = null;
+            }
+        }
+    }
+}
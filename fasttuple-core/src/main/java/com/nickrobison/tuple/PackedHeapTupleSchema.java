@@ -0,0 +1,239 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.PackedHeapTupleCodeGenerator;
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.unsafe.Coterie;
+import com.nickrobison.tuple.unsafe.Slabs;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Stores records on the java heap, packed into a single byte[] slab using the same layout as {@link DirectTupleSchema}.
+ * Arrays of records avoid the per-object header and scattered placement of {@link HeapTupleSchema}, while remaining
+ * fully managed by the GC. Slabs are limited to 2GB.
+ */
+public class PackedHeapTupleSchema extends TupleSchema {
+    protected final int[] layout;
+    protected final int[] widths;
+    protected final int byteSize;
+    protected final int wordSize;
+    protected long slabOffset;
+    protected TupleAllocatorGenerator.FlyweightAllocator allocator;
+
+    public static class Builder extends TupleSchema.Builder {
+        protected int wordSize = 8;
+
+        public Builder(TupleSchema.Builder builder) {
+            super(builder);
+        }
+
+        /**
+         * Pads out the size of each individual record such that it fits within a multiple of the wordSize.
+         *
+         * @param wordSize - Word size to pad between tuples
+         * @return - {@link Builder}
+         */
+        public Builder padToWordSize(int wordSize) {
+            this.wordSize = wordSize;
+            return this;
+        }
+
+        public PackedHeapTupleSchema build() throws Exception {
+            return new PackedHeapTupleSchema(this);
+        }
+    }
+
+    public PackedHeapTupleSchema(Builder builder) throws Exception {
+        super(builder);
+        int size = fieldNames.length;
+        this.layout = new int[size];
+        this.widths = new int[size];
+        this.wordSize = builder.wordSize;
+        this.byteSize = DirectTupleSchema.generateLayout(fieldTypes, wordSize, layout, widths);
+        generateClass();
+    }
+
+    public long getLong(byte[] slab, long offset, int index) {
+        return Slabs.getLong(slab, offset + layout[index]);
+    }
+
+    public int getInt(byte[] slab, long offset, int index) {
+        return Slabs.getInt(slab, offset + layout[index]);
+    }
+
+    public short getShort(byte[] slab, long offset, int index) {
+        return Slabs.getShort(slab, offset + layout[index]);
+    }
+
+    public char getChar(byte[] slab, long offset, int index) {
+        return Slabs.getChar(slab, offset + layout[index]);
+    }
+
+    public byte getByte(byte[] slab, long offset, int index) {
+        return Slabs.getByte(slab, offset + layout[index]);
+    }
+
+    public double getDouble(byte[] slab, long offset, int index) {
+        return Slabs.getDouble(slab, offset + layout[index]);
+    }
+
+    public float getFloat(byte[] slab, long offset, int index) {
+        return Slabs.getFloat(slab, offset + layout[index]);
+    }
+
+    public void setLong(byte[] slab, long offset, int index, long value) {
+        Slabs.putLong(slab, offset + layout[index], value);
+    }
+
+    public void setInt(byte[] slab, long offset, int index, int value) {
+        Slabs.putInt(slab, offset + layout[index], value);
+    }
+
+    public void setShort(byte[] slab, long offset, int index, short value) {
+        Slabs.putShort(slab, offset + layout[index], value);
+    }
+
+    public void setChar(byte[] slab, long offset, int index, char value) {
+        Slabs.putChar(slab, offset + layout[index], value);
+    }
+
+    public void setByte(byte[] slab, long offset, int index, byte value) {
+        Slabs.putByte(slab, offset + layout[index], value);
+    }
+
+    public void setFloat(byte[] slab, long offset, int index, float value) {
+        Slabs.putFloat(slab, offset + layout[index], value);
+    }
+
+    public void setDouble(byte[] slab, long offset, int index, double value) {
+        Slabs.putDouble(slab, offset + layout[index], value);
+    }
+
+    public int[] getLayout() {
+        return layout.clone();
+    }
+
+    public int getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Allocates a slab large enough to hold the given number of records.
+     *
+     * @param size - number of records
+     * @return - byte[] slab
+     */
+    public byte[] createSlab(int size) {
+        long bytes = (long) size * byteSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Slab of " + size + " records exceeds the maximum array size");
+        }
+        return new byte[(int) bytes];
+    }
+
+    /**
+     * Creates a tuple pointing at a record within a slab.
+     *
+     * @param slab  - slab holding the record
+     * @param index - 0-based record index
+     * @return - {@link FastTuple}
+     */
+    public FastTuple createTuple(byte[] slab, int index) {
+        FastTuple tuple = allocator.allocate();
+        Coterie.putObject(tuple, slabOffset, slab);
+        allocator.moveTo(tuple, (long) index * byteSize);
+        return tuple;
+    }
+
+    /**
+     * Creates a cursor over every record in a slab.
+     * The cursor re-uses a single tuple for every record, so no objects are allocated per record.
+     *
+     * @param slab - slab created by {@link #createSlab(int)}
+     * @return - {@link TupleCursor}
+     */
+    public TupleCursor cursor(byte[] slab) {
+        return new TupleCursor(createTuple(slab, 0), allocator, 0, byteSize, slab.length / byteSize);
+    }
+
+    @Override
+    public FastTuple createTuple() throws Exception {
+        return createTuple(createSlab(1), 0);
+    }
+
+    @Override
+    public <T> T createTypedTuple(Class<T> clazz) throws Exception {
+        return clazz.cast(createTuple());
+    }
+
+    @Override
+    public FastTuple[] createTupleArray(int size) throws Exception {
+        byte[] slab = createSlab(size);
+        FastTuple[] tuples = new FastTuple[size];
+        for (int i = 0; i < size; i++) {
+            tuples[i] = createTuple(slab, i);
+        }
+        return tuples;
+    }
+
+    @Override
+    public <T> T[] createTypedTupleArray(Class<T> clazz, int size) throws Exception {
+        final byte[] slab = createSlab(size);
+        @SuppressWarnings("unchecked")
+        T[] tuples = (T[]) Array.newInstance(clazz, size);
+        for (int i = 0; i < size; i++) {
+            tuples[i] = clazz.cast(createTuple(slab, i));
+        }
+        return tuples;
+    }
+
+    @Override
+    public void destroyTuple(FastTuple tuple) {
+        //noop
+    }
+
+    @Override
+    public <T> void destroyTypedTuple(T tuple) {
+        //noop
+    }
+
+    @Override
+    public void destroyTupleArray(FastTuple[] ary) {
+        //noop
+    }
+
+    @Override
+    public <T> void destroyTypedTupleArray(T[] ary) {
+        //noop
+    }
+
+    @Override
+    protected void generateClass() throws Exception {
+        if (this.clazz == null) {
+            this.allocator = (TupleAllocatorGenerator.FlyweightAllocator) internClass(layout, () -> {
+                final Class<?> generated = new PackedHeapTupleCodeGenerator(iface, fieldNames, fieldTypes, layout).cookToClass();
+                return new TupleClassRegistry.Entry(generated, new TupleAllocatorGenerator(generated, "address").createAllocator());
+            });
+            this.slabOffset = Coterie.objectFieldOffset(clazz.getField(PackedHeapTupleCodeGenerator.SLAB));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedHeapTupleSchema)) return false;
+        if (!super.equals(o)) return false;
+        PackedHeapTupleSchema that = (PackedHeapTupleSchema) o;
+        return byteSize == that.byteSize &&
+                wordSize == that.wordSize &&
+                Arrays.equals(layout, that.layout);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * super.hashCode() + byteSize;
+        result = 31 * result + wordSize;
+        return 31 * result + Arrays.hashCode(layout);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Finds tuple classes generated at build time for interfaces annotated with {@link GenerateTuple}.
+ * <p>
+ * Generated classes are named after the binary name of the interface, with nested class separators replaced,
+ * e.g. {@code com.example.Outer$Point} becomes {@code com.example.Outer_PointHeapTuple}. They describe their own
+ * fields through static {@code $fieldNames()}, {@code $fieldTypes()} and, for direct tuples, {@code $layout()}
+ * methods, which must match the schema exactly for the class to be used.
+ */
+final class PregeneratedTuples {
+    static final String HEAP = "HeapTuple";
+    static final String DIRECT = "DirectTuple";
+    private static final String ALLOCATOR = "Allocator";
+
+    private PregeneratedTuples() {
+        // Not used
+    }
+
+    /**
+     * @param iface      - interface implemented by the schema, may be null
+     * @param kind       - {@link #HEAP} or {@link #DIRECT}
+     * @param fieldNames - field names of the schema
+     * @param fieldTypes - field types of the schema
+     * @param layout     - field offsets of a direct schema, or null for heap schemas
+     * @return - the generated tuple class, or null if there is no class matching the schema
+     */
+    static Class<?> find(Class<?> iface, String kind, String[] fieldNames, Class<?>[] fieldTypes, int[] layout) {
+        if (iface == null || !iface.isAnnotationPresent(GenerateTuple.class)) {
+            return null;
+        }
+        try {
+            final Class<?> clazz = Class.forName(className(iface, kind), true, iface.getClassLoader());
+            if (!Arrays.equals(fieldNames, (String[]) clazz.getMethod("$fieldNames").invoke(null))
+                    || !Arrays.equals(fieldTypes, (Class<?>[]) clazz.getMethod("$fieldTypes").invoke(null))) {
+                return null;
+            }
+            if (layout != null && !Arrays.equals(layout, (int[]) clazz.getMethod("$layout").invoke(null))) {
+                return null;
+            }
+            return clazz;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static TupleAllocatorGenerator.TupleAllocator allocator(Class<?> tupleClass) throws ReflectiveOperationException {
+        return (TupleAllocatorGenerator.TupleAllocator) Class.forName(tupleClass.getName() + ALLOCATOR, true, tupleClass.getClassLoader())
+                .getConstructor()
+                .newInstance();
+    }
+
+    static String className(Class<?> iface, String kind) {
+        final String name = iface.getName();
+        final int pkg = name.lastIndexOf('.') + 1;
+        return name.substring(0, pkg) + name.substring(pkg).replace('$', '_') + kind;
+    }
+}
@@ -0,0 +1,148 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Carves fixed size records out of large off-heap slabs. Allocation pops the head of an intrusive free list,
+ * threaded through the first word of each freed record, and otherwise bumps a pointer through the current slab.
+ * <p>
+ * An arena is not thread safe, {@link DirectTupleSchema} keeps one per thread. Freed records are cached in a pair of
+ * batches, each a slab's worth of records, in the same way {@link TuplePool} caches tuples in magazines. When both
+ * batches are full one of them is handed to the shared {@link Depot}, where an arena which has run out of freed
+ * records picks it up before carving out more of its slab. Records freed on a consumer thread therefore flow back to
+ * the producer, and each thread holds on to at most two batches of freed records and one partially used slab.
+ * <p>
+ * Slab bases are aligned to the schema's word size, so records padded to a cache line also start on one.
+ */
+final class RecordArena {
+    private final Depot depot;
+    private long freeList = 0;
+    private int freeCount = 0;
+    // A full batch of freed records, or 0
+    private long spare = 0;
+    private long next = 0;
+    private long limit = 0;
+
+    RecordArena(Depot depot) {
+        this.depot = depot;
+    }
+
+    long allocate() {
+        if (freeList == 0 && !refill()) {
+            if (next == limit) {
+                next = depot.allocateSlab();
+                limit = next + depot.slabSize;
+            }
+            final long address = next;
+            next += depot.recordSize;
+            return address;
+        }
+        final long address = freeList;
+        freeList = Coterie.getLong(address);
+        freeCount--;
+        return address;
+    }
+
+    void free(long address) {
+        if (freeCount == depot.batchSize) {
+            if (spare != 0) {
+                // Both batches are full, hand one off to the depot for an arena which has run dry
+                depot.batches.offer(spare);
+            }
+            spare = freeList;
+            freeList = 0;
+            freeCount = 0;
+        }
+        Coterie.putLong(address, freeList);
+        freeList = address;
+        freeCount++;
+    }
+
+    /**
+     * Refills the free list from the spare batch, or from the depot, neither of which allocate.
+     *
+     * @return - whether the free list now holds records
+     */
+    private boolean refill() {
+        long batch = spare;
+        if (batch != 0) {
+            spare = 0;
+        } else {
+            final Long full = depot.batches.poll();
+            if (full == null) {
+                return false;
+            }
+            batch = full;
+        }
+        freeList = batch;
+        freeCount = depot.batchSize;
+        return true;
+    }
+
+    /**
+     * State shared by every thread's arena for a schema: the slabs, so they can all be released together and
+     * recognised when a record is destroyed, and the batches of freed records waiting to be re-used.
+     */
+    static final class Depot {
+        private final long recordSize;
+        private final long slabSize;
+        private final long alignment;
+        private final int batchSize;
+        // Maps the first record of each slab to the address returned by malloc
+        private final ConcurrentNavigableMap<Long, Long> slabs = new ConcurrentSkipListMap<>();
+        private final Queue<Long> batches = new ConcurrentLinkedQueue<>();
+
+        /**
+         * @param byteSize       - size of each record
+         * @param recordsPerSlab - number of records carved out of each slab, which is also the size of each batch
+         * @param wordSize       - word size the records are padded to, whose largest power of two factor the slabs are aligned to
+         */
+        Depot(int byteSize, int recordsPerSlab, int wordSize) {
+            if (recordsPerSlab <= 0) {
+                throw new IllegalArgumentException("Arena slabs must hold at least one record");
+            }
+            // Each record needs to be able to hold a free list pointer, and stay word aligned
+            this.recordSize = (Math.max(byteSize, 8) + 7) & ~7L;
+            this.slabSize = recordSize * recordsPerSlab;
+            this.alignment = Math.max(Integer.lowestOneBit(wordSize), 8);
+            this.batchSize = recordsPerSlab;
+        }
+
+        /**
+         * @return - address of the first record of a new slab
+         */
+        private long allocateSlab() {
+            // Over-allocate so the first record can be moved up to the alignment, the base is kept to free the slab
+            final long base = Coterie.allocateMemory(slabSize + alignment - 8);
+            final long start = (base + alignment - 1) & -alignment;
+            slabs.put(start, base);
+            return start;
+        }
+
+        /**
+         * @param address - address of a record
+         * @return - whether the record was carved out of one of the slabs
+         */
+        boolean owns(long address) {
+            final Long start = slabs.floorKey(address);
+            return start != null && address < start + slabSize;
+        }
+
+        /**
+         * Frees every slab, along with any batches of records carved out of them.
+         */
+        void release() {
+            batches.clear();
+            Map.Entry<Long, Long> slab;
+            while ((slab = slabs.pollFirstEntry()) != null) {
+                Coterie.freeMemory(slab.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+
+/**
+ * Plain loop implementation of {@link ColumnKernels}, used when no vectorized implementation is available.
+ */
+final class ScalarColumnKernels implements ColumnKernels {
+    static final ScalarColumnKernels INSTANCE = new ScalarColumnKernels();
+
+    private ScalarColumnKernels() {
+        // Not used
+    }
+
+    @Override
+    public long sumLong(long column, long rows) {
+        long sum = 0;
+        for (long i = 0; i < rows; i++) {
+            sum += Coterie.getLong(column + i * 8);
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumDouble(long column, long rows) {
+        double sum = 0;
+        for (long i = 0; i < rows; i++) {
+            sum += Coterie.getDouble(column + i * 8);
+        }
+        return sum;
+    }
+
+    @Override
+    public long minLong(long column, long rows) {
+        long min = Long.MAX_VALUE;
+        for (long i = 0; i < rows; i++) {
+            min = Math.min(min, Coterie.getLong(column + i * 8));
+        }
+        return min;
+    }
+
+    @Override
+    public long maxLong(long column, long rows) {
+        long max = Long.MIN_VALUE;
+        for (long i = 0; i < rows; i++) {
+            max = Math.max(max, Coterie.getLong(column + i * 8));
+        }
+        return max;
+    }
+
+    @Override
+    public double minDouble(long column, long rows) {
+        double min = Double.POSITIVE_INFINITY;
+        for (long i = 0; i < rows; i++) {
+            min = Math.min(min, Coterie.getDouble(column + i * 8));
+        }
+        return min;
+    }
+
+    @Override
+    public double maxDouble(long column, long rows) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < rows; i++) {
+            max = Math.max(max, Coterie.getDouble(column + i * 8));
+        }
+        return max;
+    }
+
+    @Override
+    public int filterLongRange(long column, int rows, long min, long max, int[] selection) {
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            final long value = Coterie.getLong(column + i * 8L);
+            if (value >= min && value <= max) {
+                selection[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int filterDoubleRange(long column, int rows, double min, double max, int[] selection) {
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            final double value = Coterie.getDouble(column + i * 8L);
+            if (value >= min && value <= max) {
+                selection[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void axpyDouble(double a, long x, long y, long rows) {
+        for (long i = 0; i < rows; i++) {
+            final long offset = i * 8;
+            Coterie.putDouble(y + offset, a * Coterie.getDouble(x + offset) + Coterie.getDouble(y + offset));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.nickrobison.tuple;
+
+/**
+ * Implemented by the tuples of a {@link DirectTupleSchema} built with {@link DirectTupleSchema.Builder#sequenceLocked()},
+ * guarding each record with a version word so that readers can take consistent snapshots of several fields without
+ * blocking the writer.
+ * <p>
+ * A writer brackets its updates with {@link #beginWrite()} and {@link #commitWrite()}. A reader takes a stamp with
+ * {@link #beginRead()}, reads the fields it needs, and retries if {@link #validate(long)} reports that a write
+ * overlapped the reads:
+ * <pre>{@code
+ *     long stamp;
+ *     long bid;
+ *     long ask;
+ *     do {
+ *         stamp = quote.beginRead();
+ *         bid = quote.bid();
+ *         ask = quote.ask();
+ *     } while (!quote.validate(stamp));
+ * }</pre>
+ * Values read before a successful validation may be torn and must not be acted upon.
+ */
+public interface SequenceLock {
+
+    /**
+     * Marks the record as being written, waiting for any other writer to commit first.
+     *
+     * @return - the odd version of the record while it is being written
+     */
+    long beginWrite();
+
+    /**
+     * Publishes the writes made since {@link #beginWrite()}.
+     */
+    void commitWrite();
+
+    /**
+     * Waits until no write is in progress.
+     *
+     * @return - stamp to pass to {@link #validate(long)}
+     */
+    long beginRead();
+
+    /**
+     * @param stamp - stamp returned by {@link #beginRead()}
+     * @return - true if the record has not been written since the stamp was taken, so the values read are consistent
+     */
+    boolean validate(long stamp);
+}
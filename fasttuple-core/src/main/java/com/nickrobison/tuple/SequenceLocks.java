@@ -0,0 +1,50 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+
+/**
+ * Sequence lock operations on the version word of a record, at the address of the record itself.
+ * These back the {@link SequenceLock} methods of generated tuples, and can be used directly on the records
+ * of a sequence locked {@link DirectTupleSchema}, such as those of a record array or a cursor.
+ * <p>
+ * Even versions are stable and odd versions are being written. Writers claim the record by moving the version from
+ * even to odd with a compare and swap, so concurrent writers are serialized rather than corrupting each other's
+ * updates, although the lock is intended for a single writer.
+ */
+public final class SequenceLocks {
+
+    private SequenceLocks() {
+        // Not used
+    }
+
+    public static long beginWrite(long address) {
+        while (true) {
+            final long version = Coterie.getLongVolatile(address);
+            if ((version & 1) == 0 && Coterie.compareAndSwapLong(address, version, version + 1)) {
+                return version + 1;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public static void commitWrite(long address) {
+        // Release ordering keeps the field writes ahead of the new version
+        Coterie.putOrderedLong(address, Coterie.getLong(address) + 1);
+    }
+
+    public static long beginRead(long address) {
+        while (true) {
+            final long version = Coterie.getLongVolatile(address);
+            if ((version & 1) == 0) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public static boolean validate(long address, long stamp) {
+        // Keeps the field reads ahead of the version check
+        Coterie.loadFence();
+        return Coterie.getLongVolatile(address) == stamp;
+    }
+}
@@ -0,0 +1,193 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+
+import java.io.Closeable;
+
+/**
+ * Hash aggregation of tuples into an off-heap table of groups, one row per distinct key.
+ * Rows are records of a {@link DirectTupleSchema} holding the key fields followed by the aggregates.
+ * <p>
+ * This class owns the hash table, concrete subclasses are generated by
+ * {@link com.nickrobison.tuple.codegen.TupleAggregatorGenerator} and implement {@link #add(FastTuple)} for a
+ * particular input schema, with the key hashing, comparison and accumulation inlined into the probe loop.
+ * Every aggregator class therefore has its own copy of the loop, rather than sharing one whose calls into the
+ * generated code would see every aggregator in the process, and no key is ever boxed.
+ * The table uses open addressing with linear probing over a slot array, where each slot packs the full hash of a
+ * group alongside its row number. Probing therefore only compares keys of groups with an identical hash, and growing
+ * the table never needs to re-read the rows.
+ * <p>
+ * Aggregators are not thread safe and must be closed to release their memory.
+ */
+public abstract class TupleAggregator implements Closeable {
+    private static final int MAX_GROUPS = 1 << 28;
+    protected final DirectTupleSchema outputSchema;
+    protected final int rowSize;
+    private long rows;
+    private int rowCapacity;
+    private int size;
+    private long slots;
+    private int mask;
+    private boolean closed = false;
+
+    /**
+     * @param outputSchema   - {@link DirectTupleSchema} of the result rows
+     * @param expectedGroups - number of groups to size the table for up front
+     */
+    protected TupleAggregator(DirectTupleSchema outputSchema, int expectedGroups) {
+        if (expectedGroups <= 0 || expectedGroups > MAX_GROUPS) {
+            throw new IllegalArgumentException("Expected groups must be between 1 and " + MAX_GROUPS);
+        }
+        this.outputSchema = outputSchema;
+        this.rowSize = outputSchema.getByteSize();
+        this.rowCapacity = expectedGroups;
+        this.rows = Coterie.allocateMemory((long) rowCapacity * rowSize);
+        // Keep the table at most half full
+        final int slotCount = Integer.highestOneBit(expectedGroups * 2 - 1) << 1;
+        this.mask = slotCount - 1;
+        this.slots = allocateSlots(slotCount);
+    }
+
+    /**
+     * Adds a tuple to its group, creating the group if this is the first tuple with that key.
+     * <p>
+     * Implementations hash the key fields and {@link #mix(int)} the result, then probe from {@code hash & slotMask()}.
+     * An empty {@link #entry(int)} means the key is new, and {@link #newRow(int, int)} claims the slot for it.
+     * Otherwise, entries whose hash matches point to a {@link #rowAt(long)} whose keys have to be compared.
+     *
+     * @param input - tuple of the input schema
+     */
+    public abstract void add(FastTuple input);
+
+    /**
+     * Adds every tuple in the array.
+     *
+     * @param inputs - tuples of the input schema
+     */
+    public void addAll(FastTuple[] inputs) {
+        for (FastTuple input : inputs) {
+            add(input);
+        }
+    }
+
+    /**
+     * @return - number of groups
+     */
+    public int size() {
+        return size;
+    }
+
+    public DirectTupleSchema getOutputSchema() {
+        return outputSchema;
+    }
+
+    /**
+     * Creates a cursor over every group. The cursor is invalidated by adding any more tuples,
+     * as the rows may be moved when the table grows.
+     *
+     * @return - {@link TupleCursor} over tuples of the output schema
+     */
+    public TupleCursor cursor() {
+        return outputSchema.cursor(rows, size);
+    }
+
+    /**
+     * Removes every group, keeping the memory allocated for reuse.
+     */
+    public void clear() {
+        Coterie.setMemory(slots, (mask + 1L) * 8, (byte) 0);
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            Coterie.freeMemory(slots);
+            Coterie.freeMemory(rows);
+        }
+    }
+
+    /**
+     * @return - mask of the slot array, which only changes when a new row is added
+     */
+    protected final int slotMask() {
+        return mask;
+    }
+
+    /**
+     * @param slot - index of the slot
+     * @return - the full hash of the group in the upper half and its row number plus one in the lower, or 0 if empty
+     */
+    protected final long entry(int slot) {
+        return Coterie.getLong(slots + slot * 8L);
+    }
+
+    /**
+     * @param entry - non-empty slot entry
+     * @return - address of the row the entry points to
+     */
+    protected final long rowAt(long entry) {
+        return rows + ((int) entry - 1) * (long) rowSize;
+    }
+
+    /**
+     * Adds a row for a new group in an empty slot. The table may grow, so the mask and rows must be re-read after.
+     *
+     * @param slot - empty slot found by probing
+     * @param hash - mixed hash of the group
+     * @return - address of the row, whose keys and aggregates are uninitialized
+     */
+    protected final long newRow(int slot, int hash) {
+        if (size == rowCapacity) {
+            if (rowCapacity == MAX_GROUPS) {
+                throw new IllegalStateException("Aggregator cannot hold more than " + MAX_GROUPS + " groups");
+            }
+            rowCapacity = (int) Math.min(MAX_GROUPS, rowCapacity * 2L);
+            rows = Coterie.reallocateMemory(rows, (long) rowCapacity * rowSize);
+        }
+        final int index = size++;
+        Coterie.putLong(slots + slot * 8L, ((long) hash << 32) | (index + 1L));
+        if (size * 2L > mask + 1L) {
+            resize();
+        }
+        return rows + (long) index * rowSize;
+    }
+
+    private void resize() {
+        final int slotCount = (mask + 1) * 2;
+        final long resized = allocateSlots(slotCount);
+        final int resizedMask = slotCount - 1;
+        for (int i = 0; i <= mask; i++) {
+            final long entry = Coterie.getLong(slots + i * 8L);
+            if (entry != 0) {
+                int slot = (int) (entry >>> 32) & resizedMask;
+                while (Coterie.getLong(resized + slot * 8L) != 0) {
+                    slot = (slot + 1) & resizedMask;
+                }
+                Coterie.putLong(resized + slot * 8L, entry);
+            }
+        }
+        Coterie.freeMemory(slots);
+        slots = resized;
+        mask = resizedMask;
+    }
+
+    private static long allocateSlots(int count) {
+        final long address = Coterie.allocateMemory(count * 8L);
+        Coterie.setMemory(address, count * 8L, (byte) 0);
+        return address;
+    }
+
+    /**
+     * Finalizer from MurmurHash3, so that keys differing only in their high bits still spread across the table.
+     */
+    protected static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
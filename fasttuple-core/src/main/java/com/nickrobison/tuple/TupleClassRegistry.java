@@ -0,0 +1,137 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the generated tuple class and allocator of each distinct schema, so that building a schema equal to an
+ * existing one reuses its class instead of compiling another one.
+ * <p>
+ * Schemas hold their {@link Entry} strongly, while the registry only holds it weakly. Once every schema using
+ * a class has been collected, the entry is dropped and the class can be unloaded, once the other tuple classes
+ * sharing its loader are unreachable too.
+ * <p>
+ * Like the expression cache, generation happens outside of any lock, so two threads building the same schema
+ * concurrently may both generate a class, but only the first one is kept.
+ */
+final class TupleClassRegistry {
+    private static final ConcurrentMap<Key, EntryReference> entries = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Entry> collected = new ReferenceQueue<>();
+
+    private TupleClassRegistry() {
+        // Not used
+    }
+
+    interface Generator {
+        Entry generate() throws Exception;
+    }
+
+    static final class Entry {
+        final Class<?> tupleClass;
+        final TupleAllocatorGenerator.TupleAllocator allocator;
+
+        Entry(Class<?> tupleClass, TupleAllocatorGenerator.TupleAllocator allocator) {
+            this.tupleClass = tupleClass;
+            this.allocator = allocator;
+        }
+    }
+
+    /**
+     * @param key       - {@link Key} describing everything the generated class depends on
+     * @param generator - generates the class and allocator, if no equal schema has been built
+     * @return - the interned {@link Entry}
+     * @throws Exception - if the class cannot be generated
+     */
+    static Entry intern(Key key, Generator generator) throws Exception {
+        expunge();
+        final EntryReference existing = entries.get(key);
+        Entry entry = existing == null ? null : existing.get();
+        if (entry != null) {
+            return entry;
+        }
+        final Entry generated = generator.generate();
+        while (true) {
+            final EntryReference current = entries.putIfAbsent(key, new EntryReference(key, generated, collected));
+            if (current == null) {
+                return generated;
+            }
+            entry = current.get();
+            if (entry != null) {
+                return entry;
+            }
+            // Collected since the lookup, replace it with the new class
+            entries.remove(key, current);
+        }
+    }
+
+    static int size() {
+        expunge();
+        return entries.size();
+    }
+
+    static void clear() {
+        entries.clear();
+    }
+
+    private static void expunge() {
+        Reference<? extends Entry> reference;
+        while ((reference = collected.poll()) != null) {
+            final EntryReference entry = (EntryReference) reference;
+            entries.remove(entry.key, entry);
+        }
+    }
+
+    private static final class EntryReference extends WeakReference<Entry> {
+        private final Key key;
+
+        EntryReference(Key key, Entry entry, ReferenceQueue<Entry> queue) {
+            super(entry, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Identifies a generated class by the kind of schema, interface, fields and any layout the code depends on.
+     * <p>
+     * The interface is only weakly referenced, so a key waiting to be expunged does not keep the loader of a user
+     * interface alive. Once the interface has been collected, the key is only equal to itself.
+     */
+    static final class Key {
+        private final Object[] parts;
+        private final WeakReference<Class<?>> iface;
+        private final int hash;
+
+        Key(Class<?> kind, Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout) {
+            this.parts = new Object[]{kind, fieldNames.clone(), fieldTypes.clone(), layout == null ? null : layout.clone()};
+            this.iface = iface == null ? null : new WeakReference<>(iface);
+            this.hash = 31 * Arrays.deepHashCode(parts) + (iface == null ? 0 : iface.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return hash == that.hash && sameInterface(that) && Arrays.deepEquals(parts, that.parts);
+        }
+
+        private boolean sameInterface(Key that) {
+            if (iface == null || that.iface == null) {
+                return iface == that.iface;
+            }
+            final Class<?> type = iface.get();
+            return type != null && type == that.iface.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+
+/**
+ * A reusable flyweight over a block of records. The cursor owns a single generated tuple which is re-pointed at
+ * each row in turn, so scanning the block allocates nothing regardless of its size.
+ * <p>
+ * The tuple returned by {@link #tuple()} is only valid for the current row, and the cursor is not thread safe.
+ * Closing over the underlying memory is the responsibility of whoever created the block.
+ */
+public final class TupleCursor {
+    private final FastTuple tuple;
+    private final TupleAllocatorGenerator.FlyweightAllocator allocator;
+    private final long base;
+    private final long stride;
+    private final long size;
+    private long index;
+
+    /**
+     * @param tuple     - flyweight tuple to re-point
+     * @param allocator - allocator of the tuple, which sets the position field that selects the row
+     * @param base      - value of that field for row 0
+     * @param stride    - amount that field advances by for each row
+     * @param size      - number of rows in the block
+     */
+    TupleCursor(FastTuple tuple, TupleAllocatorGenerator.FlyweightAllocator allocator, long base, long stride, long size) {
+        this.tuple = tuple;
+        this.allocator = allocator;
+        this.base = base;
+        this.stride = stride;
+        this.size = size;
+        reset();
+    }
+
+    /**
+     * Points the cursor at the given row.
+     *
+     * @param index - 0-based row index
+     * @return - the flyweight {@link FastTuple}, now pointing at the row
+     */
+    public FastTuple moveTo(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Row " + index + " is outside of block of size " + size);
+        }
+        allocator.moveTo(tuple, base + index * stride);
+        this.index = index;
+        return tuple;
+    }
+
+    /**
+     * Advances the cursor to the next row.
+     *
+     * @return - {@code true} if the cursor moved, {@code false} if it was already at the last row
+     */
+    public boolean next() {
+        if (index + 1 >= size) {
+            return false;
+        }
+        moveTo(index + 1);
+        return true;
+    }
+
+    /**
+     * Positions the cursor before the first row, so the next call to {@link #next()} moves to row 0.
+     */
+    public void reset() {
+        allocator.moveTo(tuple, base);
+        this.index = -1;
+    }
+
+    /**
+     * Returns the flyweight tuple. The same instance is returned for every row.
+     *
+     * @return - {@link FastTuple}
+     */
+    public FastTuple tuple() {
+        return tuple;
+    }
+
+    /**
+     * Returns the flyweight tuple cast to the interface implemented by the schema.
+     *
+     * @param clazz - {@link Class} implemented by the Tuple
+     * @param <T>   - {@link T} type parameter
+     * @return - {@link FastTuple} cast to type {@link T}
+     */
+    public <T> T tuple(Class<T> clazz) {
+        return clazz.cast(tuple);
+    }
+
+    /**
+     * @return - current 0-based row, or -1 if the cursor has not been moved yet
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * @return - number of rows in the block
+     */
+    public long size() {
+        return size;
+    }
+}
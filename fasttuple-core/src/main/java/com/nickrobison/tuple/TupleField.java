@@ -0,0 +1,186 @@
+package com.nickrobison.tuple;
+
+/**
+ * Handle to a single field of the tuples of a schema, resolved once by name through methods such as
+ * {@link TupleSchema#longField(String)}.
+ * <p>
+ * Each handle is a generated class which calls the named accessor of the tuple class directly, so reading or
+ * writing a field through a handle is a single monomorphic call, without the switch behind the indexed accessors
+ * of {@link FastTuple}. Handles are only valid for tuples created by the schema they were resolved from,
+ * or by an equal schema; any other tuple fails with a {@link ClassCastException}.
+ * <p>
+ * Handles to long, int, double and float fields of heap and direct tuples also expose the generated atomic accessors of the field,
+ * such as {@link LongField#compareAndSet(FastTuple, long, long)}.
+ */
+public abstract class TupleField {
+    private final String name;
+    private final int index;
+    private final Class<?> type;
+
+    protected TupleField(String name, int index, Class<?> type) {
+        this.name = name;
+        this.index = index;
+        this.type = type;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return - the 1-based index of the field, as used by the indexed accessors of {@link FastTuple}
+     */
+    public int index() {
+        return index;
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    /**
+     * Atomic operations are only available on long, int, double and float fields of heap and direct tuples.
+     */
+    protected UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Field " + name + " does not support atomic operations");
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + type.getName();
+    }
+
+    public abstract static class LongField extends TupleField {
+        protected LongField(String name, int index) {
+            super(name, index, Long.TYPE);
+        }
+
+        public abstract long get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, long value);
+
+        public boolean compareAndSet(FastTuple tuple, long expected, long update) {
+            throw unsupported();
+        }
+
+        public long getAndAdd(FastTuple tuple, long delta) {
+            throw unsupported();
+        }
+
+        public long getVolatile(FastTuple tuple) {
+            throw unsupported();
+        }
+
+        public void setRelease(FastTuple tuple, long value) {
+            throw unsupported();
+        }
+    }
+
+    public abstract static class IntField extends TupleField {
+        protected IntField(String name, int index) {
+            super(name, index, Integer.TYPE);
+        }
+
+        public abstract int get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, int value);
+
+        public boolean compareAndSet(FastTuple tuple, int expected, int update) {
+            throw unsupported();
+        }
+
+        public int getAndAdd(FastTuple tuple, int delta) {
+            throw unsupported();
+        }
+
+        public int getVolatile(FastTuple tuple) {
+            throw unsupported();
+        }
+
+        public void setRelease(FastTuple tuple, int value) {
+            throw unsupported();
+        }
+    }
+
+    public abstract static class ShortField extends TupleField {
+        protected ShortField(String name, int index) {
+            super(name, index, Short.TYPE);
+        }
+
+        public abstract short get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, short value);
+    }
+
+    public abstract static class CharField extends TupleField {
+        protected CharField(String name, int index) {
+            super(name, index, Character.TYPE);
+        }
+
+        public abstract char get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, char value);
+    }
+
+    public abstract static class ByteField extends TupleField {
+        protected ByteField(String name, int index) {
+            super(name, index, Byte.TYPE);
+        }
+
+        public abstract byte get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, byte value);
+    }
+
+    public abstract static class FloatField extends TupleField {
+        protected FloatField(String name, int index) {
+            super(name, index, Float.TYPE);
+        }
+
+        public abstract float get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, float value);
+
+        public boolean compareAndSet(FastTuple tuple, float expected, float update) {
+            throw unsupported();
+        }
+
+        public float getAndAdd(FastTuple tuple, float delta) {
+            throw unsupported();
+        }
+
+        public float getVolatile(FastTuple tuple) {
+            throw unsupported();
+        }
+
+        public void setRelease(FastTuple tuple, float value) {
+            throw unsupported();
+        }
+    }
+
+    public abstract static class DoubleField extends TupleField {
+        protected DoubleField(String name, int index) {
+            super(name, index, Double.TYPE);
+        }
+
+        public abstract double get(FastTuple tuple);
+
+        public abstract void set(FastTuple tuple, double value);
+
+        public boolean compareAndSet(FastTuple tuple, double expected, double update) {
+            throw unsupported();
+        }
+
+        public double getAndAdd(FastTuple tuple, double delta) {
+            throw unsupported();
+        }
+
+        public double getVolatile(FastTuple tuple) {
+            throw unsupported();
+        }
+
+        public void setRelease(FastTuple tuple, double value) {
+            throw unsupported();
+        }
+    }
+}
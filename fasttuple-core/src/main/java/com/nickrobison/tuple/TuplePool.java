@@ -1,20 +1,39 @@
 package com.nickrobison.tuple;
 
-import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Created by cliff on 5/4/14.
+ * <p>
+ * Each thread caches tuples in a pair of magazines, so checkout and release normally never leave the calling thread.
+ * When both of a thread's magazines fill up, a full magazine is handed to a shared lock-free depot, where a thread
+ * that has run dry picks it up instead of loading more tuples. Tuples released on consumer threads therefore flow back
+ * to the producers, rather than piling up while the producers keep allocating.
+ * <p>
+ * A striped pool keeps its magazines in a fixed number of slots, scaled to the number of CPUs, instead of per thread.
+ * Threads are spread across the slots by id and claim a slot with a single CAS for the duration of a checkout or release.
+ * Slots are never held while loading new tuples, so a slow loader does not stall the other threads.
+ * This keeps the number of pooled tuples proportional to the core count, which matters when the pool is used from
+ * large numbers of short-lived or virtual threads.
  */
 public class TuplePool<T> {
-    private final ThreadLocal<ArrayDeque<T>> pool;
+    private final ThreadLocal<Magazines<T>> magazines;
+    private final Magazines<T>[] stripes;
+    private final Queue<Magazine<T>> fullMagazines;
+    private final Queue<Magazine<T>> emptyMagazines;
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private final Optional<Initializer<T>> initializer;
     private final Loader<T> loader;
     private final Destroyer<T> destroyer;
     private final CopyOnWriteArrayList<T[]> references;
-    private int size;
+    private final AtomicInteger size;
     private final int reloadSize;
     private final boolean createWhenExhausted;
     private volatile boolean closed = false;
@@ -31,80 +50,296 @@ public class TuplePool<T> {
                      Loader<T> loader,
                      Destroyer<T> destroyer,
                      Initializer<T> initializer) {
-        this.size = 0;
+        this(size, createWhenExhausted, false, loader, destroyer, initializer);
+    }
+
+    /**
+     * @param size                - number of tuples to load at a time
+     * @param createWhenExhausted - load more tuples when the pool runs dry, rather than throwing
+     * @param striped             - cache tuples in CPU striped slots, rather than per thread
+     * @param loader              - {@link Loader} which allocates tuples
+     * @param destroyer           - {@link Destroyer} which releases tuples when the pool is closed
+     * @param initializer         - optional {@link Initializer} run on every checkout
+     */
+    @SuppressWarnings("unchecked")
+    public TuplePool(final int size,
+                     boolean createWhenExhausted,
+                     boolean striped,
+                     Loader<T> loader,
+                     Destroyer<T> destroyer,
+                     Initializer<T> initializer) {
+        this.size = new AtomicInteger();
         this.reloadSize = size;
         this.createWhenExhausted = createWhenExhausted;
         this.references = new CopyOnWriteArrayList<>();
         this.loader = loader;
         this.destroyer = destroyer;
         this.initializer = Optional.ofNullable(initializer);
-        this.pool = ThreadLocal.withInitial(() -> {
-            ArrayDeque<T> deque = new ArrayDeque<>(size);
-            reload(deque);
-            return deque;
-        });
+        this.fullMagazines = new ConcurrentLinkedQueue<>();
+        this.emptyMagazines = new ConcurrentLinkedQueue<>();
+        final int capacity = Math.max(size, 1);
+        if (striped) {
+            final int processors = Runtime.getRuntime().availableProcessors();
+            this.stripes = new Magazines[Integer.highestOneBit(processors * 2 - 1)];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Magazines<>(capacity);
+            }
+            this.magazines = null;
+        } else {
+            this.stripes = null;
+            this.magazines = ThreadLocal.withInitial(() -> new Magazines<>(capacity));
+        }
     }
 
     public T checkout() {
-        ArrayDeque<T> deque = pool.get();
-        possiblyReload(deque);
-        T obj = deque.pop();
+        checkOpen();
+        final Magazines<T> mags = acquire();
+        T obj = null;
+        int load = 0;
+        try {
+            if (!mags.loaded.isEmpty() || refill(mags)) {
+                obj = mags.loaded.pop();
+            } else if (createWhenExhausted || !mags.primed) {
+                // Every thread gets an initial load, after that only an expanding pool may allocate more
+                mags.primed = true;
+                load = mags.loaded.capacity();
+            } else {
+                throw new IllegalStateException("Tuple pool is exhausted.");
+            }
+        } finally {
+            mags.unlock();
+        }
+        if (load > 0) {
+            obj = load(load);
+        }
         initialize(obj);
         return obj;
     }
 
+    /**
+     * Returns a tuple to the pool.
+     * <p>
+     * Releasing a tuple into a closed pool throws an {@link IllegalStateException}, on every thread, since the pool
+     * has already destroyed the tuple.
+     *
+     * @param obj - tuple checked out from this pool
+     */
     public void release(T obj) {
-        pool.get().push(obj);
+        checkOpen();
+        final Magazines<T> mags = acquire();
+        try {
+            push(mags, obj);
+        } finally {
+            mags.unlock();
+        }
+    }
+
+    private void push(Magazines<T> mags, T obj) {
+        if (mags.loaded.isFull()) {
+            if (mags.previous.isEmpty()) {
+                mags.swap();
+            } else {
+                // Both magazines are full, hand one off to the depot for a thread which has run dry
+                fullMagazines.offer(mags.previous);
+                mags.previous = mags.loaded;
+                final Magazine<T> empty = emptyMagazines.poll();
+                mags.loaded = empty != null ? empty : new Magazine<>(mags.previous.capacity());
+            }
+        }
+        mags.loaded.push(obj);
     }
 
     public int getSize() {
-        return size;
+        return size.get();
     }
 
     private void initialize(T obj) {
         initializer.ifPresent(tInitializer -> tInitializer.initialize(obj));
     }
 
-    private void possiblyReload(ArrayDeque<T> deque) {
-        if (deque.isEmpty()) {
-            if (createWhenExhausted) {
-                reload(deque);
+    private Magazines<T> acquire() {
+        if (stripes == null) {
+            return magazines.get();
+        }
+        final int mask = stripes.length - 1;
+        // Fibonacci hashing spreads sequentially allocated thread ids across the stripes
+        int index = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+        int attempts = 0;
+        while (true) {
+            final Magazines<T> mags = stripes[index & mask];
+            if (mags.tryLock()) {
+                return mags;
+            }
+            // Contended, so probe the next stripe rather than waiting on this one
+            index++;
+            if (++attempts % stripes.length == 0) {
+                // Every stripe is busy, which means there are more running threads than cores, so back off
+                Thread.yield();
             } else {
-                throw new IllegalStateException("Tuple pool is exhausted.");
+                Thread.onSpinWait();
             }
         }
     }
 
-    private void reload(ArrayDeque<T> deque) {
+    private void checkOpen() {
         if (closed) {
             throw new IllegalStateException("Pool's closed everyone out!");
         }
+    }
+
+    /**
+     * Refills the loaded magazine from the spare magazine, or from the depot, neither of which allocate.
+     *
+     * @return - whether the loaded magazine now holds tuples
+     */
+    private boolean refill(Magazines<T> mags) {
+        if (!mags.previous.isEmpty()) {
+            mags.swap();
+            return true;
+        }
+        final Magazine<T> full = fullMagazines.poll();
+        if (full != null) {
+            emptyMagazines.offer(mags.loaded);
+            mags.loaded = full;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads a fresh magazine of tuples and checks out the first one. Loading allocates, so it runs without holding
+     * a stripe, and the rest of the magazine is installed afterwards, or handed to the depot if the stripe
+     * has been refilled in the meantime.
+     */
+    private T load(int capacity) {
+        final Magazine<T> fresh = new Magazine<>(capacity);
+        reload(fresh);
+        if (fresh.isEmpty()) {
+            throw new IllegalStateException("Tuple pool is exhausted.");
+        }
+        final T obj = fresh.pop();
+        if (!fresh.isEmpty()) {
+            final Magazines<T> mags = acquire();
+            try {
+                if (mags.loaded.isEmpty()) {
+                    emptyMagazines.offer(mags.loaded);
+                    mags.loaded = fresh;
+                } else {
+                    fullMagazines.offer(fresh);
+                }
+            } finally {
+                mags.unlock();
+            }
+        }
+        return obj;
+    }
+
+    private void reload(Magazine<T> magazine) {
         try {
             final T[] tuples = loader.createArray(reloadSize);
-            size += reloadSize;
+            size.addAndGet(reloadSize);
             references.add(tuples);
             for (T tuple : tuples) {
-                deque.push(tuple);
-            }
-            if (references.isEmpty()) {
-                throw new IllegalStateException("References list should not be empty after reload");
+                magazine.push(tuple);
             }
         } catch (Exception ex) {
-            throw new IllegalStateException("Unable to reload Tuple pool");
+            throw new IllegalStateException("Unable to reload Tuple pool", ex);
         }
     }
 
+    /**
+     * Destroys every tuple loaded by the pool. Any later checkout or release throws an {@link IllegalStateException}.
+     */
     public void close() {
         closed = true;
         for (T[] ary : references) {
             destroyer.destroyArray(ary);
         }
         references.clear();
-        pool.remove();
+        fullMagazines.clear();
+        emptyMagazines.clear();
+        if (magazines != null) {
+            magazines.remove();
+        }
         if (!references.isEmpty()) {
             throw new IllegalStateException("References list should be empty after clear");
         }
     }
 
+    /**
+     * The pair of magazines cached by a single thread, or a single stripe.
+     * Keeping a second magazine around means a thread alternating between checkout and release
+     * at a magazine boundary does not thrash the depot.
+     */
+    private static final class Magazines<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Magazines> LOCKED =
+                AtomicIntegerFieldUpdater.newUpdater(Magazines.class, "locked");
+        private Magazine<T> loaded;
+        private Magazine<T> previous;
+        private boolean primed = false;
+        // Only used by striped pools, thread local magazines are never contended
+        private volatile int locked = 0;
+
+        Magazines(int capacity) {
+            this.loaded = new Magazine<>(capacity);
+            this.previous = new Magazine<>(capacity);
+        }
+
+        boolean tryLock() {
+            return locked == 0 && LOCKED.compareAndSet(this, 0, 1);
+        }
+
+        void unlock() {
+            if (locked != 0) {
+                LOCKED.lazySet(this, 0);
+            }
+        }
 
+        void swap() {
+            final Magazine<T> tmp = loaded;
+            loaded = previous;
+            previous = tmp;
+        }
+    }
+
+    /**
+     * Fixed capacity stack of tuples, only ever touched by one thread at a time.
+     */
+    private static final class Magazine<T> {
+        private Object[] rounds;
+        private int count = 0;
+
+        Magazine(int capacity) {
+            this.rounds = new Object[capacity];
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        boolean isFull() {
+            return count == rounds.length;
+        }
+
+        int capacity() {
+            return rounds.length;
+        }
+
+        void push(T obj) {
+            Objects.requireNonNull(obj, "Cannot pool null values");
+            if (count == rounds.length) {
+                // Only possible when the loader returns more tuples than were requested
+                rounds = Arrays.copyOf(rounds, rounds.length * 2);
+            }
+            rounds[count++] = obj;
+        }
+
+        @SuppressWarnings("unchecked")
+        T pop() {
+            final T obj = (T) rounds[--count];
+            rounds[count] = null;
+            return obj;
+        }
+    }
 }
@@ -0,0 +1,287 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.unsafe.Coterie;
+
+/**
+ * A bounded ring buffer for handing records between threads, whose slots are records laid out according to
+ * a {@link DirectTupleSchema}. Producers write the fields of a claimed slot in place and then publish it,
+ * the consumer reads published slots in place, so records move between threads without copying or allocating.
+ * <p>
+ * Slots are addressed by an ever increasing sequence number. The claim, publish and consume counters live off-heap,
+ * each on its own cache line, so producers and the consumer do not contend on the same line. The cursors private to
+ * the single producer and to the consumer, along with their cached copies of the other side's counter, get a line
+ * of their own too, so that advancing them does not invalidate a line the other side is reading. A single producer ring
+ * publishes by advancing a counter, while a multi-producer ring claims slots with a compare and swap and publishes
+ * each slot individually, since slots may be published out of order.
+ * <p>
+ * Rings support a single consumer thread. Each producing thread should use its own {@link Producer}.
+ * Rings must be closed to release their memory, after every producer and the consumer have stopped.
+ */
+public final class TupleRing implements AutoCloseable {
+    // Counters are spaced two cache lines apart to avoid false sharing, including with adjacent line prefetching
+    private static final long CLAIMED = 0;
+    private static final long PUBLISHED = 128;
+    private static final long CONSUMED = 256;
+    // Only touched by the single producer
+    private static final long NEXT_CLAIM = 384;
+    private static final long CONSUMED_CACHE = NEXT_CLAIM + 8;
+    // Only touched by the consumer
+    private static final long NEXT_CONSUME = 512;
+    private static final long PUBLISHED_CACHE = NEXT_CONSUME + 8;
+    private static final long COUNTERS_SIZE = 640;
+
+    private final DirectTupleSchema schema;
+    private final TupleAllocatorGenerator.FlyweightAllocator allocator;
+    private final long byteSize;
+    private final int capacity;
+    private final long mask;
+    private final boolean multiProducer;
+    private final long slots;
+    private final long counters;
+    private final long published;
+    private final FastTuple consumerTuple;
+    private boolean closed = false;
+
+    /**
+     * @param schema        - schema of the slots
+     * @param allocator     - allocator of the schema, which re-points its tuples at a slot
+     * @param capacity      - number of slots, which must be a power of two
+     * @param multiProducer - true if several threads may claim slots concurrently
+     */
+    TupleRing(DirectTupleSchema schema, TupleAllocatorGenerator.FlyweightAllocator allocator, int capacity, boolean multiProducer) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a positive power of two, not " + capacity);
+        }
+        this.schema = schema;
+        this.allocator = allocator;
+        this.byteSize = schema.getByteSize();
+        this.capacity = capacity;
+        this.mask = capacity - 1L;
+        this.multiProducer = multiProducer;
+        this.slots = schema.createRecordArray(capacity);
+        this.consumerTuple = schema.createTuple(slots);
+        final long flagsSize = multiProducer ? capacity * 8L : 0;
+        this.counters = Coterie.allocateMemory(COUNTERS_SIZE + flagsSize);
+        Coterie.setMemory(counters, COUNTERS_SIZE, (byte) 0);
+        this.published = counters + COUNTERS_SIZE;
+        // Every slot starts out unpublished, which no sequence number can match
+        Coterie.setMemory(published, flagsSize, (byte) 0xFF);
+    }
+
+    /**
+     * Handles records consumed by {@link #poll(Handler, int)}.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param tuple    - flyweight pointing at the slot, which is only valid until the handler returns
+         * @param sequence - sequence number of the slot
+         */
+        void onTuple(FastTuple tuple, long sequence);
+    }
+
+    /**
+     * Writes records into the ring through a flyweight tuple, which is re-pointed at each claimed slot.
+     * A producer is not thread safe, each producing thread needs its own.
+     */
+    public final class Producer {
+        private final FastTuple tuple;
+        private long sequence = -1;
+
+        private Producer(FastTuple tuple) {
+            this.tuple = tuple;
+        }
+
+        /**
+         * Claims the next slot, spinning while the ring is full.
+         *
+         * @return - the flyweight {@link FastTuple}, now pointing at the claimed slot
+         */
+        public FastTuple claim() {
+            return moveTo(TupleRing.this.claim());
+        }
+
+        /**
+         * Claims the next slot, if the ring is not full.
+         *
+         * @return - the flyweight {@link FastTuple} pointing at the claimed slot, or {@code null} if the ring is full
+         */
+        public FastTuple tryClaim() {
+            final long claimed = TupleRing.this.tryClaim();
+            return claimed < 0 ? null : moveTo(claimed);
+        }
+
+        /**
+         * Publishes the slot returned by the last claim, making it visible to the consumer.
+         */
+        public void publish() {
+            if (sequence < 0) {
+                throw new IllegalStateException("No slot has been claimed");
+            }
+            TupleRing.this.publish(sequence);
+            sequence = -1;
+        }
+
+        /**
+         * @return - sequence number of the claimed slot, or -1 if no slot is claimed
+         */
+        public long sequence() {
+            return sequence;
+        }
+
+        private FastTuple moveTo(long sequence) {
+            this.sequence = sequence;
+            allocator.moveTo(tuple, address(sequence));
+            return tuple;
+        }
+    }
+
+    /**
+     * Creates a producer with its own flyweight tuple. Single producer rings must only be written by one producer.
+     *
+     * @return - {@link Producer}
+     */
+    public Producer producer() {
+        return new Producer(schema.createTuple(slots));
+    }
+
+    /**
+     * Claims the next slot, spinning while the ring is full.
+     *
+     * @return - sequence number of the claimed slot
+     */
+    public long claim() {
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            Thread.onSpinWait();
+        }
+        return sequence;
+    }
+
+    /**
+     * Claims the next slot, if the ring is not full. The slot must be published with {@link #publish(long)},
+     * after its fields have been written through {@link #address(long)}.
+     *
+     * @return - sequence number of the claimed slot, or -1 if the ring is full
+     */
+    public long tryClaim() {
+        if (multiProducer) {
+            while (true) {
+                final long sequence = Coterie.getLongVolatile(counters + CLAIMED);
+                if (sequence - Coterie.getLongVolatile(counters + CONSUMED) >= capacity) {
+                    return -1;
+                }
+                if (Coterie.compareAndSwapLong(counters + CLAIMED, sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+        }
+        final long sequence = Coterie.getLong(counters + NEXT_CLAIM);
+        if (sequence - Coterie.getLong(counters + CONSUMED_CACHE) >= capacity) {
+            final long consumed = Coterie.getLongVolatile(counters + CONSUMED);
+            Coterie.putLong(counters + CONSUMED_CACHE, consumed);
+            if (sequence - consumed >= capacity) {
+                return -1;
+            }
+        }
+        Coterie.putLong(counters + NEXT_CLAIM, sequence + 1);
+        return sequence;
+    }
+
+    /**
+     * Makes a claimed slot visible to the consumer. A single producer must publish its slots in the order they
+     * were claimed, producers of a multi-producer ring may publish in any order.
+     *
+     * @param sequence - sequence number of the claimed slot
+     */
+    public void publish(long sequence) {
+        // Release ordering keeps the field writes ahead of the publication
+        if (multiProducer) {
+            Coterie.putOrderedLong(published + (sequence & mask) * 8, sequence);
+        } else {
+            Coterie.putOrderedLong(counters + PUBLISHED, sequence + 1);
+        }
+    }
+
+    /**
+     * Returns the address of the slot for the given sequence number, which is valid for
+     * {@link DirectTupleSchema#getByteSize()} bytes.
+     *
+     * @param sequence - sequence number of a claimed or consumed slot
+     * @return - address of the slot
+     */
+    public long address(long sequence) {
+        return slots + (sequence & mask) * byteSize;
+    }
+
+    /**
+     * Consumes up to {@code limit} published records, passing each one to the handler in sequence order.
+     * The consumed slots are released back to the producers together, once the whole batch has been handled.
+     *
+     * @param handler - {@link Handler} to invoke for each record
+     * @param limit   - maximum number of records to consume
+     * @return - number of records consumed, which is 0 if none were published
+     */
+    public int poll(Handler handler, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        final long first = Coterie.getLong(counters + NEXT_CONSUME);
+        final int count = available(first, limit);
+        for (int i = 0; i < count; i++) {
+            final long sequence = first + i;
+            allocator.moveTo(consumerTuple, address(sequence));
+            handler.onTuple(consumerTuple, sequence);
+        }
+        if (count > 0) {
+            Coterie.putLong(counters + NEXT_CONSUME, first + count);
+            Coterie.putOrderedLong(counters + CONSUMED, first + count);
+        }
+        return count;
+    }
+
+    private int available(long first, int limit) {
+        if (multiProducer) {
+            int count = 0;
+            while (count < limit && Coterie.getLongVolatile(published + ((first + count) & mask) * 8) == first + count) {
+                count++;
+            }
+            return count;
+        }
+        long published = Coterie.getLong(counters + PUBLISHED_CACHE);
+        if (published - first < limit) {
+            published = Coterie.getLongVolatile(counters + PUBLISHED);
+            Coterie.putLong(counters + PUBLISHED_CACHE, published);
+        }
+        return (int) Math.min(published - first, limit);
+    }
+
+    /**
+     * @return - number of claimed slots which have not been consumed yet, which may be stale by the time it returns
+     */
+    public long size() {
+        return Coterie.getLongVolatile(counters + (multiProducer ? CLAIMED : PUBLISHED)) - Coterie.getLongVolatile(counters + CONSUMED);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isMultiProducer() {
+        return multiProducer;
+    }
+
+    /**
+     * Releases the slots and counters of the ring, invalidating every tuple pointing into it.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        schema.destroyRecordArray(slots);
+        Coterie.freeMemory(counters);
+    }
+}
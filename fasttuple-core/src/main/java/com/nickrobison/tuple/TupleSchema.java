@@ -1,10 +1,15 @@
 package com.nickrobison.tuple;
 
 
+import com.nickrobison.tuple.codegen.TupleAllocatorGenerator;
+import com.nickrobison.tuple.codegen.TupleFieldGenerator;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by cliff on 5/2/14.
@@ -15,11 +20,23 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
     protected final Class<?> iface;
     protected Class<?> clazz;
     protected final TuplePool<FastTuple> pool;
+    private final Map<String, Integer> fieldIndexes;
+    private final TupleField[] fields;
+    // Keeps the interned class alive for as long as this schema is
+    private TupleClassRegistry.Entry interned;
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Forgets every interned tuple class, so that subsequent builds generate new classes
+     * even for schemas equal to ones which already exist.
+     */
+    public static void clearInternedClasses() {
+        TupleClassRegistry.clear();
+    }
+
     protected TupleSchema(Builder builder) {
         this.fieldNames = builder.fn.toArray(new String[0]);
         this.fieldTypes = builder.ft.toArray(new Class[0]);
@@ -31,12 +48,17 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
                 throw new IllegalArgumentException("Invalid field type combination");
             }
         }
+        this.fieldIndexes = new HashMap<>();
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldIndexes.putIfAbsent(fieldNames[i], i + 1);
+        }
+        this.fields = new TupleField[fieldNames.length];
         this.iface = builder.iface;
         if (iface != null && !iface.isInterface()) {
             throw new IllegalArgumentException(iface.getName() + " is not an interface");
         }
 
-        this.pool = new TuplePool<>(builder.poolSize, builder.createWhenExhausted, this, this);
+        this.pool = new TuplePool<>(builder.poolSize, builder.createWhenExhausted, builder.stripedPool, this, this, null);
 
     }
 
@@ -47,6 +69,7 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
         private int poolSize;
         private final int threads;
         private boolean createWhenExhausted = false;
+        private boolean stripedPool = false;
 
         public Builder(Builder builder) {
             fn = new ArrayList<>(builder.fn);
@@ -55,6 +78,7 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
             poolSize = builder.poolSize;
             threads = builder.threads;
             createWhenExhausted = builder.createWhenExhausted;
+            stripedPool = builder.stripedPool;
         }
 
         public Builder() {
@@ -119,7 +143,8 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
         /**
          * Sets the initial size for each thread local tuple pool.  The total number
          * of tuples that will be allocated can be found by multiplying this number
-         * by the number of threads that will be checking tuples out of the pool.
+         * by the number of threads that will be checking tuples out of the pool,
+         * or by the number of stripes for a {@link #stripedPool()}.
          *
          * @param poolSize - The size to generate specified in number of tuples.
          * @return - {@link Builder}
@@ -140,6 +165,19 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
             return this;
         }
 
+        /**
+         * Specifies that the tuple pool should cache tuples in a fixed number of slots, striped by CPU count,
+         * rather than per thread.  The pool size then applies to each slot, so the total number of pooled tuples
+         * scales with the number of cores instead of the number of threads.  Use this when the pool is accessed
+         * from many short-lived or virtual threads.
+         *
+         * @return - {@link Builder}
+         */
+        public Builder stripedPool() {
+            this.stripedPool = true;
+            return this;
+        }
+
         /**
          * Causes this schema to allocate its memory off of the main java heap.
          *
@@ -158,6 +196,25 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
             return new HeapTupleSchema.Builder(this);
         }
 
+        /**
+         * Causes this schema to allocate its memory on heap, packing arrays of tuples into a single byte[] slab
+         * rather than allocating a separate object per tuple.
+         *
+         * @return - {@link Builder}
+         */
+        public PackedHeapTupleSchema.Builder packedHeapMemory() {
+            return new PackedHeapTupleSchema.Builder(this);
+        }
+
+        /**
+         * Causes this schema to allocate its memory off of the main java heap, storing each field in its own column.
+         *
+         * @return - {@link Builder}
+         */
+        public ColumnarTupleSchema.Builder columnar() {
+            return new ColumnarTupleSchema.Builder(this);
+        }
+
     }
 
     @Override
@@ -211,16 +268,88 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
      * @throws IllegalArgumentException if the field name is not found in the schema
      */
     public int getFieldIndex(String name) {
-        for (int i = 0; i < fieldNames.length; i++) {
-            if (fieldNames[i].equals(name)) {
-                return i + 1;
+        final Integer index = fieldIndexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Field " + name + " not found");
+        }
+        return index;
+    }
+
+    /**
+     * Resolves a handle to the named field, which reads and writes the field of any tuple created by this schema
+     * without going through the indexed accessors. Handles are generated on first use and cached.
+     *
+     * @param name - the name of the field
+     * @return - {@link TupleField}, which can be cast to the typed handle matching the type of the field
+     * @throws IllegalArgumentException if the field name is not found in the schema
+     */
+    public synchronized TupleField field(String name) {
+        final int index = getFieldIndex(name);
+        TupleField field = fields[index - 1];
+        if (field == null) {
+            try {
+                field = TupleFieldGenerator.generate(clazz, name, index, fieldTypes[index - 1]);
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Unable to generate handle for field " + name, ex);
             }
+            fields[index - 1] = field;
+        }
+        return field;
+    }
+
+    public TupleField.LongField longField(String name) {
+        return typedField(name, Long.TYPE, TupleField.LongField.class);
+    }
+
+    public TupleField.IntField intField(String name) {
+        return typedField(name, Integer.TYPE, TupleField.IntField.class);
+    }
+
+    public TupleField.ShortField shortField(String name) {
+        return typedField(name, Short.TYPE, TupleField.ShortField.class);
+    }
+
+    public TupleField.CharField charField(String name) {
+        return typedField(name, Character.TYPE, TupleField.CharField.class);
+    }
+
+    public TupleField.ByteField byteField(String name) {
+        return typedField(name, Byte.TYPE, TupleField.ByteField.class);
+    }
+
+    public TupleField.FloatField floatField(String name) {
+        return typedField(name, Float.TYPE, TupleField.FloatField.class);
+    }
+
+    public TupleField.DoubleField doubleField(String name) {
+        return typedField(name, Double.TYPE, TupleField.DoubleField.class);
+    }
+
+    private <F extends TupleField> F typedField(String name, Class<?> type, Class<F> handle) {
+        final TupleField field = field(name);
+        if (!field.type().equals(type)) {
+            throw new IllegalArgumentException("Field " + name + " is of type " + field.type().getName() + ", not " + type.getName());
         }
-        throw new IllegalArgumentException("Field " + name + " not found");
+        return handle.cast(field);
     }
 
     protected abstract void generateClass() throws Exception;
 
+    /**
+     * Reuses the generated class of an equal schema, with the same kind, interface, fields and layout,
+     * or generates a new one. Sets {@link #clazz}.
+     *
+     * @param layout    - layout the generated code depends on, or null
+     * @param generator - generates the class and its allocator, on first use
+     * @return - allocator for the tuple class
+     * @throws Exception - if the class cannot be generated
+     */
+    TupleAllocatorGenerator.TupleAllocator internClass(int[] layout, TupleClassRegistry.Generator generator) throws Exception {
+        this.interned = TupleClassRegistry.intern(new TupleClassRegistry.Key(getClass(), iface, fieldNames, fieldTypes, layout), generator);
+        this.clazz = interned.tupleClass;
+        return interned.allocator;
+    }
+
     /**
      * Allocates a new tuple, completely separate from any pooling.
      *
@@ -304,7 +433,7 @@ public abstract class TupleSchema implements Loader<FastTuple>, Destroyer<FastTu
 
     /**
      * Returns the tuple pool for this schema.  Each individual thread accessing this method
-     * will see a different pool.
+     * checks tuples out of its own cache, which is rebalanced with other threads through a shared depot.
      *
      * @return - {@link TuplePool} of {@link FastTuple}
      */
@@ -0,0 +1,173 @@
+package com.nickrobison.tuple.codegen;
+
+import org.codehaus.janino.ByteArrayClassLoader;
+import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.util.ClassFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opt-in, persistent cache of generated bytecode, which lets a JVM reload the classes compiled by a previous run
+ * instead of invoking Janino again.
+ * <p>
+ * The cache is enabled by pointing the {@code com.nickrobison.tuple.cacheDirectory} system property at a writable
+ * directory. Each entry is keyed by a fingerprint of everything the generated code depends on, such as the field
+ * names, types and layout of a tuple, or the expression text and the tuple class it was compiled against.
+ * Entries are written atomically, and unreadable or mismatched entries are treated as misses and overwritten.
+ * <p>
+ * Entries are also keyed by the generator version and the {@code Implementation-Version} of the library jar,
+ * so upgrading the library never loads classes generated by an older release. Classes loaded from a directory
+ * rather than a jar have no implementation version, and only the generator version guards their entries.
+ * <p>
+ * Only classes compiled by Janino are cached. Heap and direct tuples emitted by {@link TupleBytecodeGenerator}
+ * are cheaper to generate again than to read back.
+ */
+final class BytecodeCache {
+    static final String DIRECTORY_PROPERTY = "com.nickrobison.tuple.cacheDirectory";
+    private static final int MAGIC = 0xFA57_7B1E;
+    // Bumped whenever the generators emit different code for the same inputs
+    private static final int VERSION = 2;
+    private static final String LIBRARY_VERSION = libraryVersion();
+    private static final String SUFFIX = ".classes";
+
+    private BytecodeCache() {
+        // Not used
+    }
+
+    static boolean isEnabled() {
+        return directory() != null;
+    }
+
+    /**
+     * Loads the class stored under the key.
+     *
+     * @param key    - fingerprint of the generated class
+     * @param parent - class loader to resolve the dependencies of the class
+     * @param host   - generated tuple class to define the class next to, as a hidden class. See {@link HiddenClasses}
+     * @return - the loaded class, or null if the class is not cached
+     */
+    static Class<?> load(String key, ClassLoader parent, Class<?> host) {
+        final Path directory = directory();
+        if (directory == null) {
+            return null;
+        }
+        final String className;
+        final Map<String, byte[]> classes = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(fileName(key)))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !LIBRARY_VERSION.equals(in.readUTF()) || !key.equals(in.readUTF())) {
+                return null;
+            }
+            className = in.readUTF();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final byte[] bytecode = new byte[in.readInt()];
+                in.readFully(bytecode);
+                classes.put(name, bytecode);
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // A corrupt entry is simply regenerated
+            return null;
+        }
+        if (host != null && classes.size() == 1 && TupleLookups.isSupported()) {
+            final Class<?> hidden = TupleLookups.define(host, classes.get(className));
+            if (hidden != null) {
+                return hidden;
+            }
+        }
+        try {
+            return new ByteArrayClassLoader(classes, parent).loadClass(className);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the classes from the last compilation of the compiler under the key.
+     * Failing to write the entry is not an error, the classes are just compiled again next time.
+     *
+     * @param key       - fingerprint of the generated class
+     * @param className - fully qualified name of the class to load from the entry
+     * @param compiler  - compiler which has been cooked
+     */
+    static void store(String key, String className, SimpleCompiler compiler) {
+        final Path directory = directory();
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    final ClassFile[] classFiles = compiler.getClassFiles();
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(LIBRARY_VERSION);
+                    out.writeUTF(key);
+                    out.writeUTF(className);
+                    out.writeInt(classFiles.length);
+                    for (ClassFile classFile : classFiles) {
+                        final byte[] bytecode = classFile.toByteArray();
+                        out.writeUTF(classFile.getThisClassName());
+                        out.writeInt(bytecode.length);
+                        out.write(bytecode);
+                    }
+                }
+                final Path target = directory.resolve(fileName(key));
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // Caching is best effort
+        }
+    }
+
+    private static Path directory() {
+        final String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null || directory.isEmpty() ? null : Paths.get(directory);
+    }
+
+    private static String libraryVersion() {
+        final Package library = BytecodeCache.class.getPackage();
+        final String version = library == null ? null : library.getImplementationVersion();
+        return version == null ? "unversioned" : version;
+    }
+
+    private static String fileName(String key) {
+        // Other versions write to other files, so that running several versions side by side does not thrash entries
+        final String versionedKey = VERSION + ":" + LIBRARY_VERSION + ":" + key;
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(versionedKey.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
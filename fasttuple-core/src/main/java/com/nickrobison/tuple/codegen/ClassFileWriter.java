@@ -0,0 +1,417 @@
+package com.nickrobison.tuple.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file writer, covering just what {@link TupleBytecodeGenerator} needs to emit: a constant pool,
+ * fields, and methods whose only branches are switches on an argument.
+ * <p>
+ * Branch targets never change the locals and always have an empty stack, so every stack map frame is the same
+ * as the method's initial frame, and is written as a {@code same_frame}.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ILOAD = 0x15;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD = 0x19;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int I2L = 0x85;
+    static final int LADD = 0x61;
+    static final int DUP = 0x59;
+    static final int TABLESWITCH = 0xaa;
+    static final int RETURN = 0xb1;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+
+    // Java 11, the oldest release the library supports
+    private static final int MAJOR_VERSION = 55;
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    /**
+     * @param className  - internal name of the class, e.g. {@code com/nickrobison/tuple/FastTuple0}
+     * @param superName  - internal name of the super class
+     * @param interfaces - internal names of the implemented interfaces
+     */
+    ClassFileWriter(String className, String superName, String... interfaces) {
+        this.thisClass = classRef(className);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            this.interfaces[i] = classRef(interfaces[i]);
+        }
+    }
+
+    void field(int access, String name, String descriptor) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        write(() -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        });
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Starts a new method, which is written out with the class.
+     *
+     * @param maxStack - maximum depth of the operand stack
+     */
+    Code method(int access, String name, String descriptor, int maxStack) {
+        final Code code = new Code(access, name, descriptor, maxStack);
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final int code = utf8("Code");
+        final int stackMapTable = utf8("StackMapTable");
+        write(() -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int iface : interfaces) {
+                out.writeShort(iface);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.writeTo(out, code, stackMapTable);
+            }
+            out.writeShort(0);
+        });
+        return bytes.toByteArray();
+    }
+
+    int classRef(String internalName) {
+        return constant("C" + internalName, () -> {
+            final int name = utf8(internalName);
+            poolOut.writeByte(CONSTANT_CLASS);
+            poolOut.writeShort(name);
+        });
+    }
+
+    int string(String value) {
+        return constant("S" + value, () -> {
+            final int utf8 = utf8(value);
+            poolOut.writeByte(CONSTANT_STRING);
+            poolOut.writeShort(utf8);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        return constant("M" + tag + owner + '.' + name + descriptor, () -> {
+            final int ownerClass = classRef(owner);
+            final int nameAndType = constant("N" + name + descriptor, () -> {
+                final int n = utf8(name);
+                final int d = utf8(descriptor);
+                poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+                poolOut.writeShort(n);
+                poolOut.writeShort(d);
+            });
+            poolOut.writeByte(tag);
+            poolOut.writeShort(ownerClass);
+            poolOut.writeShort(nameAndType);
+        });
+    }
+
+    private int integer(int value) {
+        return constant("I" + value, () -> {
+            poolOut.writeByte(CONSTANT_INTEGER);
+            poolOut.writeInt(value);
+        });
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, () -> {
+            poolOut.writeByte(CONSTANT_UTF8);
+            poolOut.writeUTF(value);
+        });
+    }
+
+    /**
+     * Entries referenced by a constant are written first, so an entry's index is only assigned once its body is written.
+     */
+    private int constant(String key, IOAction writer) {
+        final Integer existing = constants.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        write(writer);
+        final int index = poolSize++;
+        constants.put(key, index);
+        return index;
+    }
+
+    private static void write(IOAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * A jump target within a method.
+     */
+    static final class Label {
+        private int position = -1;
+    }
+
+    /**
+     * A 4 byte branch offset, relative to the opcode it belongs to, which is filled in once the method is complete.
+     */
+    private static final class Jump {
+        private final int at;
+        private final int opcode;
+        private final Label target;
+
+        private Jump(int at, int opcode, Label target) {
+            this.at = at;
+            this.opcode = opcode;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Bytecode of a single method.
+     */
+    final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxStack;
+        private final int maxLocals;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Jump> jumps = new ArrayList<>();
+        private final List<Label> labels = new ArrayList<>();
+
+        private Code(int access, String name, String descriptor, int maxStack) {
+            this.access = access;
+            this.name = utf8(name);
+            this.descriptor = utf8(descriptor);
+            this.maxStack = maxStack;
+            this.maxLocals = argumentSlots(descriptor) + ((access & ACC_STATIC) == 0 ? 1 : 0);
+        }
+
+        Code op(int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        Code op(int opcode, int u2) {
+            code.write(opcode);
+            return u2(u2);
+        }
+
+        Code local(int opcode, int slot) {
+            code.write(opcode);
+            code.write(slot);
+            return this;
+        }
+
+        Code pushInt(int value) {
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+                return this;
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return op(SIPUSH, value);
+            }
+            return op(LDC_W, integer(value));
+        }
+
+        Code throwNew(String exceptionClass) {
+            op(NEW, classRef(exceptionClass));
+            op(DUP);
+            op(INVOKESPECIAL, methodRef(exceptionClass, "<init>", "()V"));
+            return op(ATHROW);
+        }
+
+        /**
+         * Switches on an int local, jumping to {@code targets[i]} for the value {@code low + i}.
+         */
+        Code tableSwitch(int slot, int low, Label defaultTarget, Label[] targets) {
+            local(ILOAD, slot);
+            final int opcode = code.size();
+            code.write(TABLESWITCH);
+            while (code.size() % 4 != 0) {
+                code.write(0);
+            }
+            jump(opcode, defaultTarget);
+            u4(low);
+            u4(low + targets.length - 1);
+            for (Label target : targets) {
+                jump(opcode, target);
+            }
+            return this;
+        }
+
+        Code mark(Label label) {
+            label.position = code.size();
+            labels.add(label);
+            return this;
+        }
+
+        private void jump(int opcode, Label target) {
+            jumps.add(new Jump(code.size(), opcode, target));
+            u4(0);
+        }
+
+        private Code u2(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+            return this;
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value & 0xFFFF);
+        }
+
+        private void writeTo(DataOutputStream out, int codeAttribute, int stackMapAttribute) throws IOException {
+            final byte[] bytes = code.toByteArray();
+            for (Jump jump : jumps) {
+                final int at = jump.at;
+                final int offset = jump.target.position - jump.opcode;
+                bytes[at] = (byte) (offset >>> 24);
+                bytes[at + 1] = (byte) (offset >>> 16);
+                bytes[at + 2] = (byte) (offset >>> 8);
+                bytes[at + 3] = (byte) offset;
+            }
+            final byte[] frames = stackMapFrames();
+
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            final int framesLength = frames.length == 0 ? 0 : 6 + frames.length;
+            out.writeInt(12 + bytes.length + framesLength);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            if (frames.length == 0) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(stackMapAttribute);
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+        }
+
+        private byte[] stackMapFrames() {
+            final int[] targets = labels.stream().mapToInt(l -> l.position).sorted().distinct().toArray();
+            if (targets.length == 0) {
+                return new byte[0];
+            }
+            final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            frames.write(targets.length >>> 8);
+            frames.write(targets.length);
+            int previous = -1;
+            for (int target : targets) {
+                final int delta = target - previous - 1;
+                if (delta < 64) {
+                    // same_frame
+                    frames.write(delta);
+                } else {
+                    // same_frame_extended
+                    frames.write(251);
+                    frames.write(delta >>> 8);
+                    frames.write(delta);
+                }
+                previous = target;
+            }
+            return frames.toByteArray();
+        }
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            final char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                slots += 2;
+                i++;
+            } else if (c == 'L' || c == '[') {
+                slots++;
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            } else {
+                slots++;
+                i++;
+            }
+        }
+        return slots;
+    }
+}
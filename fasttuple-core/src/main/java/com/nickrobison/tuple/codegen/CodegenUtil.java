@@ -1,9 +1,15 @@
 package com.nickrobison.tuple.codegen;
 
+import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.janino.Java;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by cliff on 5/14/14.
@@ -35,6 +41,19 @@ public final class CodegenUtil {
     public static Java.FunctionDeclarator.FormalParameters emptyParams(Location loc) {
         return new Java.FunctionDeclarator.FormalParameters(loc, new Java.FunctionDeclarator.FormalParameter[0], false);
     }
+
+    /**
+     * Parses a snippet of Java source into method body statements.
+     * Simpler than assembling the AST by hand for loops and other multi-statement bodies.
+     *
+     * @param body - source of the statements
+     * @return - parsed {@link Java.BlockStatement}s
+     * @throws CompileException - if the source is not valid
+     * @throws IOException      - if the source cannot be read
+     */
+    public static List<Java.BlockStatement> parseStatements(String body) throws CompileException, IOException {
+        return new Parser(new Scanner(null, new StringReader(body))).parseBlockStatements();
+    }
 }
 
 final class TypeMapping {
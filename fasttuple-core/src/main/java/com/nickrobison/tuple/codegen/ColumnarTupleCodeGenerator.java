@@ -0,0 +1,86 @@
+package com.nickrobison.tuple.codegen;
+
+import org.codehaus.janino.Java;
+
+import java.util.Arrays;
+
+import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
+
+/**
+ * Generates tuples which read each field out of its own off-heap column.
+ * The generated class holds the base address of every column along with the row it currently points at,
+ * so an accessor resolves to {@code columns[n] + row * width}.
+ */
+public class ColumnarTupleCodeGenerator extends TupleCodeGenerator {
+    public static final String COLUMNS = "columns";
+    public static final String ROW = "row";
+    protected final int[] widths;
+
+    public ColumnarTupleCodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] widths) {
+        super(iface, fieldNames, fieldTypes);
+        this.widths = widths.clone();
+    }
+
+    @Override
+    protected String cacheKey() {
+        return super.cacheKey() + ':' + Arrays.toString(widths);
+    }
+
+    @Override
+    protected Java.FieldDeclaration[] generateFields() {
+        return new Java.FieldDeclaration[]{
+                new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                        new Java.ArrayType(new Java.PrimitiveType(loc, Java.Primitive.LONG)),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, COLUMNS, 0, null)}),
+                new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                        new Java.PrimitiveType(loc, Java.Primitive.LONG),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, ROW, 0, null)})
+        };
+    }
+
+    @Override
+    protected Java.Rvalue generateGetInvocation(Class<?> type, int index) {
+        return new Java.MethodInvocation(loc,
+                new Java.AmbiguousName(loc, new String[]{"Coterie"}),
+                "get" + accessorForType(type),
+                new Java.Rvalue[]{
+                        generateCellAddress(index)
+                }
+        );
+    }
+
+    @Override
+    protected Java.Rvalue generateSetInvocation(Class<?> type, int index, String value) {
+        return new Java.MethodInvocation(loc,
+                new Java.AmbiguousName(loc, new String[]{"Coterie"}),
+                "put" + accessorForType(type),
+                new Java.Rvalue[]{
+                        generateCellAddress(index),
+                        new Java.Cast(loc, classToRefType(type), new Java.AmbiguousName(loc, new String[]{value}))
+                }
+        );
+    }
+
+    // columns[index] + row * width
+    protected Java.Rvalue generateCellAddress(int index) {
+        return new Java.BinaryOperation(loc,
+                new Java.ArrayAccessExpression(loc,
+                        new Java.AmbiguousName(loc, new String[]{COLUMNS}),
+                        new Java.IntegerLiteral(loc, Integer.toString(index))),
+                "+",
+                new Java.BinaryOperation(loc,
+                        new Java.AmbiguousName(loc, new String[]{ROW}),
+                        "*",
+                        new Java.IntegerLiteral(loc, Integer.toString(widths[index]))));
+    }
+
+    protected String accessorForType(Class<?> type) {
+        return TypeMapping.toAccessorName(type);
+    }
+}
@@ -0,0 +1,28 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.TupleSchema;
+
+/**
+ * A {@link FusedTupleExpression} compiled against a {@link DirectTupleSchema}, which can also evaluate every
+ * expression over a block of records without a tuple for each one.
+ */
+public abstract class DirectFusedTupleExpression extends FusedTupleExpression {
+
+    /**
+     * @param outputSchema - schema of the output tuples
+     * @param names        - name of each expression, in the order they were added
+     */
+    protected DirectFusedTupleExpression(TupleSchema outputSchema, String[] names) {
+        super(outputSchema, names);
+    }
+
+    /**
+     * Evaluates every expression against a block of records allocated by {@link DirectTupleSchema#createRecordArray(long)}.
+     *
+     * @param address - address of the first record
+     * @param count   - number of records to evaluate
+     * @param columns - one primitive array per expression, of the expression's type, each at least count long
+     */
+    public abstract void evaluateRange(long address, int count, Object[] columns);
+}
@@ -1,10 +1,12 @@
 package com.nickrobison.tuple.codegen;
 
+import com.nickrobison.tuple.SequenceLock;
 import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.janino.Java;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
@@ -14,97 +16,70 @@ import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
  */
 public class DirectTupleCodeGenerator extends TupleCodeGenerator {
     protected final int[] layout;
+    protected final boolean sequenceLocked;
 
     public DirectTupleCodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout) {
+        this(iface, fieldNames, fieldTypes, layout, false);
+    }
+
+    /**
+     * @param sequenceLocked - whether records start with a version word, in which case the tuple implements
+     *                       {@link SequenceLock}
+     */
+    public DirectTupleCodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout, boolean sequenceLocked) {
         super(iface, fieldNames, fieldTypes);
         this.layout = layout.clone();
+        this.sequenceLocked = sequenceLocked;
     }
 
     @Override
-    protected Java.FieldDeclaration[] generateFields() {
-        return new Java.FieldDeclaration[]{
-                new Java.FieldDeclaration(
-                        loc,
-                        null,
-                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
-                        new Java.PrimitiveType(loc, Java.Primitive.LONG),
-                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, "address", 0, null)})
-        };
+    protected String cacheKey() {
+        return super.cacheKey() + ':' + Arrays.toString(layout) + (sequenceLocked ? ":locked" : "");
     }
 
     @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl() {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int i = 0; i < fieldNames.length; i++) {
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, Integer.toString(i + 1))),
-                            false,
-                            Collections.singletonList(new Java.ReturnStatement(loc,
-                                    generateGetInvocation(fieldTypes[i], i)))
-                    )
-            );
+    protected Class<?>[] generateInterfaces() {
+        if (!sequenceLocked) {
+            return super.generateInterfaces();
         }
-        list.add(generateDefaultCase());
-        return list;
+        final Class<?>[] interfaces = super.generateInterfaces();
+        final Class<?>[] locked = Arrays.copyOf(interfaces, interfaces.length + 1);
+        locked[interfaces.length] = SequenceLock.class;
+        return locked;
     }
 
     @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl(Class<?> type) {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int n = 0; n < fieldNames.length; n++) {
-            if (!type.equals(fieldTypes[n])) {
-                continue;
-            }
-            list.add(new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
-                    Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(n + 1))),
-                    false,
-                    Collections.singletonList(
-                            new Java.ReturnStatement(loc, generateGetInvocation(type, n))
-                    )
-            ));
+    protected List<Java.MethodDeclarator> generateAdditionalMethods() throws CompileException {
+        if (!sequenceLocked) {
+            return super.generateAdditionalMethods();
         }
-        list.add(generateDefaultCase());
-        return list;
-    }
-
-    @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value) throws CompileException {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int i = 0; i < fieldNames.length; i++) {
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, Integer.toString(i + 1))),
-                            false,
-                            List.of(
-                                    new Java.ExpressionStatement(generateSetInvocation(fieldTypes[i], i, value)),
-                                    new Java.BreakStatement(loc, null)
-                            )
-                    )
+        // The version word lives at the address of the record
+        try {
+            return List.of(
+                    method(Long.TYPE, "beginWrite", new Java.FunctionDeclarator.FormalParameter[]{},
+                            "return SequenceLocks.beginWrite(address);"),
+                    method(Void.TYPE, "commitWrite", new Java.FunctionDeclarator.FormalParameter[]{},
+                            "SequenceLocks.commitWrite(address);"),
+                    method(Long.TYPE, "beginRead", new Java.FunctionDeclarator.FormalParameter[]{},
+                            "return SequenceLocks.beginRead(address);"),
+                    method(Boolean.TYPE, "validate", new Java.FunctionDeclarator.FormalParameter[]{parameter(Long.TYPE, "stamp")},
+                            "return SequenceLocks.validate(address, stamp);")
             );
+        } catch (IOException e) {
+            throw new InternalCompilerException("SNO: Unable to parse sequence lock methods", e);
         }
-        list.add(generateDefaultCase());
-        return list;
     }
 
     @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value, Class<?> type) throws CompileException {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int n = 0; n < fieldNames.length; n++) {
-            if (!type.equals(fieldTypes[n])) {
-                continue;
-            }
-            list.add(new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
-                    Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(n + 1))),
-                    false,
-                    List.of(
-                            new Java.ExpressionStatement(generateSetInvocation(type, n, value)),
-                            new Java.BreakStatement(loc, null)
-                    )
-            ));
-        }
-        list.add(generateDefaultCase());
-        return list;
+    protected Java.FieldDeclaration[] generateFields() {
+        return new Java.FieldDeclaration[]{
+                new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                        new Java.PrimitiveType(loc, Java.Primitive.LONG),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, "address", 0, null)})
+        };
     }
 
     @Override
@@ -136,6 +111,11 @@ public class DirectTupleCodeGenerator extends TupleCodeGenerator {
         );
     }
 
+    @Override
+    protected String atomicTarget(int index) {
+        return "address + " + layout[index];
+    }
+
     protected String accessorForType(Class<?> type) {
         return TypeMapping.toAccessorName(type);
     }
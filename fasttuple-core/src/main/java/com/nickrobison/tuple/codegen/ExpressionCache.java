@@ -0,0 +1,90 @@
+package com.nickrobison.tuple.codegen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded, least recently used cache of compiled expression evaluators.
+ * Evicting an evaluator drops the last reference to its generated class loader, allowing the class to be unloaded.
+ * <p>
+ * Lookups take a short lock, compilation happens outside of it, so two threads missing on the same key may
+ * both compile the expression, but only the first result is kept.
+ */
+final class ExpressionCache {
+    private final Map<Key, Object> entries;
+
+    ExpressionCache(final int capacity) {
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized Object get(Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds an evaluator to the cache, unless another thread got there first.
+     *
+     * @param key       - {@link Key} of the evaluator
+     * @param evaluator - newly compiled evaluator
+     * @return - the cached evaluator, which may not be the one passed in
+     */
+    synchronized Object putIfAbsent(Key key, Object evaluator) {
+        final Object existing = entries.putIfAbsent(key, evaluator);
+        return existing == null ? evaluator : existing;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Evaluators are only interchangeable when compiled against the same generated tuple class,
+     * so the schema is identified by its class rather than by {@link Object#equals(Object)}.
+     * Direct schemas which only differ in padding share a class, but the range methods inline the record size,
+     * so that is part of the key too.
+     */
+    static final class Key {
+        private final Class<?> tupleClass;
+        private final long stride;
+        private final String expression;
+        private final Class<?> iface;
+        private final String parameters;
+
+        Key(Class<?> tupleClass, long stride, String expression, Class<?> iface, String parameters) {
+            this.tupleClass = tupleClass;
+            this.stride = stride;
+            this.expression = expression;
+            this.iface = iface;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return tupleClass == that.tupleClass
+                    && stride == that.stride
+                    && iface == that.iface
+                    && Objects.equals(expression, that.expression)
+                    && Objects.equals(parameters, that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(tupleClass), stride, expression, iface, parameters);
+        }
+    }
+}
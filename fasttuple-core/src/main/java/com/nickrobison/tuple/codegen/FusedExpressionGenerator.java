@@ -0,0 +1,312 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.SimpleCompiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
+import static com.nickrobison.tuple.codegen.CodegenUtil.parseStatements;
+
+/**
+ * Compiles several named expressions over the same schema into a single {@link FusedTupleExpression}.
+ * Every expression is inlined into the same method, so the input tuple is cast once per row and the JIT is free
+ * to share field loads between expressions, rather than paying a separate class and interface call for each one.
+ * <p>
+ * Each expression must be a single Java expression, in the same form as {@link TupleExpressionGenerator},
+ * e.g. "tuple.a() * 2 + tuple.b()".
+ */
+public class FusedExpressionGenerator extends SimpleCompiler {
+    private static final String packageName = "com.nickrobison.tuple";
+    private static final AtomicLong counter = new AtomicLong(0);
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private TupleSchema schema = null;
+        private TupleSchema outputSchema = null;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> expressions = new ArrayList<>();
+        private final List<Class<?>> types = new ArrayList<>();
+
+        public Builder() {
+        }
+
+        public Builder schema(TupleSchema schema) {
+            this.schema = schema;
+            return this;
+        }
+
+        /**
+         * Compiles the expressions against a {@link DirectTupleSchema}, so they can also be evaluated over blocks of records.
+         *
+         * @param schema - {@link DirectTupleSchema} of the input tuples
+         * @return - {@link DirectBuilder}
+         */
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            return new DirectBuilder(this).schema(schema);
+        }
+
+        /**
+         * Adds an expression, whose result is written to the output field of the same name.
+         *
+         * @param name       - name of the output field
+         * @param expression - expression evaluated against each input tuple
+         * @param type       - primitive type of the result
+         * @return - {@link Builder}
+         */
+        public Builder expression(String name, String expression, Class<?> type) {
+            names.add(name);
+            expressions.add(expression);
+            types.add(type);
+            return this;
+        }
+
+        /**
+         * Writes results into tuples of an existing schema, which must declare a field of matching type for each
+         * expression. Otherwise a heap schema is generated with one field per expression.
+         *
+         * @param outputSchema - {@link TupleSchema} of the output tuples
+         * @return - {@link Builder}
+         */
+        public Builder outputSchema(TupleSchema outputSchema) {
+            this.outputSchema = outputSchema;
+            return this;
+        }
+
+        public FusedTupleExpression build() throws Exception {
+            return new FusedExpressionGenerator(this).evaluator;
+        }
+    }
+
+    /**
+     * Builder for expressions over a {@link DirectTupleSchema}, which builds a {@link DirectFusedTupleExpression}.
+     */
+    public static class DirectBuilder extends Builder {
+
+        private DirectBuilder(Builder builder) {
+            for (int i = 0; i < builder.names.size(); i++) {
+                expression(builder.names.get(i), builder.expressions.get(i), builder.types.get(i));
+            }
+            outputSchema(builder.outputSchema);
+        }
+
+        /**
+         * @param schema - must be a {@link DirectTupleSchema}
+         * @return - {@link DirectBuilder}
+         * @throws IllegalArgumentException - if the schema does not store its tuples off-heap
+         */
+        @Override
+        public DirectBuilder schema(TupleSchema schema) {
+            if (!(schema instanceof DirectTupleSchema)) {
+                throw new IllegalArgumentException("Schema must be a DirectTupleSchema");
+            }
+            super.schema(schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            super.schema((TupleSchema) schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder expression(String name, String expression, Class<?> type) {
+            super.expression(name, expression, type);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder outputSchema(TupleSchema outputSchema) {
+            super.outputSchema(outputSchema);
+            return this;
+        }
+
+        @Override
+        public DirectFusedTupleExpression build() throws Exception {
+            return (DirectFusedTupleExpression) super.build();
+        }
+    }
+
+    private final TupleSchema schema;
+    private final TupleSchema outputSchema;
+    private final String[] names;
+    private final String[] expressions;
+    private final Class<?>[] types;
+    private final FusedTupleExpression evaluator;
+
+    private FusedExpressionGenerator(Builder builder) throws Exception {
+        if (builder.names.isEmpty()) {
+            throw new IllegalArgumentException("At least one expression is required");
+        }
+        this.schema = builder.schema;
+        this.names = builder.names.toArray(new String[0]);
+        this.expressions = builder.expressions.toArray(new String[0]);
+        this.types = builder.types.toArray(new Class<?>[0]);
+
+        final Set<String> seen = new HashSet<>();
+        for (int i = 0; i < names.length; i++) {
+            if (!seen.add(names[i])) {
+                throw new IllegalArgumentException("Duplicate expression " + names[i]);
+            }
+            // Validates the type, as only types which can be stored in a tuple are supported
+            TypeMapping.toAccessorName(types[i]);
+        }
+        this.outputSchema = builder.outputSchema == null ? generateOutputSchema() : checkOutputSchema(builder.outputSchema);
+
+        setParentClassLoader(schema.getClassLoader());
+        final String className = "FusedTupleExpression" + counter.incrementAndGet();
+        cook(makeCompilationUnit(className));
+        final Class<?> evaluatorClass = HiddenClasses.load(this, packageName + "." + className, schema.tupleClass());
+        this.evaluator = (FusedTupleExpression) evaluatorClass.getConstructor(TupleSchema.class, String[].class).newInstance(outputSchema, names.clone());
+    }
+
+    private TupleSchema generateOutputSchema() throws Exception {
+        final TupleSchema.Builder builder = TupleSchema.builder();
+        for (int i = 0; i < names.length; i++) {
+            builder.addField(names[i], types[i]);
+        }
+        return builder.heapMemory().build();
+    }
+
+    private TupleSchema checkOutputSchema(TupleSchema outputSchema) {
+        final Class<?>[] fieldTypes = outputSchema.getFieldTypes();
+        for (int i = 0; i < names.length; i++) {
+            if (fieldTypes[outputSchema.getFieldIndex(names[i]) - 1] != types[i]) {
+                throw new IllegalArgumentException("Output field " + names[i] + " is not of type " + types[i].getName());
+            }
+        }
+        return outputSchema;
+    }
+
+    private Java.CompilationUnit makeCompilationUnit(String className) throws Exception {
+        final Location loc = new Location(null, (short) 0, (short) 0);
+        final Java.CompilationUnit cu = new Java.CompilationUnit(null);
+        cu.setPackageDeclaration(new Java.PackageDeclaration(loc, packageName));
+        final Java.PackageMemberClassDeclaration cd = new Java.PackageMemberClassDeclaration(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                className,
+                null,
+                classToType(loc, schema instanceof DirectTupleSchema ? DirectFusedTupleExpression.class : FusedTupleExpression.class),
+                new Java.Type[0]
+        );
+        cu.addPackageMemberTypeDeclaration(cd);
+        cd.addConstructor(generateConstructor(loc));
+        cd.addDeclaredMethod(generateMethod(loc, "evaluate", generateEvaluate(),
+                new Class<?>[]{FastTuple.class, FastTuple.class}, new String[]{"input", "output"}));
+        cd.addDeclaredMethod(generateMethod(loc, "evaluateAll", generateEvaluateAll(),
+                new Class<?>[]{FastTuple[].class, Object[].class}, new String[]{"tuples", "columns"}));
+        if (schema instanceof DirectTupleSchema) {
+            cd.addDeclaredMethod(generateMethod(loc, "evaluateRange", generateEvaluateRange(((DirectTupleSchema) schema).getByteSize()),
+                    new Class<?>[]{Long.TYPE, Integer.TYPE, Object[].class}, new String[]{"address", "count", "columns"}));
+        }
+        return cu;
+    }
+
+    private Java.ConstructorDeclarator generateConstructor(Location loc) {
+        return new Java.ConstructorDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                new Java.FunctionDeclarator.FormalParameters(loc, new Java.FunctionDeclarator.FormalParameter[]{
+                        new Java.FunctionDeclarator.FormalParameter(loc, new Java.AccessModifier[0], classToType(loc, TupleSchema.class), "outputSchema"),
+                        new Java.FunctionDeclarator.FormalParameter(loc, new Java.AccessModifier[0], classToType(loc, String[].class), "names")
+                }, false),
+                new Java.Type[0],
+                new Java.SuperConstructorInvocation(loc, null, new Java.Rvalue[]{
+                        new Java.AmbiguousName(loc, new String[]{"outputSchema"}),
+                        new Java.AmbiguousName(loc, new String[]{"names"})
+                }),
+                Collections.emptyList()
+        );
+    }
+
+    private Java.MethodDeclarator generateMethod(Location loc, String name, String body, Class<?>[] paramTypes, String[] paramNames) throws Exception {
+        final Java.FunctionDeclarator.FormalParameter[] params = new Java.FunctionDeclarator.FormalParameter[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            params[i] = new Java.FunctionDeclarator.FormalParameter(loc,
+                    new Java.AccessModifier[0],
+                    classToType(loc, paramTypes[i]),
+                    paramNames[i]);
+        }
+        return new Java.MethodDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                null,
+                classToType(loc, Void.TYPE),
+                name,
+                new Java.FunctionDeclarator.FormalParameters(loc, params, false),
+                new Java.Type[0],
+                null,
+                parseStatements(body)
+        );
+    }
+
+    private String generateEvaluate() {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        final StringBuilder body = new StringBuilder()
+                .append(tupleClass).append(" tuple = (").append(tupleClass).append(") input; ");
+        // The output tuple class lives in a different class loader, so it is written through the indexed setters,
+        // which the JIT folds down to the field store once the index is a constant
+        for (int i = 0; i < names.length; i++) {
+            body.append("output.set").append(TypeMapping.toAccessorName(types[i]))
+                    .append("(").append(outputSchema.getFieldIndex(names[i])).append(", ").append(result(i)).append("); ");
+        }
+        return body.toString();
+    }
+
+    private String generateEvaluateAll() {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        return unpackColumns() +
+                "for (int i = 0; i < tuples.length; i++) { " +
+                tupleClass + " tuple = (" + tupleClass + ") tuples[i]; " +
+                storeColumns() +
+                "}";
+    }
+
+    /**
+     * Walks the records with a single flyweight tuple, the same way as {@link TupleExpressionGenerator}.
+     */
+    private String generateEvaluateRange(int byteSize) {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        return unpackColumns() +
+                tupleClass + " tuple = new " + tupleClass + "(); " +
+                "for (int i = 0; i < count; i++) { " +
+                "tuple.address = address + (long) i * " + byteSize + "L; " +
+                storeColumns() +
+                "}";
+    }
+
+    private String unpackColumns() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            final String arrayType = types[i].getName() + "[]";
+            body.append(arrayType).append(" c").append(i).append(" = (").append(arrayType).append(") columns[").append(i).append("]; ");
+        }
+        return body.toString();
+    }
+
+    private String storeColumns() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            body.append("c").append(i).append("[i] = ").append(result(i)).append("; ");
+        }
+        return body.toString();
+    }
+
+    private String result(int index) {
+        return "(" + types[index].getName() + ") (" + expressions[index] + ")";
+    }
+}
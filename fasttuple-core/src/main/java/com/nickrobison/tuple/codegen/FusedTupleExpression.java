@@ -0,0 +1,78 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+
+import java.lang.reflect.Array;
+
+/**
+ * A set of named expressions compiled into a single class by {@link FusedExpressionGenerator}, and evaluated
+ * together in one pass over each input tuple. Results are written either into the fields of an output tuple with
+ * the same names, or into one primitive array per expression.
+ */
+public abstract class FusedTupleExpression {
+    private final TupleSchema outputSchema;
+    private final String[] names;
+    private final Class<?>[] columnTypes;
+
+    /**
+     * @param outputSchema - schema of the output tuples
+     * @param names        - name of each expression, in the order they were added
+     */
+    protected FusedTupleExpression(TupleSchema outputSchema, String[] names) {
+        this.outputSchema = outputSchema;
+        this.names = names;
+        // An existing output schema may order its fields differently or declare extra ones,
+        // so the type of each column is looked up by the name of its expression
+        final Class<?>[] fieldTypes = outputSchema.getFieldTypes();
+        this.columnTypes = new Class<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columnTypes[i] = fieldTypes[outputSchema.getFieldIndex(names[i]) - 1];
+        }
+    }
+
+    /**
+     * @return - schema with a field for each expression, generated in the order they were added unless an
+     * existing output schema was given
+     */
+    public TupleSchema getOutputSchema() {
+        return outputSchema;
+    }
+
+    /**
+     * @return - name of each expression, in the order of the columns
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * Evaluates every expression against a tuple.
+     *
+     * @param tuple  - tuple of the input schema
+     * @param output - tuple of the output schema, which receives the results
+     */
+    public abstract void evaluate(FastTuple tuple, FastTuple output);
+
+    /**
+     * Evaluates every expression against each tuple in the array.
+     *
+     * @param tuples  - tuples of the input schema
+     * @param columns - one primitive array per expression, of the expression's type, each at least tuples.length long
+     */
+    public abstract void evaluateAll(FastTuple[] tuples, Object[] columns);
+
+    /**
+     * Allocates one array per expression, sized to hold the results of a batch.
+     *
+     * @param size - number of tuples in the batch
+     * @return - columns for {@link #evaluateAll(FastTuple[], Object[])} and {@link DirectFusedTupleExpression#evaluateRange(long, int, Object[])}
+     */
+    public Object[] createColumns(int size) {
+        final Object[] columns = new Object[columnTypes.length];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columns[i] = Array.newInstance(columnTypes[i], size);
+        }
+        return columns;
+    }
+}
@@ -1,16 +1,21 @@
 package com.nickrobison.tuple.codegen;
 
 import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.janino.Java;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by cliff on 5/9/14.
  */
 public class HeapTupleCodeGenerator extends TupleCodeGenerator {
+    private static final String OFFSET_SUFFIX = "$offset";
 
     public HeapTupleCodeGenerator(Class<?> iface, String[] fieldName, Class<?>[] fieldType) {
         super(iface, fieldName, fieldType);
@@ -18,9 +23,9 @@ public class HeapTupleCodeGenerator extends TupleCodeGenerator {
 
     @Override
     protected Java.FieldDeclaration[] generateFields() {
-        Java.FieldDeclaration[] declarations = new Java.FieldDeclaration[fieldTypes.length];
+        List<Java.FieldDeclaration> declarations = new ArrayList<>();
         for (int i = 0; i < fieldTypes.length; i++) {
-            declarations[i] = new Java.FieldDeclaration(
+            declarations.add(new Java.FieldDeclaration(
                     loc,
                     null,
                     new Java.AccessModifier[]{new Java.AccessModifier("public", loc)},
@@ -28,90 +33,39 @@ public class HeapTupleCodeGenerator extends TupleCodeGenerator {
                     new Java.VariableDeclarator[]{
                             new Java.VariableDeclarator(loc, fieldNames[i], 0, null)
                     }
-            );
+            ));
         }
-
-        return declarations;
-    }
-
-    @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl() {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int i = 0; i < fieldTypes.length; i++) {
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(
-                            loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(i + 1))),
-                            false,
-                            Collections.singletonList(new Java.ReturnStatement(loc, generateGetInvocation(fieldTypes[i], i)))
-                    )
-            );
-        }
-        list.add(generateDefaultCase());
-        return list;
-    }
-
-    @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl(Class<?> type) {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
+        // Atomic accessors need the offset of their field, which is looked up once when the class is initialized
         for (int i = 0; i < fieldTypes.length; i++) {
-            if (!type.equals(fieldTypes[i])) {
+            if (!TupleBytecodeGenerator.isAtomic(fieldTypes[i])) {
                 continue;
             }
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(
-                            loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(i + 1))),
-                            false,
-                            Collections.singletonList(new Java.ReturnStatement(loc, generateGetInvocation(fieldTypes[i], i)))
-                    )
-            );
+            declarations.add(new Java.FieldDeclaration(
+                    loc,
+                    null,
+                    new Java.AccessModifier[]{new Java.AccessModifier("private", loc), new Java.AccessModifier("static", loc), new Java.AccessModifier("final", loc)},
+                    classToType(loc, Long.TYPE),
+                    new Java.VariableDeclarator[]{
+                            new Java.VariableDeclarator(loc, fieldNames[i] + OFFSET_SUFFIX, 0, parseOffset(fieldNames[i]))
+                    }
+            ));
         }
-        list.add(generateDefaultCase());
-        return list;
+
+        return declarations.toArray(new Java.FieldDeclaration[0]);
     }
 
     @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value) throws CompileException {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int i = 0; i < fieldTypes.length; i++) {
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(
-                            loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(i + 1))),
-                            false,
-                            List.of(
-                                    new Java.ExpressionStatement(generateSetInvocation(fieldTypes[i], i, value)),
-                                    new Java.BreakStatement(loc, null)
-                            )
-                    )
-            );
-        }
-        list.add(generateDefaultCase());
-        return list;
+    protected String atomicTarget(int index) {
+        return "this, " + fieldNames[index] + OFFSET_SUFFIX;
     }
 
-    @Override
-    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value, Class<?> type) throws CompileException {
-        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
-        for (int i = 0; i < fieldTypes.length; i++) {
-            if (!type.equals(fieldTypes[i])) {
-                continue;
-            }
-            list.add(
-                    new Java.SwitchStatement.SwitchBlockStatementGroup(
-                            loc,
-                            Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(i + 1))),
-                            false,
-                            List.of(
-                                    new Java.ExpressionStatement(generateSetInvocation(fieldTypes[i], i, value)),
-                                    new Java.BreakStatement(loc, null)
-                            )
-                    )
-            );
+    private Java.Rvalue parseOffset(String fieldName) {
+        try {
+            return new Parser(new Scanner(null, new StringReader(
+                    "Coterie.objectFieldOffset(" + className + ".class, \"" + fieldName + "\")"))).parseExpressionList()[0];
+        } catch (CompileException | IOException e) {
+            throw new InternalCompilerException("SNO: Unable to parse field offset", e);
         }
-        list.add(generateDefaultCase());
-        return list;
     }
 
     @Override
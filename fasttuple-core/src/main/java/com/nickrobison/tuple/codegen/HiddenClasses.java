@@ -0,0 +1,53 @@
+package com.nickrobison.tuple.codegen;
+
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.util.ClassFile;
+
+/**
+ * Loads the classes generated for expressions, allocators and aggregators as hidden classes, on Java 15 and later.
+ * <p>
+ * Janino defines every compiled class through a fresh class loader, which is slow to create and pins the class in
+ * metaspace for as long as anything references the loader. Instead, the bytecode is defined as a hidden class
+ * nestled next to the generated tuple class it operates on, through the full privilege lookup which every tuple
+ * class keeps for {@link TupleLookups}. The hidden class resolves the tuple
+ * class by name and shares its loader, and is unloaded as soon as it becomes unreachable.
+ * <p>
+ * On older JVMs, or when disabled with the {@code com.nickrobison.tuple.hiddenClasses=false} system property,
+ * classes are loaded through Janino's class loader as before. Tuple classes themselves are never hidden,
+ * as expressions have to refer to them by name.
+ */
+final class HiddenClasses {
+    private HiddenClasses() {
+        // Not used
+    }
+
+    /**
+     * Loads a class from the last compilation of the compiler.
+     *
+     * @param compiler  - compiler which has been cooked
+     * @param className - fully qualified name of the class to load
+     * @param host      - generated tuple class to define the class next to, or null to use Janino's class loader
+     * @return - the loaded {@link Class}
+     */
+    static Class<?> load(SimpleCompiler compiler, String className, Class<?> host) {
+        if (host != null && TupleLookups.isSupported()) {
+            for (ClassFile classFile : compiler.getClassFiles()) {
+                if (className.equals(classFile.getThisClassName())) {
+                    final Class<?> hidden = TupleLookups.define(host, classFile.toByteArray());
+                    if (hidden != null) {
+                        return hidden;
+                    }
+                }
+            }
+        }
+        try {
+            return compiler.getClassLoader().loadClass(className);
+        } catch (ClassNotFoundException ex) {
+            throw new InternalCompilerException(
+                    "SNO: Generated compilation unit does not declare class '" + className + "'",
+                    ex
+            );
+        }
+    }
+}
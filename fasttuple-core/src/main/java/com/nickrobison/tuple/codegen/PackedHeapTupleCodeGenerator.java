@@ -0,0 +1,67 @@
+package com.nickrobison.tuple.codegen;
+
+import org.codehaus.janino.Java;
+
+import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
+
+/**
+ * Generates tuples which use the same record layout as {@link DirectTupleCodeGenerator}, but read their fields
+ * out of an on-heap byte[] slab. The {@code address} field holds the byte offset of the record within the slab.
+ */
+public class PackedHeapTupleCodeGenerator extends DirectTupleCodeGenerator {
+    public static final String SLAB = "slab";
+    private static final String[] SLABS = "com.nickrobison.tuple.unsafe.Slabs".split("\\.");
+
+    public PackedHeapTupleCodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout) {
+        super(iface, fieldNames, fieldTypes, layout);
+    }
+
+    @Override
+    protected Java.FieldDeclaration[] generateFields() {
+        return new Java.FieldDeclaration[]{
+                new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                        new Java.ArrayType(new Java.PrimitiveType(loc, Java.Primitive.BYTE)),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, SLAB, 0, null)}),
+                new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                        new Java.PrimitiveType(loc, Java.Primitive.LONG),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, "address", 0, null)})
+        };
+    }
+
+    @Override
+    protected Java.Rvalue generateGetInvocation(Class<?> type, int index) {
+        return new Java.MethodInvocation(loc,
+                new Java.AmbiguousName(loc, SLABS),
+                "get" + accessorForType(type),
+                new Java.Rvalue[]{
+                        new Java.AmbiguousName(loc, new String[]{SLAB}),
+                        new Java.BinaryOperation(loc,
+                                new Java.AmbiguousName(loc, new String[]{"address"}),
+                                "+",
+                                new Java.IntegerLiteral(loc, Integer.toString(layout[index])))
+                }
+        );
+    }
+
+    @Override
+    protected Java.Rvalue generateSetInvocation(Class<?> type, int index, String value) {
+        return new Java.MethodInvocation(loc,
+                new Java.AmbiguousName(loc, SLABS),
+                "put" + accessorForType(type),
+                new Java.Rvalue[]{
+                        new Java.AmbiguousName(loc, new String[]{SLAB}),
+                        new Java.BinaryOperation(loc,
+                                new Java.AmbiguousName(loc, new String[]{"address"}),
+                                "+",
+                                new Java.IntegerLiteral(loc, Integer.toString(layout[index]))),
+                        new Java.Cast(loc, classToRefType(type), new Java.AmbiguousName(loc, new String[]{value}))
+                }
+        );
+    }
+}
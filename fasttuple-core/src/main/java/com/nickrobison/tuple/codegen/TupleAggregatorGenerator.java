@@ -0,0 +1,482 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleAggregator;
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleAggregator;
+import com.nickrobison.tuple.TupleSchema;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Java.AbstractCompilationUnit.SingleTypeImportDeclaration;
+import org.codehaus.janino.SimpleCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nickrobison.tuple.codegen.CodegenUtil.PUBLIC;
+import static com.nickrobison.tuple.codegen.CodegenUtil.parseStatements;
+
+/**
+ * Generates a {@link TupleAggregator} specialized to an input schema, a set of key fields and a set of aggregates.
+ * Keys are hashed, compared and copied field by field straight out of the input tuples, and the aggregates are
+ * compiled expressions in the same form as {@link TupleExpressionGenerator}, e.g. "tuple.price() * tuple.quantity()".
+ */
+public class TupleAggregatorGenerator extends SimpleCompiler {
+    private static final String packageName = "com.nickrobison.tuple";
+    private static final AtomicLong counter = new AtomicLong(0);
+
+    private enum Kind {
+        COUNT, SUM, MIN, MAX
+    }
+
+    private static final class Aggregate {
+        private final Kind kind;
+        private final String name;
+        private final String expression;
+        private final Class<?> type;
+
+        private Aggregate(Kind kind, String name, String expression, Class<?> type) {
+            this.kind = kind;
+            this.name = name;
+            this.expression = expression;
+            this.type = type;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private TupleSchema schema = null;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Aggregate> aggregates = new ArrayList<>();
+        private int expectedGroups = 1024;
+
+        public Builder() {
+        }
+
+        public Builder schema(TupleSchema schema) {
+            this.schema = schema;
+            return this;
+        }
+
+        /**
+         * Aggregates tuples of a {@link DirectTupleSchema}, so blocks of records can also be added.
+         *
+         * @param schema - {@link DirectTupleSchema} of the input tuples
+         * @return - {@link DirectBuilder}
+         */
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            return new DirectBuilder(this).schema(schema);
+        }
+
+        /**
+         * Groups input tuples by the given fields, which are copied into each output row under the same name.
+         *
+         * @param fields - names of key fields in the input schema
+         * @return - {@link Builder}
+         */
+        public Builder groupBy(String... fields) {
+            Collections.addAll(keys, fields);
+            return this;
+        }
+
+        /**
+         * Counts the tuples in each group, into a long field.
+         *
+         * @param name - name of the output field
+         * @return - {@link Builder}
+         */
+        public Builder count(String name) {
+            aggregates.add(new Aggregate(Kind.COUNT, name, null, Long.TYPE));
+            return this;
+        }
+
+        /**
+         * Sums an expression over the tuples in each group.
+         *
+         * @param name       - name of the output field
+         * @param expression - expression evaluated against each input tuple
+         * @param type       - primitive type of the output field
+         * @return - {@link Builder}
+         */
+        public Builder sum(String name, String expression, Class<?> type) {
+            aggregates.add(new Aggregate(Kind.SUM, name, expression, type));
+            return this;
+        }
+
+        /**
+         * Takes the minimum of an expression over the tuples in each group.
+         *
+         * @param name       - name of the output field
+         * @param expression - expression evaluated against each input tuple
+         * @param type       - primitive type of the output field
+         * @return - {@link Builder}
+         */
+        public Builder min(String name, String expression, Class<?> type) {
+            aggregates.add(new Aggregate(Kind.MIN, name, expression, type));
+            return this;
+        }
+
+        /**
+         * Takes the maximum of an expression over the tuples in each group.
+         *
+         * @param name       - name of the output field
+         * @param expression - expression evaluated against each input tuple
+         * @param type       - primitive type of the output field
+         * @return - {@link Builder}
+         */
+        public Builder max(String name, String expression, Class<?> type) {
+            aggregates.add(new Aggregate(Kind.MAX, name, expression, type));
+            return this;
+        }
+
+        /**
+         * Sizes the table up front, to avoid growing it while aggregating.
+         *
+         * @param expectedGroups - expected number of distinct keys
+         * @return - {@link Builder}
+         */
+        public Builder expectedGroups(int expectedGroups) {
+            this.expectedGroups = expectedGroups;
+            return this;
+        }
+
+        public TupleAggregator build() throws Exception {
+            return new TupleAggregatorGenerator(schema, keys, aggregates).createAggregator(expectedGroups);
+        }
+    }
+
+    /**
+     * Builder for aggregators over a {@link DirectTupleSchema}, which builds a {@link DirectTupleAggregator}.
+     */
+    public static class DirectBuilder extends Builder {
+
+        private DirectBuilder(Builder builder) {
+            groupBy(builder.keys.toArray(new String[0]));
+            super.aggregates.addAll(builder.aggregates);
+            expectedGroups(builder.expectedGroups);
+        }
+
+        /**
+         * @param schema - must be a {@link DirectTupleSchema}
+         * @return - {@link DirectBuilder}
+         * @throws IllegalArgumentException - if the schema does not store its tuples off-heap
+         */
+        @Override
+        public DirectBuilder schema(TupleSchema schema) {
+            if (!(schema instanceof DirectTupleSchema)) {
+                throw new IllegalArgumentException("Schema must be a DirectTupleSchema");
+            }
+            super.schema(schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            super.schema((TupleSchema) schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder groupBy(String... fields) {
+            super.groupBy(fields);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder count(String name) {
+            super.count(name);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder sum(String name, String expression, Class<?> type) {
+            super.sum(name, expression, type);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder min(String name, String expression, Class<?> type) {
+            super.min(name, expression, type);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder max(String name, String expression, Class<?> type) {
+            super.max(name, expression, type);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder expectedGroups(int expectedGroups) {
+            super.expectedGroups(expectedGroups);
+            return this;
+        }
+
+        @Override
+        public DirectTupleAggregator build() throws Exception {
+            return (DirectTupleAggregator) super.build();
+        }
+    }
+
+    private final TupleSchema schema;
+    private final String[] keys;
+    private final Class<?>[] keyTypes;
+    private final List<Aggregate> aggregates;
+    private final DirectTupleSchema outputSchema;
+    private final int[] layout;
+    private final Class<?> aggregatorClass;
+
+    private TupleAggregatorGenerator(TupleSchema schema, List<String> keys, List<Aggregate> aggregates) throws Exception {
+        if (aggregates.isEmpty()) {
+            throw new IllegalArgumentException("At least one aggregate is required");
+        }
+        this.schema = schema;
+        this.keys = keys.toArray(new String[0]);
+        this.keyTypes = new Class<?>[this.keys.length];
+        this.aggregates = new ArrayList<>(aggregates);
+
+        final Class<?>[] fieldTypes = schema.getFieldTypes();
+        final Set<String> names = new HashSet<>();
+        final TupleSchema.Builder output = TupleSchema.builder();
+        for (int i = 0; i < this.keys.length; i++) {
+            keyTypes[i] = fieldTypes[schema.getFieldIndex(this.keys[i]) - 1];
+            addOutputField(output, names, this.keys[i], keyTypes[i]);
+        }
+        for (Aggregate aggregate : this.aggregates) {
+            if (!aggregate.type.isPrimitive() || aggregate.type == Boolean.TYPE || aggregate.type == Character.TYPE || aggregate.type == Void.TYPE) {
+                throw new IllegalArgumentException("Aggregate " + aggregate.name + " must be a numeric primitive");
+            }
+            addOutputField(output, names, aggregate.name, aggregate.type);
+        }
+        this.outputSchema = output.directMemory().build();
+        this.layout = outputSchema.getLayout();
+
+        setParentClassLoader(schema.getClassLoader());
+        final String className = "TupleAggregator" + counter.incrementAndGet();
+        cook(makeCompilationUnit(className));
+        this.aggregatorClass = HiddenClasses.load(this, packageName + "." + className, schema.tupleClass());
+    }
+
+    private static void addOutputField(TupleSchema.Builder output, Set<String> names, String name, Class<?> type) {
+        if (!names.add(name)) {
+            throw new IllegalArgumentException("Duplicate output field " + name);
+        }
+        output.addField(name, type);
+    }
+
+    private TupleAggregator createAggregator(int expectedGroups) throws Exception {
+        return (TupleAggregator) aggregatorClass.getConstructor(DirectTupleSchema.class, Integer.TYPE).newInstance(outputSchema, expectedGroups);
+    }
+
+    private Java.CompilationUnit makeCompilationUnit(String className) throws Exception {
+        final Location loc = new Location(null, (short) 0, (short) 0);
+        final Java.CompilationUnit cu = new Java.CompilationUnit(null, new SingleTypeImportDeclaration[]{
+                new SingleTypeImportDeclaration(loc, "com.nickrobison.tuple.unsafe.Coterie".split("\\."))
+        });
+        cu.setPackageDeclaration(new Java.PackageDeclaration(loc, packageName));
+        final Java.PackageMemberClassDeclaration cd = new Java.PackageMemberClassDeclaration(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                className,
+                null,
+                classToType(loc, schema instanceof DirectTupleSchema ? DirectTupleAggregator.class : TupleAggregator.class),
+                new Java.Type[0]
+        );
+        cu.addPackageMemberTypeDeclaration(cd);
+        cd.addConstructor(generateConstructor(loc));
+        cd.addDeclaredMethod(generateMethod(loc, Void.TYPE, "add", generateAdd(), FastTuple.class, "input"));
+        // Overridden so the loop calls this class' add, rather than sharing a call site with every other aggregator
+        cd.addDeclaredMethod(generateMethod(loc, Void.TYPE, "addAll",
+                "for (int i = 0; i < inputs.length; i++) { add(inputs[i]); }", FastTuple[].class, "inputs"));
+        if (schema instanceof DirectTupleSchema) {
+            final Java.MethodDeclarator addRange = generateMethod(loc, Void.TYPE, "addRange",
+                    generateAddRange(((DirectTupleSchema) schema).getByteSize()), Long.TYPE, "address", Integer.TYPE, "count");
+            cd.addDeclaredMethod(addRange);
+        }
+        return cu;
+    }
+
+    private Java.ConstructorDeclarator generateConstructor(Location loc) {
+        return new Java.ConstructorDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                new Java.FunctionDeclarator.FormalParameters(loc, new Java.FunctionDeclarator.FormalParameter[]{
+                        new Java.FunctionDeclarator.FormalParameter(loc, new Java.AccessModifier[0], classToType(loc, DirectTupleSchema.class), "outputSchema"),
+                        new Java.FunctionDeclarator.FormalParameter(loc, new Java.AccessModifier[0], classToType(loc, Integer.TYPE), "expectedGroups")
+                }, false),
+                new Java.Type[0],
+                new Java.SuperConstructorInvocation(loc, null, new Java.Rvalue[]{
+                        new Java.AmbiguousName(loc, new String[]{"outputSchema"}),
+                        new Java.AmbiguousName(loc, new String[]{"expectedGroups"})
+                }),
+                Collections.emptyList()
+        );
+    }
+
+    private Java.MethodDeclarator generateMethod(Location loc, Class<?> returnType, String name, String body, Object... params) throws Exception {
+        final Java.FunctionDeclarator.FormalParameter[] formals = new Java.FunctionDeclarator.FormalParameter[params.length / 2];
+        for (int i = 0; i < formals.length; i++) {
+            formals[i] = new Java.FunctionDeclarator.FormalParameter(loc,
+                    new Java.AccessModifier[0],
+                    classToType(loc, (Class<?>) params[i * 2]),
+                    (String) params[i * 2 + 1]);
+        }
+        return new Java.MethodDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                null,
+                classToType(loc, returnType),
+                name,
+                new Java.FunctionDeclarator.FormalParameters(loc, formals, false),
+                new Java.Type[0],
+                null,
+                parseStatements(body)
+        );
+    }
+
+    /**
+     * Inlines the key hashing, comparison and accumulation into the probe loop of {@link TupleAggregator#add(FastTuple)}.
+     */
+    private String generateAdd() {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        return tupleClass + " tuple = (" + tupleClass + ") input; " +
+                generateHash() +
+                "final int hash = mix(h); " +
+                "final int mask = slotMask(); " +
+                "int slot = hash & mask; " +
+                "while (true) { " +
+                "final long entry = entry(slot); " +
+                "if (entry == 0L) { " +
+                "final long row = newRow(slot, hash); " +
+                generateInitialize() +
+                generateAccumulate() +
+                "return; " +
+                "} " +
+                "if ((int) (entry >>> 32) == hash) { " +
+                "final long row = rowAt(entry); " +
+                "if (" + generateMatches() + ") { " +
+                generateAccumulate() +
+                "return; " +
+                "} " +
+                "} " +
+                "slot = (slot + 1) & mask; " +
+                "}";
+    }
+
+    private String generateHash() {
+        final StringBuilder body = new StringBuilder("int h = 1; ");
+        for (int i = 0; i < keys.length; i++) {
+            body.append("h = 31 * h + ").append(TypeMapping.toBoxedName(keyTypes[i]))
+                    .append(".hashCode(tuple.").append(keys[i]).append("()); ");
+        }
+        return body.toString();
+    }
+
+    private String generateMatches() {
+        final StringBuilder body = new StringBuilder("true");
+        for (int i = 0; i < keys.length; i++) {
+            final String stored = read(keyTypes[i], i);
+            final String key = "tuple." + keys[i] + "()";
+            // Floating point keys are compared by their bits, so NaN keys still group together
+            if (keyTypes[i] == Double.TYPE) {
+                body.append(" && Double.doubleToLongBits(").append(stored).append(") == Double.doubleToLongBits(").append(key).append(")");
+            } else if (keyTypes[i] == Float.TYPE) {
+                body.append(" && Float.floatToIntBits(").append(stored).append(") == Float.floatToIntBits(").append(key).append(")");
+            } else {
+                body.append(" && ").append(stored).append(" == ").append(key);
+            }
+        }
+        return body.toString();
+    }
+
+    private String generateInitialize() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            body.append(write(keyTypes[i], i, "tuple." + keys[i] + "()"));
+        }
+        for (int i = 0; i < aggregates.size(); i++) {
+            final Aggregate aggregate = aggregates.get(i);
+            body.append(write(aggregate.type, keys.length + i, identity(aggregate)));
+        }
+        return body.toString();
+    }
+
+    private String generateAccumulate() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < aggregates.size(); i++) {
+            final Aggregate aggregate = aggregates.get(i);
+            final int index = keys.length + i;
+            final String current = read(aggregate.type, index);
+            switch (aggregate.kind) {
+                case COUNT:
+                    body.append(write(aggregate.type, index, current + " + 1L"));
+                    break;
+                case SUM:
+                    body.append(write(aggregate.type, index, current + " + (" + aggregate.expression + ")"));
+                    break;
+                case MIN:
+                    body.append(write(aggregate.type, index, "Math.min(" + current + ", " + aggregate.expression + ")"));
+                    break;
+                case MAX:
+                    body.append(write(aggregate.type, index, "Math.max(" + current + ", " + aggregate.expression + ")"));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown aggregate " + aggregate.kind);
+            }
+        }
+        return body.toString();
+    }
+
+    private String generateAddRange(int byteSize) {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        return tupleClass + " flyweight = new " + tupleClass + "(); " +
+                "for (int i = 0; i < count; i++) { " +
+                "flyweight.address = address + (long) i * " + byteSize + "L; " +
+                "add(flyweight); " +
+                "}";
+    }
+
+    private static String identity(Aggregate aggregate) {
+        final boolean floating = aggregate.type == Double.TYPE || aggregate.type == Float.TYPE;
+        final String boxed = TypeMapping.toBoxedName(aggregate.type);
+        switch (aggregate.kind) {
+            case MIN:
+                return floating ? boxed + ".POSITIVE_INFINITY" : boxed + ".MAX_VALUE";
+            case MAX:
+                return floating ? boxed + ".NEGATIVE_INFINITY" : boxed + ".MIN_VALUE";
+            default:
+                return "0";
+        }
+    }
+
+    private String read(Class<?> type, int index) {
+        return "Coterie.get" + TypeMapping.toAccessorName(type) + "(row + " + layout[index] + "L)";
+    }
+
+    private String write(Class<?> type, int index, String value) {
+        return "Coterie.put" + TypeMapping.toAccessorName(type) + "(row + " + layout[index] + "L, (" + type.getName() + ") (" + value + ")); ";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TupleAggregatorGenerator)) return false;
+        TupleAggregatorGenerator that = (TupleAggregatorGenerator) o;
+        return schema.equals(that.schema)
+                && Arrays.equals(keys, that.keys)
+                && aggregatorClass.equals(that.aggregatorClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * schema.hashCode() + Arrays.hashCode(keys)) + aggregatorClass.hashCode();
+    }
+}
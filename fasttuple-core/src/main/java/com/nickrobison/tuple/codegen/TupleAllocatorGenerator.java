@@ -1,7 +1,7 @@
 package com.nickrobison.tuple.codegen;
 
 import com.nickrobison.tuple.FastTuple;
-import org.codehaus.commons.compiler.InternalCompilerException;
+import com.nickrobison.tuple.unsafe.Coterie;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.janino.Java;
 import org.codehaus.janino.SimpleCompiler;
@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.Objects;
 
 import static com.nickrobison.tuple.codegen.CodegenUtil.emptyParams;
+import static com.nickrobison.tuple.codegen.CodegenUtil.parseStatements;
 
 /**
  * Created by cliff on 5/14/14.
@@ -21,31 +22,94 @@ public class TupleAllocatorGenerator extends SimpleCompiler {
         FastTuple allocate();
     }
 
+    /**
+     * Allocator for flyweight tuples, which select the record they point at through a single long field.
+     * The field is read and written directly by the generated class, rather than at an offset through
+     * {@link Coterie}, so re-pointing a tuple inlines to a plain field store.
+     */
+    public interface FlyweightAllocator extends TupleAllocator {
+        /**
+         * @param tuple    - tuple allocated by this allocator
+         * @param position - new value of the tuple's position field
+         */
+        void moveTo(FastTuple tuple, long position);
+
+        /**
+         * @param tuple - tuple allocated by this allocator
+         * @return - current value of the tuple's position field
+         */
+        long position(FastTuple tuple);
+    }
+
     private final Class<?> allocatorClass;
 
     public TupleAllocatorGenerator(Class<?> tupleClass) throws Exception {
-        String className = tupleClass.getName() + "Allocator";
+        this(tupleClass, null);
+    }
+
+    /**
+     * @param tupleClass    - generated tuple class
+     * @param positionField - name of the public long field which positions the tuple, in which case the allocator
+     *                      is a {@link FlyweightAllocator}, or null
+     * @throws Exception - if the allocator cannot be compiled
+     */
+    public TupleAllocatorGenerator(Class<?> tupleClass, String positionField) throws Exception {
+        String className = tupleClass.getSimpleName() + "Allocator";
+        // The allocator only depends on the name of the tuple class, and its position field
+        final String cacheKey = "allocator:" + tupleClass.getName() + (positionField == null ? "" : ":" + positionField);
+        final Class<?> cached = BytecodeCache.load(cacheKey, tupleClass.getClassLoader(), tupleClass);
+        if (cached != null) {
+            allocatorClass = cached;
+            return;
+        }
         setParentClassLoader(tupleClass.getClassLoader());
         Java.CompilationUnit cu = new Java.CompilationUnit(null);
         Location loc = new Location(null, (short) 0, (short) 0);
         cu.setPackageDeclaration(new Java.PackageDeclaration(loc, packageName));
-        cu.addPackageMemberTypeDeclaration(makeClassDefinition(loc, tupleClass, className));
+        cu.addPackageMemberTypeDeclaration(makeClassDefinition(loc, tupleClass, className, positionField));
         cook(cu);
-        try {
-            allocatorClass = getClassLoader().loadClass(packageName + "." + className);
-        } catch (ClassNotFoundException ex) {
-            throw new InternalCompilerException(
-                    "SNO: Generated compilation unit does not declare class '" + packageName + "." + className + "'",
-                    ex
-            );
-        }
+        BytecodeCache.store(cacheKey, packageName + "." + className, this);
+        allocatorClass = HiddenClasses.load(this, packageName + "." + className, tupleClass);
     }
 
     public TupleAllocator createAllocator() throws Exception {
         return (TupleAllocator) allocatorClass.getConstructor().newInstance();
     }
 
-    private Java.PackageMemberClassDeclaration makeClassDefinition(Location loc, Class<?> tupleClass, String className) {
+    /**
+     * Adapts an allocator which does not position its tuples itself, such as one generated at build time by an
+     * older version of the annotation processor, by writing the position field through {@link Coterie}.
+     *
+     * @param allocator     - allocator of the tuple class
+     * @param tupleClass    - tuple class
+     * @param positionField - name of the public long field which positions the tuple
+     * @return - the allocator, if it is already a {@link FlyweightAllocator}, otherwise an adapter
+     * @throws NoSuchFieldException - if the tuple class does not declare the field
+     */
+    public static FlyweightAllocator flyweight(TupleAllocator allocator, Class<?> tupleClass, String positionField) throws NoSuchFieldException {
+        if (allocator instanceof FlyweightAllocator) {
+            return (FlyweightAllocator) allocator;
+        }
+        final long offset = Coterie.objectFieldOffset(tupleClass.getField(positionField));
+        return new FlyweightAllocator() {
+            @Override
+            public FastTuple allocate() {
+                return allocator.allocate();
+            }
+
+            @Override
+            public void moveTo(FastTuple tuple, long position) {
+                Coterie.putLong(tuple, offset, position);
+            }
+
+            @Override
+            public long position(FastTuple tuple) {
+                return Coterie.getLong(tuple, offset);
+            }
+        };
+    }
+
+    private Java.PackageMemberClassDeclaration makeClassDefinition(Location loc, Class<?> tupleClass, String className, String positionField) throws Exception {
         Java.PackageMemberClassDeclaration cd = new Java.PackageMemberClassDeclaration(
                 loc,
                 null,
@@ -54,7 +118,7 @@ public class TupleAllocatorGenerator extends SimpleCompiler {
                 null,
                 null,
                 new Java.Type[]{
-                        classToType(loc, TupleAllocator.class)
+                        classToType(loc, positionField == null ? TupleAllocator.class : FlyweightAllocator.class)
                 });
 
         cd.addDeclaredMethod(new Java.MethodDeclarator(
@@ -77,9 +141,39 @@ public class TupleAllocatorGenerator extends SimpleCompiler {
                 )
         ));
 
+        if (positionField != null) {
+            final String field = "((" + tupleClass.getCanonicalName() + ") tuple)." + positionField;
+            cd.addDeclaredMethod(generateMethod(loc, Void.TYPE, "moveTo",
+                    new Class<?>[]{FastTuple.class, Long.TYPE}, new String[]{"tuple", "position"},
+                    field + " = position;"));
+            cd.addDeclaredMethod(generateMethod(loc, Long.TYPE, "position",
+                    new Class<?>[]{FastTuple.class}, new String[]{"tuple"},
+                    "return " + field + ";"));
+        }
         return cd;
     }
 
+    private Java.MethodDeclarator generateMethod(Location loc, Class<?> returnType, String name, Class<?>[] paramTypes, String[] paramNames, String body) throws Exception {
+        final Java.FunctionDeclarator.FormalParameter[] params = new Java.FunctionDeclarator.FormalParameter[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            params[i] = new Java.FunctionDeclarator.FormalParameter(loc,
+                    new Java.AccessModifier[0],
+                    classToType(loc, paramTypes[i]),
+                    paramNames[i]);
+        }
+        return new Java.MethodDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier("public", loc)},
+                null,
+                classToType(loc, returnType),
+                name,
+                new Java.FunctionDeclarator.FormalParameters(loc, params, false),
+                new Java.Type[0],
+                null,
+                parseStatements(body)
+        );
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,632 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.SequenceLock;
+import com.nickrobison.tuple.SequenceLocks;
+import com.nickrobison.tuple.unsafe.Coterie;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ACC_FINAL;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ACC_PRIVATE;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ACC_PUBLIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ACC_STATIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ALOAD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ALOAD_0;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ARETURN;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.CHECKCAST;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.DUP;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.GETFIELD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.GETSTATIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.I2L;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.INVOKESPECIAL;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.INVOKESTATIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.INVOKEVIRTUAL;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.IRETURN;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.LADD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.LDC_W;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.NEW;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.PUTFIELD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.PUTSTATIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.RETURN;
+
+/**
+ * Generates heap and direct tuple classes, along with their allocators, by writing their class files directly.
+ * The classes are equivalent to those compiled by {@link HeapTupleCodeGenerator} and {@link DirectTupleCodeGenerator},
+ * but skip building and compiling a Janino AST, which dominates the build time of wide schemas.
+ * <p>
+ * This is the default for heap and direct schemas, and can be disabled with the
+ * {@code com.nickrobison.tuple.emitBytecode=false} system property to fall back to Janino.
+ */
+public final class TupleBytecodeGenerator {
+    static final String ENABLED_PROPERTY = "com.nickrobison.tuple.emitBytecode";
+    private static final String PACKAGE = "com/nickrobison/tuple/";
+    private static final String FAST_TUPLE = internalName(FastTuple.class);
+    private static final String COTERIE = internalName(Coterie.class);
+    private static final String ALLOCATOR = internalName(TupleAllocatorGenerator.TupleAllocator.class);
+    private static final String FLYWEIGHT_ALLOCATOR = internalName(TupleAllocatorGenerator.FlyweightAllocator.class);
+    private static final String OBJECT = "java/lang/Object";
+    private static final String SEQUENCE_LOCK = internalName(SequenceLock.class);
+    private static final String SEQUENCE_LOCKS = internalName(SequenceLocks.class);
+    private static final String BYTECODE_GENERATOR = internalName(TupleBytecodeGenerator.class);
+    private static final String INDEX_OUT_OF_RANGE = "java/lang/IllegalArgumentException";
+    private static final String ADDRESS = "address";
+    private static final String HANDLE_SUFFIX = "$handle";
+    private static final String VAR_HANDLE = internalName(VarHandle.class);
+    private static final int MAX_STACK = 8;
+    private static final int INDEX = 1;
+    private static final int VALUE = 2;
+    private static final AtomicLong counter = new AtomicLong(0L);
+    // Same order as TupleCodeGenerator, which can't be referenced without loading Janino
+    private static final Class<?>[] TYPES = {Long.TYPE, Integer.TYPE, Short.TYPE, Character.TYPE, Byte.TYPE, Float.TYPE, Double.TYPE};
+
+    private final Class<?> iface;
+    private final String[] fieldNames;
+    private final Class<?>[] fieldTypes;
+    private final int[] layout;
+    private final boolean sequenceLocked;
+    private final String className;
+    private Class<?> allocatorClass;
+
+    /**
+     * @param iface      - interface implemented by the tuple, or null
+     * @param fieldNames - field names
+     * @param fieldTypes - primitive field types
+     * @param layout     - offset of each field within a direct record, or null to generate a heap tuple
+     */
+    public TupleBytecodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout) {
+        this(iface, fieldNames, fieldTypes, layout, false);
+    }
+
+    /**
+     * @param sequenceLocked - whether direct records start with a version word, in which case the tuple
+     *                       implements {@link SequenceLock}
+     */
+    public TupleBytecodeGenerator(Class<?> iface, String[] fieldNames, Class<?>[] fieldTypes, int[] layout, boolean sequenceLocked) {
+        if (sequenceLocked && layout == null) {
+            throw new IllegalArgumentException("Only direct tuples can be sequence locked");
+        }
+        this.iface = iface;
+        this.fieldNames = fieldNames.clone();
+        this.fieldTypes = fieldTypes.clone();
+        this.layout = layout == null ? null : layout.clone();
+        this.sequenceLocked = sequenceLocked;
+        this.className = PACKAGE + nextClassName();
+    }
+
+    /**
+     * Shared with {@link TupleCodeGenerator}, without loading any Janino classes.
+     *
+     * @return - a unique simple name for a generated tuple class
+     */
+    static String nextClassName() {
+        return "FastTuple" + counter.getAndIncrement();
+    }
+
+    /**
+     * Long, int, double and float fields get atomic accessors, named after the field, such as {@code compareAndSetCount}
+     * for a field named {@code count}. These are the widths both heap and direct memory support atomically.
+     * Floating point fields are compared by their raw bits, and added to in a compare and set loop.
+     *
+     * @param type - field type
+     * @return - whether atomic accessors are generated for fields of the type
+     */
+    static boolean isAtomic(Class<?> type) {
+        return type.equals(Long.TYPE) || type.equals(Integer.TYPE) || type.equals(Double.TYPE) || type.equals(Float.TYPE);
+    }
+
+    /**
+     * Adds to a double field of a generated heap tuple. Field handles have no numeric atomic updates for floating
+     * point fields, so the generated getAndAdd accessor calls this instead, passing its constant handle.
+     *
+     * @param handle - handle to the field
+     * @param tuple  - tuple holding the field
+     * @param delta  - value to add
+     * @return - the previous value of the field
+     */
+    public static double getAndAddDouble(VarHandle handle, Object tuple, double delta) {
+        double current;
+        do {
+            current = (double) handle.getVolatile(tuple);
+        } while (!handle.weakCompareAndSet(tuple, current, current + delta));
+        return current;
+    }
+
+    /**
+     * Float counterpart of {@link #getAndAddDouble(VarHandle, Object, double)}.
+     */
+    public static float getAndAddFloat(VarHandle handle, Object tuple, float delta) {
+        float current;
+        do {
+            current = (float) handle.getVolatile(tuple);
+        } while (!handle.weakCompareAndSet(tuple, current, current + delta));
+        return current;
+    }
+
+    static String atomicAccessor(String operation, String fieldName) {
+        return operation + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    /**
+     * Defines the tuple class and its allocator in the shared class loader, see {@link GeneratedClassLoader#shared()}.
+     *
+     * @return - the tuple {@link Class}
+     * @throws IllegalArgumentException - if a field name is not a valid identifier,
+     *                                  or the interface declares methods the tuple does not implement
+     */
+    public Class<?> generateClass() {
+        validate();
+        final GeneratedClassLoader loader = GeneratedClassLoader.shared();
+        final Class<?> tupleClass = loader.define(className, generateTuple());
+        this.allocatorClass = loader.define(className + "Allocator", generateAllocator());
+        return tupleClass;
+    }
+
+    public TupleAllocatorGenerator.TupleAllocator createAllocator() throws ReflectiveOperationException {
+        if (allocatorClass == null) {
+            throw new IllegalStateException("Tuple class has not been generated");
+        }
+        return (TupleAllocatorGenerator.TupleAllocator) allocatorClass.getConstructor().newInstance();
+    }
+
+    private void validate() {
+        final Set<String> names = new HashSet<>();
+        for (String name : fieldNames) {
+            if (!isIdentifier(name) || !names.add(name)) {
+                throw new IllegalArgumentException("Invalid field name " + name);
+            }
+        }
+        if (iface == null) {
+            return;
+        }
+        for (Method method : iface.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && !implemented(method)) {
+                throw new IllegalArgumentException("Schema does not implement " + method);
+            }
+        }
+    }
+
+    private boolean implemented(Method method) {
+        final Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (!fieldNames[i].equals(method.getName())) {
+                continue;
+            }
+            if (parameters.length == 0 && method.getReturnType().equals(fieldTypes[i])) {
+                return true;
+            }
+            if (parameters.length == 1 && parameters[0].equals(fieldTypes[i]) && method.getReturnType().equals(Void.TYPE)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (isAtomic(fieldTypes[i]) && isAtomicAccessor(method, fieldNames[i], fieldTypes[i])) {
+                return true;
+            }
+        }
+        if (sequenceLocked && declares(SequenceLock.class, method)) {
+            return true;
+        }
+        // Indexed accessors are implemented for every schema
+        return declares(FastTuple.class, method);
+    }
+
+    private static boolean declares(Class<?> type, Method method) {
+        try {
+            return type.getMethod(method.getName(), method.getParameterTypes()).getReturnType().equals(method.getReturnType());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isAtomicAccessor(Method method, String fieldName, Class<?> type) {
+        final String name = method.getName();
+        final Class<?>[] parameters = method.getParameterTypes();
+        final Class<?> returnType = method.getReturnType();
+        if (name.equals(atomicAccessor("compareAndSet", fieldName))) {
+            return Arrays.equals(parameters, new Class<?>[]{type, type}) && returnType.equals(Boolean.TYPE);
+        } else if (name.equals(atomicAccessor("getAndAdd", fieldName))) {
+            return Arrays.equals(parameters, new Class<?>[]{type}) && returnType.equals(type);
+        } else if (name.equals(atomicAccessor("getVolatile", fieldName))) {
+            return parameters.length == 0 && returnType.equals(type);
+        } else if (name.equals(atomicAccessor("setRelease", fieldName))) {
+            return Arrays.equals(parameters, new Class<?>[]{type}) && returnType.equals(Void.TYPE);
+        }
+        return false;
+    }
+
+    private byte[] generateTuple() {
+        final List<String> interfaces = new ArrayList<>();
+        if (iface != null) {
+            interfaces.add(internalName(iface));
+        }
+        if (sequenceLocked) {
+            interfaces.add(SEQUENCE_LOCK);
+        }
+        final ClassFileWriter writer = new ClassFileWriter(className, FAST_TUPLE, interfaces.toArray(new String[0]));
+        // Keeps a full privilege lookup in a private field, where only TupleLookups reads it
+        writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, TupleLookups.FIELD, descriptor(MethodHandles.Lookup.class));
+        final ClassFileWriter.Code initializer = writer.method(ACC_STATIC, "<clinit>", "()V", MAX_STACK)
+                .op(INVOKESTATIC, writer.methodRef(internalName(MethodHandles.class), "lookup", "()" + descriptor(MethodHandles.Lookup.class)))
+                .op(PUTSTATIC, writer.fieldRef(className, TupleLookups.FIELD, descriptor(MethodHandles.Lookup.class)));
+        if (layout == null) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                writer.field(ACC_PUBLIC, fieldNames[i], descriptor(fieldTypes[i]));
+            }
+            generateHandles(writer, initializer);
+        } else {
+            writer.field(ACC_PUBLIC, ADDRESS, "J");
+        }
+        initializer.op(RETURN);
+        generateConstructor(writer, FAST_TUPLE);
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            final Class<?> type = fieldTypes[i];
+            final ClassFileWriter.Code getter = writer.method(ACC_PUBLIC, fieldNames[i], "()" + descriptor(type), MAX_STACK);
+            read(writer, getter, i);
+            getter.op(returnOpcode(type));
+
+            final ClassFileWriter.Code setter = writer.method(ACC_PUBLIC, fieldNames[i], "(" + descriptor(type) + ")V", MAX_STACK);
+            write(writer, setter, i, () -> setter.local(loadOpcode(type), 1));
+            setter.op(RETURN);
+
+            if (isAtomic(type)) {
+                generateAtomicAccessors(writer, i);
+            }
+        }
+
+        if (sequenceLocked) {
+            generateSequenceLock(writer);
+        }
+
+        generateSwitch(writer, writer.method(ACC_PUBLIC, "get", "(I)" + descriptor(Object.class), MAX_STACK), null, (code, i) -> {
+            read(writer, code, i);
+            final String box = internalName(boxed(fieldTypes[i]));
+            code.op(INVOKESTATIC, writer.methodRef(box, "valueOf", "(" + descriptor(fieldTypes[i]) + ")L" + box + ";"))
+                    .op(ARETURN);
+        });
+        generateSwitch(writer, writer.method(ACC_PUBLIC, "set", "(I" + descriptor(Object.class) + ")V", MAX_STACK), null, (code, i) -> {
+            write(writer, code, i, () -> {
+                final String box = internalName(boxed(fieldTypes[i]));
+                code.local(ALOAD, VALUE)
+                        .op(CHECKCAST, writer.classRef(box))
+                        .op(INVOKEVIRTUAL, writer.methodRef(box, fieldTypes[i].getName() + "Value", "()" + descriptor(fieldTypes[i])));
+            });
+            code.op(RETURN);
+        });
+        for (Class<?> type : TYPES) {
+            final String accessor = TypeMapping.toAccessorName(type);
+            generateSwitch(writer, writer.method(ACC_PUBLIC, "get" + accessor, "(I)" + descriptor(type), MAX_STACK), type, (code, i) -> {
+                read(writer, code, i);
+                code.op(returnOpcode(type));
+            });
+            generateSwitch(writer, writer.method(ACC_PUBLIC, "set" + accessor, "(I" + descriptor(type) + ")V", MAX_STACK), type, (code, i) -> {
+                write(writer, code, i, () -> code.local(loadOpcode(type), VALUE));
+                code.op(RETURN);
+            });
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Heap tuples look up a {@link VarHandle} for each of their atomic fields once, when the class is initialized.
+     * Since the handles are static final fields of the tuple class the JIT treats them as constants, so the
+     * atomic accessors compile down to the same instructions as {@link java.util.concurrent.atomic.AtomicLong}.
+     */
+    private void generateHandles(ClassFileWriter writer, ClassFileWriter.Code initializer) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (!isAtomic(fieldTypes[i])) {
+                continue;
+            }
+            final String boxed = internalName(boxed(fieldTypes[i]));
+            writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, fieldNames[i] + HANDLE_SUFFIX, descriptor(VarHandle.class));
+            initializer.op(INVOKESTATIC, writer.methodRef(internalName(MethodHandles.class), "lookup", "()" + descriptor(MethodHandles.Lookup.class)))
+                    .op(LDC_W, writer.classRef(className))
+                    .op(LDC_W, writer.string(fieldNames[i]))
+                    .op(GETSTATIC, writer.fieldRef(boxed, "TYPE", descriptor(Class.class)))
+                    .op(INVOKEVIRTUAL, writer.methodRef(internalName(MethodHandles.Lookup.class), "findVarHandle",
+                            "(" + descriptor(Class.class) + descriptor(String.class) + descriptor(Class.class) + ")" + descriptor(VarHandle.class)))
+                    .op(PUTSTATIC, writer.fieldRef(className, fieldNames[i] + HANDLE_SUFFIX, descriptor(VarHandle.class)));
+        }
+    }
+
+    /**
+     * Generates the compareAndSet, getAndAdd, getVolatile and setRelease accessors of a field. Heap fields invoke
+     * the matching access mode of the field's {@link VarHandle}, direct fields the matching atomic operation of
+     * {@link Coterie} on the field's address.
+     */
+    private void generateAtomicAccessors(ClassFileWriter writer, int index) {
+        final Class<?> type = fieldTypes[index];
+        final String value = descriptor(type);
+        final String accessor = TypeMapping.toAccessorName(type);
+        final int load = loadOpcode(type);
+        final int second = 1 + (type.equals(Long.TYPE) || type.equals(Double.TYPE) ? 2 : 1);
+
+        final ClassFileWriter.Code compareAndSet = writer.method(ACC_PUBLIC, atomicAccessor("compareAndSet", fieldNames[index]), "(" + value + value + ")Z", MAX_STACK);
+        pushTarget(writer, compareAndSet, index);
+        compareAndSet.local(load, 1)
+                .local(load, second);
+        invokeAtomic(writer, compareAndSet, "compareAndSet", "compareAndSwap" + accessor, value + value, "Z")
+                .op(IRETURN);
+
+        final ClassFileWriter.Code getAndAdd = writer.method(ACC_PUBLIC, atomicAccessor("getAndAdd", fieldNames[index]), "(" + value + ")" + value, MAX_STACK);
+        pushTarget(writer, getAndAdd, index);
+        getAndAdd.local(load, 1);
+        if (layout == null && (type.equals(Double.TYPE) || type.equals(Float.TYPE))) {
+            getAndAdd.op(INVOKESTATIC, writer.methodRef(BYTECODE_GENERATOR, "getAndAdd" + accessor,
+                    "(" + descriptor(VarHandle.class) + descriptor(Object.class) + value + ")" + value));
+        } else {
+            invokeAtomic(writer, getAndAdd, "getAndAdd", "getAndAdd" + accessor, value, value);
+        }
+        getAndAdd.op(returnOpcode(type));
+
+        final ClassFileWriter.Code getVolatile = writer.method(ACC_PUBLIC, atomicAccessor("getVolatile", fieldNames[index]), "()" + value, MAX_STACK);
+        pushTarget(writer, getVolatile, index);
+        invokeAtomic(writer, getVolatile, "getVolatile", "get" + accessor + "Volatile", "", value)
+                .op(returnOpcode(type));
+
+        final ClassFileWriter.Code setRelease = writer.method(ACC_PUBLIC, atomicAccessor("setRelease", fieldNames[index]), "(" + value + ")V", MAX_STACK);
+        pushTarget(writer, setRelease, index);
+        setRelease.local(load, 1);
+        invokeAtomic(writer, setRelease, "setRelease", "putOrdered" + accessor, value, "V")
+                .op(RETURN);
+    }
+
+    /**
+     * VarHandle access modes are signature polymorphic, so they are invoked with the exact types of the tuple
+     * and the field, which lets the call link without any conversions.
+     */
+    private ClassFileWriter.Code invokeAtomic(ClassFileWriter writer, ClassFileWriter.Code code, String handleMethod, String coterieMethod, String arguments, String result) {
+        if (layout == null) {
+            return code.op(INVOKEVIRTUAL, writer.methodRef(VAR_HANDLE, handleMethod, "(L" + className + ";" + arguments + ")" + result));
+        }
+        return code.op(INVOKESTATIC, writer.methodRef(COTERIE, coterieMethod, "(J" + arguments + ")" + result));
+    }
+
+    /**
+     * Implements {@link SequenceLock} by passing the address of the record, where the version word lives,
+     * to {@link SequenceLocks}.
+     */
+    private void generateSequenceLock(ClassFileWriter writer) {
+        final int address = writer.fieldRef(className, ADDRESS, "J");
+        writer.method(ACC_PUBLIC, "beginWrite", "()J", MAX_STACK)
+                .op(ALOAD_0)
+                .op(GETFIELD, address)
+                .op(INVOKESTATIC, writer.methodRef(SEQUENCE_LOCKS, "beginWrite", "(J)J"))
+                .op(returnOpcode(Long.TYPE));
+        writer.method(ACC_PUBLIC, "commitWrite", "()V", MAX_STACK)
+                .op(ALOAD_0)
+                .op(GETFIELD, address)
+                .op(INVOKESTATIC, writer.methodRef(SEQUENCE_LOCKS, "commitWrite", "(J)V"))
+                .op(RETURN);
+        writer.method(ACC_PUBLIC, "beginRead", "()J", MAX_STACK)
+                .op(ALOAD_0)
+                .op(GETFIELD, address)
+                .op(INVOKESTATIC, writer.methodRef(SEQUENCE_LOCKS, "beginRead", "(J)J"))
+                .op(returnOpcode(Long.TYPE));
+        writer.method(ACC_PUBLIC, "validate", "(J)Z", MAX_STACK)
+                .op(ALOAD_0)
+                .op(GETFIELD, address)
+                .local(loadOpcode(Long.TYPE), 1)
+                .op(INVOKESTATIC, writer.methodRef(SEQUENCE_LOCKS, "validate", "(JJ)Z"))
+                .op(IRETURN);
+    }
+
+    private void pushTarget(ClassFileWriter writer, ClassFileWriter.Code code, int index) {
+        if (layout == null) {
+            code.op(GETSTATIC, writer.fieldRef(className, fieldNames[index] + HANDLE_SUFFIX, descriptor(VarHandle.class))).op(ALOAD_0);
+        } else {
+            pushAddress(writer, code, index);
+        }
+    }
+
+    /**
+     * Direct tuples get a {@link TupleAllocatorGenerator.FlyweightAllocator}, which re-points them by storing to the
+     * address field directly.
+     */
+    private byte[] generateAllocator() {
+        final ClassFileWriter writer = new ClassFileWriter(className + "Allocator", OBJECT, layout == null ? ALLOCATOR : FLYWEIGHT_ALLOCATOR);
+        generateConstructor(writer, OBJECT);
+        writer.method(ACC_PUBLIC, "allocate", "()" + descriptor(FastTuple.class), MAX_STACK)
+                .op(NEW, writer.classRef(className))
+                .op(DUP)
+                .op(INVOKESPECIAL, writer.methodRef(className, "<init>", "()V"))
+                .op(ARETURN);
+        if (layout != null) {
+            final int address = writer.fieldRef(className, ADDRESS, "J");
+            writer.method(ACC_PUBLIC, "moveTo", "(" + descriptor(FastTuple.class) + "J)V", MAX_STACK)
+                    .local(ALOAD, 1)
+                    .op(CHECKCAST, writer.classRef(className))
+                    .local(loadOpcode(Long.TYPE), 2)
+                    .op(PUTFIELD, address)
+                    .op(RETURN);
+            writer.method(ACC_PUBLIC, "position", "(" + descriptor(FastTuple.class) + ")J", MAX_STACK)
+                    .local(ALOAD, 1)
+                    .op(CHECKCAST, writer.classRef(className))
+                    .op(GETFIELD, address)
+                    .op(returnOpcode(Long.TYPE));
+        }
+        return writer.toByteArray();
+    }
+
+    private static void generateConstructor(ClassFileWriter writer, String superName) {
+        writer.method(ACC_PUBLIC, "<init>", "()V", MAX_STACK)
+                .op(ALOAD_0)
+                .op(INVOKESPECIAL, writer.methodRef(superName, "<init>", "()V"))
+                .op(RETURN);
+    }
+
+    /**
+     * Switches on the 1-based index argument, generating a case for every field of the given type, or every field
+     * when the type is null. Any other index throws an {@link IllegalArgumentException}.
+     */
+    private void generateSwitch(ClassFileWriter writer, ClassFileWriter.Code code, Class<?> type, Case body) {
+        int low = -1;
+        int high = -1;
+        for (int i = 0; i < fieldTypes.length; i++) {
+            if (type == null || type.equals(fieldTypes[i])) {
+                low = low < 0 ? i : low;
+                high = i;
+            }
+        }
+        if (low < 0) {
+            code.throwNew(INDEX_OUT_OF_RANGE);
+            return;
+        }
+        final ClassFileWriter.Label defaultCase = new ClassFileWriter.Label();
+        final ClassFileWriter.Label[] cases = new ClassFileWriter.Label[high - low + 1];
+        for (int i = low; i <= high; i++) {
+            cases[i - low] = type == null || type.equals(fieldTypes[i]) ? new ClassFileWriter.Label() : defaultCase;
+        }
+        code.tableSwitch(INDEX, low + 1, defaultCase, cases);
+        for (int i = low; i <= high; i++) {
+            if (cases[i - low] != defaultCase) {
+                code.mark(cases[i - low]);
+                body.generate(code, i);
+            }
+        }
+        code.mark(defaultCase).throwNew(INDEX_OUT_OF_RANGE);
+    }
+
+    /**
+     * Pushes the value of a field.
+     */
+    private void read(ClassFileWriter writer, ClassFileWriter.Code code, int index) {
+        final String type = descriptor(fieldTypes[index]);
+        if (layout == null) {
+            code.op(ALOAD_0).op(GETFIELD, writer.fieldRef(className, fieldNames[index], type));
+        } else {
+            pushAddress(writer, code, index);
+            code.op(INVOKESTATIC, writer.methodRef(COTERIE, "get" + TypeMapping.toAccessorName(fieldTypes[index]), "(J)" + type));
+        }
+    }
+
+    /**
+     * Stores the value pushed by the value generator into a field.
+     */
+    private void write(ClassFileWriter writer, ClassFileWriter.Code code, int index, Runnable value) {
+        final String type = descriptor(fieldTypes[index]);
+        if (layout == null) {
+            code.op(ALOAD_0);
+            value.run();
+            code.op(PUTFIELD, writer.fieldRef(className, fieldNames[index], type));
+        } else {
+            pushAddress(writer, code, index);
+            value.run();
+            code.op(INVOKESTATIC, writer.methodRef(COTERIE, "put" + TypeMapping.toAccessorName(fieldTypes[index]), "(J" + type + ")V"));
+        }
+    }
+
+    private void pushAddress(ClassFileWriter writer, ClassFileWriter.Code code, int index) {
+        code.op(ALOAD_0)
+                .op(GETFIELD, writer.fieldRef(className, ADDRESS, "J"))
+                .pushInt(layout[index])
+                .op(I2L)
+                .op(LADD);
+    }
+
+    private interface Case {
+        void generate(ClassFileWriter.Code code, int index);
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int loadOpcode(Class<?> type) {
+        if (type.equals(Long.TYPE)) return 0x16;
+        if (type.equals(Float.TYPE)) return 0x17;
+        if (type.equals(Double.TYPE)) return 0x18;
+        return 0x15;
+    }
+
+    static int returnOpcode(Class<?> type) {
+        if (type.equals(Long.TYPE)) return 0xad;
+        if (type.equals(Float.TYPE)) return 0xae;
+        if (type.equals(Double.TYPE)) return 0xaf;
+        return 0xac;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (type.equals(Long.TYPE)) return Long.class;
+        if (type.equals(Integer.TYPE)) return Integer.class;
+        if (type.equals(Short.TYPE)) return Short.class;
+        if (type.equals(Character.TYPE)) return Character.class;
+        if (type.equals(Byte.TYPE)) return Byte.class;
+        if (type.equals(Float.TYPE)) return Float.class;
+        return Double.class;
+    }
+
+    static String descriptor(Class<?> type) {
+        if (type.equals(Long.TYPE)) return "J";
+        if (type.equals(Integer.TYPE)) return "I";
+        if (type.equals(Short.TYPE)) return "S";
+        if (type.equals(Character.TYPE)) return "C";
+        if (type.equals(Byte.TYPE)) return "B";
+        if (type.equals(Float.TYPE)) return "F";
+        if (type.equals(Double.TYPE)) return "D";
+        return "L" + internalName(type) + ";";
+    }
+
+    static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    /**
+     * Loads generated tuple classes, and field handles on JVMs without hidden classes.
+     * <p>
+     * Tuple classes share a loader rather than getting one each, as everything compiled against them is defined as
+     * a hidden class next to them. A class can only be unloaded along with its loader, so the shared loader is only
+     * held weakly, and is replaced once it has loaded {@link #SHARED_CLASSES} tuple classes. A long lived schema
+     * therefore keeps at most that many unreachable tuple classes in metaspace.
+     */
+    static final class GeneratedClassLoader extends ClassLoader {
+        static final int SHARED_CLASSES = 64;
+        private static WeakReference<GeneratedClassLoader> shared = new WeakReference<>(null);
+        private static int sharedClasses = 0;
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * @return - the loader to define the next tuple class in
+         */
+        static synchronized GeneratedClassLoader shared() {
+            GeneratedClassLoader loader = shared.get();
+            if (loader == null || sharedClasses == SHARED_CLASSES) {
+                loader = new GeneratedClassLoader(TupleBytecodeGenerator.class.getClassLoader());
+                shared = new WeakReference<>(loader);
+                sharedClasses = 0;
+            }
+            sharedClasses++;
+            return loader;
+        }
+
+        Class<?> define(String internalName, byte[] bytecode) {
+            return defineClass(internalName.replace('/', '.'), bytecode, 0, bytecode.length);
+        }
+    }
+}
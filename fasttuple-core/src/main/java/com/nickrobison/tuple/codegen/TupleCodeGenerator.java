@@ -6,16 +6,22 @@ import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.janino.Java;
 import org.codehaus.janino.Java.AbstractCompilationUnit.SingleTypeImportDeclaration;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
 import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.util.ClassFile;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static com.nickrobison.tuple.codegen.CodegenUtil.nullConstructor;
+import static com.nickrobison.tuple.codegen.CodegenUtil.parseStatements;
 import static java.lang.Character.toUpperCase;
 
 /**
@@ -24,7 +30,6 @@ import static java.lang.Character.toUpperCase;
 public abstract class TupleCodeGenerator extends SimpleCompiler {
     public static final String VALUE = "value";
     public static final String INDEX = "index";
-    private static final AtomicLong counter = new AtomicLong(0L);
     protected static final Class<?>[] types = new Class[]{
             Long.TYPE,
             Integer.TYPE,
@@ -45,35 +50,58 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
         this.iface = iface;
         this.fieldNames = fieldNames.clone();
         this.fieldTypes = fieldTypes.clone();
-        this.className = "FastTuple" + counter.getAndIncrement();
+        this.className = TupleBytecodeGenerator.nextClassName();
         this.setParentClassLoader(this.getClass().getClassLoader());
     }
 
     protected abstract Java.FieldDeclaration[] generateFields();
 
+    /**
+     * Fingerprints everything the generated class depends on, for the {@link BytecodeCache}.
+     * Generators which take additional inputs, such as a record layout, must include them.
+     *
+     * @return - cache key for the generated class
+     */
+    protected String cacheKey() {
+        return getClass().getName() + ':' + (iface == null ? "" : iface.getName()) + ':'
+                + Arrays.toString(fieldNames) + ':' + Arrays.toString(fieldTypes);
+    }
+
     public Class<?> cookToClass() throws CompileException {
+        final String cacheKey = BytecodeCache.isEnabled() ? cacheKey() : null;
+        if (cacheKey != null) {
+            final Class<?> cached = BytecodeCache.load(cacheKey, getClass().getClassLoader(), null);
+            if (cached != null) {
+                return cached;
+            }
+        }
         Java.CompilationUnit cu = makeCompilationUnit();
         cook(cu);
-        try {
-            return getClassLoader().loadClass("com.nickrobison.tuple." + className);
-        } catch (ClassNotFoundException ex) {
+        if (cacheKey != null) {
+            BytecodeCache.store(cacheKey, "com.nickrobison.tuple." + className, this);
+        }
+        // Defined in the same loader as other tuple classes, rather than the one Janino creates for each compilation
+        final TupleBytecodeGenerator.GeneratedClassLoader loader = TupleBytecodeGenerator.GeneratedClassLoader.shared();
+        Class<?> tupleClass = null;
+        for (ClassFile classFile : getClassFiles()) {
+            final Class<?> defined = loader.define(classFile.getThisClassName(), classFile.toByteArray());
+            if (classFile.getThisClassName().equals("com.nickrobison.tuple." + className)) {
+                tupleClass = defined;
+            }
+        }
+        if (tupleClass == null) {
             throw new InternalCompilerException(
-                "SNO: Generated compilation unit does not declare class 'com.nickrobison.tuple." + className + "'",
-                ex
+                "SNO: Generated compilation unit does not declare class 'com.nickrobison.tuple." + className + "'"
             );
         }
+        return tupleClass;
     }
 
     protected Java.CompilationUnit makeCompilationUnit() throws CompileException {
         Java.CompilationUnit cu = new Java.CompilationUnit(null, new SingleTypeImportDeclaration[]{new SingleTypeImportDeclaration(loc, "com.nickrobison.tuple.unsafe.Coterie".split("\\."))});
         Location cuLoc = new Location("", ((short) 0), ((short) 0));
         cu.setPackageDeclaration(new Java.PackageDeclaration(cuLoc, "com.nickrobison.tuple"));
-        Class<?>[] ifaces;
-        if (iface != null) {
-            ifaces = new Class[]{iface};
-        } else {
-            ifaces = new Class[]{};
-        }
+        Class<?>[] ifaces = generateInterfaces();
         Java.PackageMemberClassDeclaration cd = new Java.PackageMemberClassDeclaration(
                 cuLoc,
                 null, //doc
@@ -89,6 +117,7 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
         }
 
         cd.addConstructor(nullConstructor(cuLoc));
+        cd.addFieldDeclaration(generateLookupField());
 
         for (int i = 0; i < fieldNames.length; i++) {
             String name = fieldNames[i];
@@ -97,6 +126,14 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
 
             cd.addDeclaredMethod(generateGetter(name, type, i));
             cd.addDeclaredMethod(generateSetter(name, type, i));
+            if (TupleBytecodeGenerator.isAtomic(type) && atomicTarget(i) != null) {
+                for (Java.MethodDeclarator method : generateAtomicAccessors(name, type, i)) {
+                    cd.addDeclaredMethod(method);
+                }
+            }
+        }
+        for (Java.MethodDeclarator method : generateAdditionalMethods()) {
+            cd.addDeclaredMethod(method);
         }
         cd.addDeclaredMethod(generateIndexedGetter());
         cd.addDeclaredMethod(generateIndexedSetter());
@@ -109,6 +146,39 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
         return cu;
     }
 
+    protected Class<?>[] generateInterfaces() {
+        return iface == null ? new Class<?>[]{} : new Class<?>[]{iface};
+    }
+
+    /**
+     * @return - methods generated in addition to the field accessors, such as those of extra interfaces
+     * @throws CompileException - if the methods cannot be generated
+     */
+    protected List<Java.MethodDeclarator> generateAdditionalMethods() throws CompileException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Keeps a full privilege lookup on the tuple class in a private static field, which {@link TupleLookups} reads
+     * so that classes compiled against the tuple class can be defined as hidden classes alongside it.
+     */
+    protected Java.FieldDeclaration generateLookupField() {
+        try {
+            return new Java.FieldDeclaration(
+                    loc,
+                    null,
+                    new Java.AccessModifier[]{new Java.AccessModifier("private", loc), new Java.AccessModifier("static", loc), new Java.AccessModifier("final", loc)},
+                    classToType(loc, MethodHandles.Lookup.class),
+                    new Java.VariableDeclarator[]{
+                            new Java.VariableDeclarator(loc, TupleLookups.FIELD, 0, new Parser(new Scanner(null, new StringReader(
+                                    "java.lang.invoke.MethodHandles.lookup()"))).parseExpressionList()[0])
+                    }
+            );
+        } catch (CompileException | IOException e) {
+            throw new InternalCompilerException("SNO: Unable to parse lookup field", e);
+        }
+    }
+
     protected Java.MethodDeclarator generateIndexedGetter() {
         return new Java.MethodDeclarator(
                 loc,
@@ -193,13 +263,76 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
         );
     }
 
-    protected abstract List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl();
+    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl() {
+        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
+        for (int i = 0; i < fieldNames.length; i++) {
+            list.add(
+                    new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
+                            Collections.singletonList(new Java.IntegerLiteral(loc, Integer.toString(i + 1))),
+                            false,
+                            Collections.singletonList(new Java.ReturnStatement(loc,
+                                    generateGetInvocation(fieldTypes[i], i)))
+                    )
+            );
+        }
+        list.add(generateDefaultCase());
+        return list;
+    }
 
-    protected abstract List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl(Class<?> type);
+    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedGetterImpl(Class<?> type) {
+        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
+        for (int n = 0; n < fieldNames.length; n++) {
+            if (!type.equals(fieldTypes[n])) {
+                continue;
+            }
+            list.add(new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
+                    Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(n + 1))),
+                    false,
+                    Collections.singletonList(
+                            new Java.ReturnStatement(loc, generateGetInvocation(type, n))
+                    )
+            ));
+        }
+        list.add(generateDefaultCase());
+        return list;
+    }
 
-    protected abstract List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value) throws CompileException;
+    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value) throws CompileException {
+        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
+        for (int i = 0; i < fieldNames.length; i++) {
+            list.add(
+                    new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
+                            Collections.singletonList(new Java.IntegerLiteral(loc, Integer.toString(i + 1))),
+                            false,
+                            List.of(
+                                    new Java.ExpressionStatement(generateSetInvocation(fieldTypes[i], i, value)),
+                                    new Java.BreakStatement(loc, null)
+                            )
+                    )
+            );
+        }
+        list.add(generateDefaultCase());
+        return list;
+    }
 
-    protected abstract List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value, Class<?> type) throws CompileException;
+    protected List<Java.SwitchStatement.SwitchBlockStatementGroup> generateIndexedSetterImpl(String value, Class<?> type) throws CompileException {
+        List<Java.SwitchStatement.SwitchBlockStatementGroup> list = new ArrayList<>();
+        for (int n = 0; n < fieldNames.length; n++) {
+            if (!type.equals(fieldTypes[n])) {
+                continue;
+            }
+            list.add(new Java.SwitchStatement.SwitchBlockStatementGroup(loc,
+                    Collections.singletonList(new Java.IntegerLiteral(loc, String.valueOf(n + 1))),
+                    false,
+                    List.of(
+                            new Java.ExpressionStatement(generateSetInvocation(type, n, value)),
+                            new Java.BreakStatement(loc, null)
+                    )
+            ));
+        }
+        list.add(generateDefaultCase());
+        return list;
+    }
 
     protected Java.MethodDeclarator generateGetter(String name, Class<?> type, int index) {
         // unsafe().get* (long)
@@ -236,6 +369,62 @@ public abstract class TupleCodeGenerator extends SimpleCompiler {
         );
     }
 
+    /**
+     * Locates a field for the atomic operations of {@link com.nickrobison.tuple.unsafe.Coterie}, such as
+     * {@code address + 8} for a field of a direct record.
+     *
+     * @param index - index of the field
+     * @return - source of the leading arguments to the atomic operations, or null if the field cannot be accessed atomically
+     */
+    protected String atomicTarget(int index) {
+        return null;
+    }
+
+    /**
+     * Generates the compareAndSet, getAndAdd, getVolatile and setRelease accessors of a long, int, double or float field.
+     */
+    protected List<Java.MethodDeclarator> generateAtomicAccessors(String name, Class<?> type, int index) throws CompileException {
+        final String target = atomicTarget(index);
+        final String accessor = TypeMapping.toAccessorName(type);
+        try {
+            return List.of(
+                    method(Boolean.TYPE, TupleBytecodeGenerator.atomicAccessor("compareAndSet", name),
+                            new Java.FunctionDeclarator.FormalParameter[]{parameter(type, "expected"), parameter(type, "update")},
+                            "return Coterie.compareAndSwap" + accessor + "(" + target + ", expected, update);"),
+                    method(type, TupleBytecodeGenerator.atomicAccessor("getAndAdd", name),
+                            new Java.FunctionDeclarator.FormalParameter[]{parameter(type, VALUE)},
+                            "return Coterie.getAndAdd" + accessor + "(" + target + ", " + VALUE + ");"),
+                    method(type, TupleBytecodeGenerator.atomicAccessor("getVolatile", name),
+                            new Java.FunctionDeclarator.FormalParameter[]{},
+                            "return Coterie.get" + accessor + "Volatile(" + target + ");"),
+                    method(Void.TYPE, TupleBytecodeGenerator.atomicAccessor("setRelease", name),
+                            new Java.FunctionDeclarator.FormalParameter[]{parameter(type, VALUE)},
+                            "Coterie.putOrdered" + accessor + "(" + target + ", " + VALUE + ");")
+            );
+        } catch (IOException e) {
+            throw new InternalCompilerException("SNO: Unable to parse atomic accessors", e);
+        }
+    }
+
+    protected Java.MethodDeclarator method(Class<?> returnType, String name, Java.FunctionDeclarator.FormalParameter[] parameters, String body) throws CompileException, IOException {
+        return new Java.MethodDeclarator(
+                loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(CodegenUtil.PUBLIC, loc)},
+                null,
+                classToType(loc, returnType),
+                name,
+                new Java.FunctionDeclarator.FormalParameters(loc, parameters, false),
+                new Java.Type[]{},
+                null,
+                parseStatements(body)
+        );
+    }
+
+    protected Java.FunctionDeclarator.FormalParameter parameter(Class<?> type, String name) {
+        return new Java.FunctionDeclarator.FormalParameter(loc, new Java.AccessModifier[]{new Java.AccessModifier(CodegenUtil.PUBLIC, loc)}, classToType(loc, type), name);
+    }
+
     protected abstract Java.Rvalue generateGetInvocation(Class<?> type, int index);
 
     protected abstract Java.Rvalue generateSetInvocation(Class<?> type, int index, String value);
@@ -1,13 +1,15 @@
 package com.nickrobison.tuple.codegen;
 
+import com.nickrobison.tuple.DirectTupleSchema;
 import com.nickrobison.tuple.FastTuple;
 import com.nickrobison.tuple.TupleSchema;
-import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.janino.*;
 
 import java.io.StringReader;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -21,52 +23,248 @@ import static com.nickrobison.tuple.codegen.CodegenUtil.*;
 public class TupleExpressionGenerator extends SimpleCompiler {
     public interface TupleExpression {
         void evaluate(FastTuple tuple);
+
+        /**
+         * Evaluates the expression against every tuple in the array.
+         *
+         * @param tuples - tuples to evaluate
+         */
+        default void evaluateAll(FastTuple[] tuples) {
+            for (FastTuple tuple : tuples) {
+                evaluate(tuple);
+            }
+        }
+    }
+
+    /**
+     * A {@link TupleExpression} compiled against a {@link DirectTupleSchema}, which can also evaluate records and
+     * blocks of records by address.
+     */
+    public interface DirectTupleExpression extends TupleExpression {
+
+        /**
+         * Evaluates the expression directly against a record, without allocating a tuple.
+         *
+         * @param address - address of the record
+         */
+        void evaluate(long address);
+
+        /**
+         * Evaluates the expression against a block of records allocated by {@link DirectTupleSchema#createRecordArray(long)}.
+         *
+         * @param address - address of the first record
+         * @param count   - number of records to evaluate
+         */
+        void evaluateRange(long address, int count);
     }
 
     public interface ObjectTupleExpression {
         Object evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, Object[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectObjectTupleExpression extends ObjectTupleExpression {
+        Object evaluate(long address);
+
+        void evaluateRange(long address, int count, Object[] out);
     }
 
     public interface LongTupleExpression {
         long evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, long[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectLongTupleExpression extends LongTupleExpression {
+        long evaluate(long address);
+
+        void evaluateRange(long address, int count, long[] out);
     }
 
     public interface IntTupleExpression {
         int evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, int[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectIntTupleExpression extends IntTupleExpression {
+        int evaluate(long address);
+
+        void evaluateRange(long address, int count, int[] out);
     }
 
     public interface ShortTupleExpression {
         short evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, short[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectShortTupleExpression extends ShortTupleExpression {
+        short evaluate(long address);
+
+        void evaluateRange(long address, int count, short[] out);
     }
 
     public interface CharTupleExpression {
         char evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, char[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectCharTupleExpression extends CharTupleExpression {
+        char evaluate(long address);
+
+        void evaluateRange(long address, int count, char[] out);
     }
 
     public interface ByteTupleExpression {
         byte evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, byte[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectByteTupleExpression extends ByteTupleExpression {
+        byte evaluate(long address);
+
+        void evaluateRange(long address, int count, byte[] out);
     }
 
     public interface FloatTupleExpression {
         float evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, float[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectFloatTupleExpression extends FloatTupleExpression {
+        float evaluate(long address);
+
+        void evaluateRange(long address, int count, float[] out);
     }
 
     public interface DoubleTupleExpression {
         double evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, double[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectDoubleTupleExpression extends DoubleTupleExpression {
+        double evaluate(long address);
+
+        void evaluateRange(long address, int count, double[] out);
     }
 
     public interface BooleanTupleExpression {
         boolean evaluate(FastTuple tuple);
+
+        default void evaluateAll(FastTuple[] tuples, boolean[] out) {
+            for (int i = 0; i < tuples.length; i++) {
+                out[i] = evaluate(tuples[i]);
+            }
+        }
+    }
+
+    public interface DirectBooleanTupleExpression extends BooleanTupleExpression {
+        boolean evaluate(long address);
+
+        void evaluateRange(long address, int count, boolean[] out);
+    }
+
+    /**
+     * A compiled predicate which, in addition to testing single tuples, can write the indexes of every matching
+     * row into a selection vector. The generated loops are branch free: every row index is written, and the count
+     * only advances past it when the predicate matches, so selection vectors must be as long as the input.
+     */
+    public interface TupleFilter extends BooleanTupleExpression {
+
+        /**
+         * @param tuples    - tuples to test
+         * @param selection - receives the index of every matching tuple, must hold at least tuples.length elements
+         * @return - number of matching tuples
+         */
+        default int select(FastTuple[] tuples, int[] selection) {
+            int count = 0;
+            for (int i = 0; i < tuples.length; i++) {
+                selection[count] = i;
+                count += evaluate(tuples[i]) ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A {@link TupleFilter} compiled against a {@link DirectTupleSchema}, which can also select from blocks of records.
+     */
+    public interface DirectTupleFilter extends TupleFilter, DirectBooleanTupleExpression {
+
+        /**
+         * @param address   - address of the first record in a block allocated by {@link DirectTupleSchema#createRecordArray(long)}
+         * @param count     - number of records to test
+         * @param selection - receives the index of every matching record, must hold at least count elements
+         * @return - number of matching records
+         */
+        int selectRange(long address, int count, int[] selection);
+    }
+
+    /**
+     * Implemented by evaluators of expressions which declare parameters with {@link Builder#parameter(String, Class)}.
+     * Binding values creates a new instance of the already compiled class, so evaluating the same expression with
+     * different values never compiles or loads another class.
+     */
+    public interface Bindable {
+
+        /**
+         * @param values - a value for each parameter, in the order they were declared, numeric parameters accept
+         *               any {@link Number}
+         * @return - a new evaluator with the values bound, implementing the same interface as this one
+         */
+        Object bind(Object... values);
     }
 
     private static final String packageName = "com.nickrobison.tuple";
     private static final AtomicLong counter = new AtomicLong(0);
+    private static final int CACHE_SIZE = 256;
+    private static final ExpressionCache cache = new ExpressionCache(CACHE_SIZE);
     private final String expression;
     private final TupleSchema schema;
     private Class<?> evaluatorClass;
     private Object evaluator;
     private final Class<?> iface;
     private final Class<?> returnType;
+    private final String[] parameterNames;
+    private final Class<?>[] parameterTypes;
 
     public static Builder builder() {
         return new Builder();
@@ -75,6 +273,8 @@ public class TupleExpressionGenerator extends SimpleCompiler {
     public static class Builder {
         private String expression = null;
         private TupleSchema schema = null;
+        private final List<String> parameterNames = new ArrayList<>();
+        private final List<Class<?>> parameterTypes = new ArrayList<>();
 
         public Builder() {
         }
@@ -89,58 +289,262 @@ public class TupleExpressionGenerator extends SimpleCompiler {
             return this;
         }
 
+        /**
+         * Declares a parameter, which the expression can refer to by name, e.g. "tuple.a() > threshold".
+         * The compiled evaluator implements {@link Bindable}, and values are supplied with {@link #bind(Object, Object...)}.
+         * Until then every parameter is zero, or false.
+         *
+         * @param name - name of the parameter
+         * @param type - primitive type of the parameter
+         * @return - {@link Builder}
+         */
+        public Builder parameter(String name, Class<?> type) {
+            if (!type.isPrimitive() || type.equals(Void.TYPE)) {
+                throw new IllegalArgumentException("Parameter " + name + " must be a primitive type");
+            }
+            if (name.equals("tuple") || parameterNames.contains(name)) {
+                throw new IllegalArgumentException("Duplicate parameter " + name);
+            }
+            parameterNames.add(name);
+            parameterTypes.add(type);
+            return this;
+        }
+
+        /**
+         * Compiles the expression against a {@link DirectTupleSchema}, whose evaluators can also walk blocks of records.
+         *
+         * @param schema - {@link DirectTupleSchema} of the tuples
+         * @return - {@link DirectBuilder}
+         */
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            return new DirectBuilder(this).schema(schema);
+        }
+
         public TupleExpression returnVoid() throws Exception {
-            return (TupleExpression) new TupleExpressionGenerator(schema, expression, TupleExpression.class, Void.TYPE).evaluator();
+            return build(TupleExpression.class, DirectTupleExpression.class, Void.TYPE);
         }
 
         public ObjectTupleExpression returnObject() throws Exception {
-            return (ObjectTupleExpression) new TupleExpressionGenerator(schema, expression, ObjectTupleExpression.class, Object.class).evaluator();
+            return build(ObjectTupleExpression.class, DirectObjectTupleExpression.class, Object.class);
         }
 
         public LongTupleExpression returnLong() throws Exception {
-            return (LongTupleExpression) new TupleExpressionGenerator(schema, expression, LongTupleExpression.class, Long.TYPE).evaluator();
+            return build(LongTupleExpression.class, DirectLongTupleExpression.class, Long.TYPE);
         }
 
         public IntTupleExpression returnInt() throws Exception {
-            return (IntTupleExpression) new TupleExpressionGenerator(schema, expression, IntTupleExpression.class, Integer.TYPE).evaluator();
+            return build(IntTupleExpression.class, DirectIntTupleExpression.class, Integer.TYPE);
         }
 
         public ShortTupleExpression returnShort() throws Exception {
-            return (ShortTupleExpression) new TupleExpressionGenerator(schema, expression, ShortTupleExpression.class, Short.TYPE).evaluator();
+            return build(ShortTupleExpression.class, DirectShortTupleExpression.class, Short.TYPE);
         }
 
         public CharTupleExpression returnChar() throws Exception {
-            return (CharTupleExpression) new TupleExpressionGenerator(schema, expression, CharTupleExpression.class, Character.TYPE).evaluator();
+            return build(CharTupleExpression.class, DirectCharTupleExpression.class, Character.TYPE);
         }
 
         public ByteTupleExpression returnByte() throws Exception {
-            return (ByteTupleExpression) new TupleExpressionGenerator(schema, expression, ByteTupleExpression.class, Byte.TYPE).evaluator();
+            return build(ByteTupleExpression.class, DirectByteTupleExpression.class, Byte.TYPE);
         }
 
         public FloatTupleExpression returnFloat() throws Exception {
-            return (FloatTupleExpression) new TupleExpressionGenerator(schema, expression, FloatTupleExpression.class, Float.TYPE).evaluator();
+            return build(FloatTupleExpression.class, DirectFloatTupleExpression.class, Float.TYPE);
         }
 
         public DoubleTupleExpression returnDouble() throws Exception {
-            return (DoubleTupleExpression) new TupleExpressionGenerator(schema, expression, DoubleTupleExpression.class, Double.TYPE).evaluator();
+            return build(DoubleTupleExpression.class, DirectDoubleTupleExpression.class, Double.TYPE);
         }
 
         public BooleanTupleExpression returnBoolean() throws Exception {
-            return (BooleanTupleExpression) new TupleExpressionGenerator(schema, expression, BooleanTupleExpression.class, Boolean.TYPE).evaluator();
+            return build(BooleanTupleExpression.class, DirectBooleanTupleExpression.class, Boolean.TYPE);
+        }
+
+        /**
+         * Compiles a boolean expression into a {@link TupleFilter}.
+         *
+         * @return - {@link TupleFilter}
+         * @throws Exception - if the expression cannot be compiled
+         */
+        public TupleFilter returnFilter() throws Exception {
+            return build(TupleFilter.class, DirectTupleFilter.class, Boolean.TYPE);
+        }
+
+        /**
+         * Evaluators compiled against a {@link DirectTupleSchema} implement the direct variant of the interface.
+         */
+        private <T> T build(Class<T> iface, Class<? extends T> directIface, Class<?> returnType) throws Exception {
+            final Class<?> implemented = schema instanceof DirectTupleSchema ? directIface : iface;
+            final StringBuilder parameters = new StringBuilder();
+            for (int i = 0; i < parameterNames.size(); i++) {
+                parameters.append(parameterTypes.get(i).getName()).append(' ').append(parameterNames.get(i)).append(',');
+            }
+            final long stride = schema instanceof DirectTupleSchema ? ((DirectTupleSchema) schema).getByteSize() : 0;
+            final ExpressionCache.Key key = new ExpressionCache.Key(schema.tupleClass(), stride, expression, implemented, parameters.toString());
+            final Object cached = cache.get(key);
+            if (cached != null) {
+                return iface.cast(cached);
+            }
+            final Object evaluator = new TupleExpressionGenerator(schema, expression, implemented, returnType,
+                    parameterNames.toArray(new String[0]), parameterTypes.toArray(new Class<?>[0])).evaluator();
+            return iface.cast(cache.putIfAbsent(key, evaluator));
         }
 
     }
 
-    private TupleExpressionGenerator(TupleSchema schema, String expression, Class<?> iface, Class<?> returnType) throws Exception {
+    /**
+     * Builder for expressions over a {@link DirectTupleSchema}, which returns the direct variant of each interface.
+     */
+    public static class DirectBuilder extends Builder {
+
+        private DirectBuilder(Builder builder) {
+            expression(builder.expression);
+            for (int i = 0; i < builder.parameterNames.size(); i++) {
+                parameter(builder.parameterNames.get(i), builder.parameterTypes.get(i));
+            }
+        }
+
+        @Override
+        public DirectBuilder expression(String expression) {
+            super.expression(expression);
+            return this;
+        }
+
+        /**
+         * @param schema - must be a {@link DirectTupleSchema}
+         * @return - {@link DirectBuilder}
+         * @throws IllegalArgumentException - if the schema does not store its tuples off-heap
+         */
+        @Override
+        public DirectBuilder schema(TupleSchema schema) {
+            if (!(schema instanceof DirectTupleSchema)) {
+                throw new IllegalArgumentException("Schema must be a DirectTupleSchema");
+            }
+            super.schema(schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder schema(DirectTupleSchema schema) {
+            super.schema((TupleSchema) schema);
+            return this;
+        }
+
+        @Override
+        public DirectBuilder parameter(String name, Class<?> type) {
+            super.parameter(name, type);
+            return this;
+        }
+
+        @Override
+        public DirectTupleExpression returnVoid() throws Exception {
+            return (DirectTupleExpression) super.returnVoid();
+        }
+
+        @Override
+        public DirectObjectTupleExpression returnObject() throws Exception {
+            return (DirectObjectTupleExpression) super.returnObject();
+        }
+
+        @Override
+        public DirectLongTupleExpression returnLong() throws Exception {
+            return (DirectLongTupleExpression) super.returnLong();
+        }
+
+        @Override
+        public DirectIntTupleExpression returnInt() throws Exception {
+            return (DirectIntTupleExpression) super.returnInt();
+        }
+
+        @Override
+        public DirectShortTupleExpression returnShort() throws Exception {
+            return (DirectShortTupleExpression) super.returnShort();
+        }
+
+        @Override
+        public DirectCharTupleExpression returnChar() throws Exception {
+            return (DirectCharTupleExpression) super.returnChar();
+        }
+
+        @Override
+        public DirectByteTupleExpression returnByte() throws Exception {
+            return (DirectByteTupleExpression) super.returnByte();
+        }
+
+        @Override
+        public DirectFloatTupleExpression returnFloat() throws Exception {
+            return (DirectFloatTupleExpression) super.returnFloat();
+        }
+
+        @Override
+        public DirectDoubleTupleExpression returnDouble() throws Exception {
+            return (DirectDoubleTupleExpression) super.returnDouble();
+        }
+
+        @Override
+        public DirectBooleanTupleExpression returnBoolean() throws Exception {
+            return (DirectBooleanTupleExpression) super.returnBoolean();
+        }
+
+        @Override
+        public DirectTupleFilter returnFilter() throws Exception {
+            return (DirectTupleFilter) super.returnFilter();
+        }
+    }
+
+    /**
+     * Binds values to the parameters of a compiled expression.
+     *
+     * @param expression - evaluator built with at least one {@link Builder#parameter(String, Class)}
+     * @param values     - a value for each parameter, in the order they were declared
+     * @param <T>        - expression interface
+     * @return - a new evaluator of the same type, with the values bound
+     * @throws IllegalArgumentException - if the expression has no parameters, or the values do not match them
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T bind(T expression, Object... values) {
+        if (!(expression instanceof Bindable)) {
+            throw new IllegalArgumentException("Expression does not declare any parameters");
+        }
+        return (T) ((Bindable) expression).bind(values);
+    }
+
+    /**
+     * Discards every cached evaluator, so subsequent builds recompile their expressions.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return - number of evaluators currently cached
+     */
+    public static int cacheSize() {
+        return cache.size();
+    }
+
+    private TupleExpressionGenerator(TupleSchema schema, String expression, Class<?> iface, Class<?> returnType,
+                                     String[] parameterNames, Class<?>[] parameterTypes) throws Exception {
         this.schema = schema;
         this.expression = expression;
         this.iface = iface;
         this.returnType = returnType;
+        this.parameterNames = parameterNames;
+        this.parameterTypes = parameterTypes;
         setParentClassLoader(schema.getClassLoader());
         generateEvaluatorClass();
     }
 
     private void generateEvaluatorClass() throws Exception {
+        final String cacheKey = BytecodeCache.isEnabled() ? cacheKey() : null;
+        if (cacheKey != null) {
+            final Class<?> cached = BytecodeCache.load(cacheKey, schema.getClassLoader(), schema.tupleClass());
+            if (cached != null) {
+                this.evaluatorClass = cached;
+                this.evaluator = evaluatorClass.getConstructor().newInstance();
+                return;
+            }
+        }
         Scanner scanner = new Scanner(null, new StringReader(expression));
         Parser parser = new Parser(scanner);
         Location loc = parser.location();
@@ -153,25 +557,63 @@ public class TupleExpressionGenerator extends SimpleCompiler {
                 className,
                 null,
                 null,
-                new Java.Type[]{
-                        classToType(loc, iface)
-                }
+                parameterNames.length == 0
+                        ? new Java.Type[]{classToType(loc, iface)}
+                        : new Java.Type[]{classToType(loc, iface), classToType(loc, Bindable.class)}
         );
         cu.addPackageMemberTypeDeclaration(cd);
+        if (parameterNames.length > 0) {
+            for (int i = 0; i < parameterNames.length; i++) {
+                cd.addFieldDeclaration(new Java.FieldDeclaration(
+                        loc,
+                        null,
+                        new Java.AccessModifier[]{new Java.AccessModifier("private", loc)},
+                        classToType(loc, parameterTypes[i]),
+                        new Java.VariableDeclarator[]{new Java.VariableDeclarator(loc, parameterNames[i], 0, null)}));
+            }
+            cd.addDeclaredMethod(generateBindMethod(loc, className));
+        }
         cd.addDeclaredMethod(generateFrontendMethod(loc));
         cd.addDeclaredMethod(generateBackendMethod(parser));
+        cd.addDeclaredMethod(generateEvaluateAllMethod(loc));
+        if (schema instanceof DirectTupleSchema) {
+            cd.addDeclaredMethod(generateAddressMethod(loc));
+            cd.addDeclaredMethod(generateEvaluateRangeMethod(loc, ((DirectTupleSchema) schema).getByteSize()));
+        }
+        if (TupleFilter.class.isAssignableFrom(iface)) {
+            cd.addDeclaredMethod(generateSelectMethod(loc));
+            if (schema instanceof DirectTupleSchema) {
+                cd.addDeclaredMethod(generateSelectRangeMethod(loc, ((DirectTupleSchema) schema).getByteSize()));
+            }
+        }
         cook(cu);
-        try {
-            this.evaluatorClass = getClassLoader().loadClass(packageName + "." + className);
-        } catch (ClassNotFoundException ex) {
-            throw new InternalCompilerException(
-                    "SNO: Generated compilation unit does not declare class '" + packageName + "." + className + "'",
-                    ex
-            );
+        if (cacheKey != null) {
+            BytecodeCache.store(cacheKey, packageName + "." + className, this);
         }
+        this.evaluatorClass = HiddenClasses.load(this, packageName + "." + className, schema.tupleClass());
         this.evaluator = evaluatorClass.getConstructor().newInstance();
     }
 
+    /**
+     * The evaluator refers to the tuple class by name, and inlines the record layout of direct schemas,
+     * so both are part of the {@link BytecodeCache} key along with the expression itself.
+     */
+    private String cacheKey() {
+        final StringBuilder key = new StringBuilder("expression:")
+                .append(schema.getClass().getName()).append(':')
+                .append(schema.tupleClass().getName()).append(':')
+                .append(schema);
+        if (schema instanceof DirectTupleSchema) {
+            final DirectTupleSchema direct = (DirectTupleSchema) schema;
+            key.append(':').append(Arrays.toString(direct.getLayout())).append(':').append(direct.getByteSize());
+        }
+        key.append(':').append(iface.getName()).append(':').append(returnType.getName());
+        for (int i = 0; i < parameterNames.length; i++) {
+            key.append(':').append(parameterTypes[i].getName()).append(' ').append(parameterNames[i]);
+        }
+        return key.append(':').append(expression).toString();
+    }
+
     private Java.MethodDeclarator generateFrontendMethod(Location loc) throws Exception {
         return new Java.MethodDeclarator(loc,
                 null,
@@ -226,6 +668,138 @@ public class TupleExpressionGenerator extends SimpleCompiler {
         );
     }
 
+    /**
+     * Generates evaluate(long address) by pointing a flyweight tuple at the record. Once doEval is inlined the flyweight
+     * never escapes the method, so the JIT scalar replaces it and the accessors read the record at constant offsets.
+     */
+    private Java.MethodDeclarator generateAddressMethod(Location loc) throws Exception {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        final String body = tupleClass + " flyweight = new " + tupleClass + "(); " +
+                "flyweight.address = address; " +
+                (returnType.equals(Void.TYPE) ? "" : "return ") + "doEval(flyweight);";
+        return generateBatchMethod(loc, returnType, "evaluate", body,
+                new Class<?>[]{Long.TYPE}, new String[]{"address"});
+    }
+
+    /**
+     * Loops over the tuple array inside the generated class, so every element is dispatched straight to doEval
+     * rather than through the megamorphic interface call.
+     */
+    private Java.MethodDeclarator generateEvaluateAllMethod(Location loc) throws Exception {
+        final String body = "for (int i = 0; i < tuples.length; i++) { " +
+                maybeAssign("doEval((" + schema.tupleClass().getCanonicalName() + ") tuples[i])") +
+                " }";
+        if (returnType.equals(Void.TYPE)) {
+            return generateBatchMethod(loc, Void.TYPE, "evaluateAll", body,
+                    new Class<?>[]{FastTuple[].class}, new String[]{"tuples"});
+        }
+        return generateBatchMethod(loc, Void.TYPE, "evaluateAll", body,
+                new Class<?>[]{FastTuple[].class, outputArrayClass()}, new String[]{"tuples", "out"});
+    }
+
+    /**
+     * Walks a block of direct records, re-pointing a single flyweight tuple at each record in turn.
+     * The flyweight never escapes the method, so the JIT is free to scalar replace it.
+     */
+    private Java.MethodDeclarator generateEvaluateRangeMethod(Location loc, int byteSize) throws Exception {
+        final String body = rangeLoop(byteSize, maybeAssign("doEval(flyweight)"));
+        if (returnType.equals(Void.TYPE)) {
+            return generateBatchMethod(loc, Void.TYPE, "evaluateRange", body,
+                    new Class<?>[]{Long.TYPE, Integer.TYPE}, new String[]{"address", "count"});
+        }
+        return generateBatchMethod(loc, Void.TYPE, "evaluateRange", body,
+                new Class<?>[]{Long.TYPE, Integer.TYPE, outputArrayClass()}, new String[]{"address", "count", "out"});
+    }
+
+    private Java.MethodDeclarator generateSelectMethod(Location loc) throws Exception {
+        final String body = "int count = 0; " +
+                "for (int i = 0; i < tuples.length; i++) { " +
+                "selection[count] = i; " +
+                "count += doEval((" + schema.tupleClass().getCanonicalName() + ") tuples[i]) ? 1 : 0; " +
+                "} " +
+                "return count;";
+        return generateBatchMethod(loc, Integer.TYPE, "select", body,
+                new Class<?>[]{FastTuple[].class, int[].class}, new String[]{"tuples", "selection"});
+    }
+
+    private Java.MethodDeclarator generateSelectRangeMethod(Location loc, int byteSize) throws Exception {
+        final String body = "int matched = 0; " +
+                rangeLoop(byteSize, "selection[matched] = i; matched += doEval(flyweight) ? 1 : 0;") +
+                " return matched;";
+        return generateBatchMethod(loc, Integer.TYPE, "selectRange", body,
+                new Class<?>[]{Long.TYPE, Integer.TYPE, int[].class}, new String[]{"address", "count", "selection"});
+    }
+
+    private String rangeLoop(int byteSize, String statement) {
+        final String tupleClass = schema.tupleClass().getCanonicalName();
+        return tupleClass + " flyweight = new " + tupleClass + "(); " +
+                "for (int i = 0; i < count; i++) { " +
+                "flyweight.address = address + (long) i * " + byteSize + "L; " +
+                statement +
+                " }";
+    }
+
+    /**
+     * Copies the bound values into the fields of a fresh instance, which the expression reads as plain variables.
+     */
+    private Java.MethodDeclarator generateBindMethod(Location loc, String className) throws Exception {
+        final StringBuilder body = new StringBuilder()
+                .append("if (values.length != ").append(parameterNames.length).append(") { ")
+                .append("throw new IllegalArgumentException(\"Expected ").append(parameterNames.length)
+                .append(" parameter values, got \" + values.length); } ")
+                .append(className).append(" bound = new ").append(className).append("(); ");
+        for (int i = 0; i < parameterNames.length; i++) {
+            body.append("bound.").append(parameterNames[i]).append(" = ").append(unbox(parameterTypes[i], "values[" + i + "]")).append("; ");
+        }
+        body.append("return bound;");
+        return generateBatchMethod(loc, Object.class, "bind", body.toString(),
+                new Class<?>[]{Object[].class}, new String[]{"values"});
+    }
+
+    private static String unbox(Class<?> type, String value) {
+        if (type.equals(Boolean.TYPE)) {
+            return "((Boolean) " + value + ").booleanValue()";
+        }
+        if (type.equals(Character.TYPE)) {
+            return "((Character) " + value + ").charValue()";
+        }
+        return "((Number) " + value + ")." + type.getName() + "Value()";
+    }
+
+    private Java.MethodDeclarator generateBatchMethod(Location loc, Class<?> methodReturnType, String name, String body, Class<?>[] types, String[] names) throws Exception {
+        final Java.FunctionDeclarator.FormalParameter[] params = new Java.FunctionDeclarator.FormalParameter[types.length];
+        for (int i = 0; i < types.length; i++) {
+            params[i] = new Java.FunctionDeclarator.FormalParameter(
+                    loc,
+                    new Java.AccessModifier[0],
+                    classToType(loc, types[i]),
+                    names[i]
+            );
+        }
+        return new Java.MethodDeclarator(loc,
+                null,
+                new Java.AccessModifier[]{new Java.AccessModifier(PUBLIC, loc)},
+                null,
+                classToType(loc, methodReturnType),
+                name,
+                new Java.FunctionDeclarator.FormalParameters(loc, params, false),
+                new Java.Type[0],
+                null,
+                parseStatements(body)
+        );
+    }
+
+    private String maybeAssign(String invocation) {
+        if (returnType.equals(Void.TYPE)) {
+            return invocation + ";";
+        }
+        return "out[i] = " + invocation + ";";
+    }
+
+    private Class<?> outputArrayClass() {
+        return Array.newInstance(returnType, 0).getClass();
+    }
+
     private Java.BlockStatement maybeGenerateReturn(Location loc, Java.Rvalue statement) throws Exception {
         if (returnType.equals(Void.TYPE)) {
             return new Java.ExpressionStatement(statement);
@@ -259,12 +833,14 @@ public class TupleExpressionGenerator extends SimpleCompiler {
                 && Objects.equals(evaluatorClass, that.evaluatorClass) 
                 && Objects.equals(evaluator, that.evaluator) 
                 && Objects.equals(iface, that.iface) 
-                && Objects.equals(returnType, that.returnType);
+                && Objects.equals(returnType, that.returnType)
+                && Arrays.equals(parameterNames, that.parameterNames)
+                && Arrays.equals(parameterTypes, that.parameterTypes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(expression, schema, evaluatorClass, evaluator, iface, returnType);
+        return 31 * Objects.hash(expression, schema, evaluatorClass, evaluator, iface, returnType) + Arrays.hashCode(parameterNames);
     }
 
     public Object evaluator() {
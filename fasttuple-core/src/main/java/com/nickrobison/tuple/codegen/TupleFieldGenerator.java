@@ -0,0 +1,145 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleField;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ACC_PUBLIC;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ALOAD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ALOAD_0;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.CHECKCAST;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.ILOAD;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.INVOKESPECIAL;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.INVOKEVIRTUAL;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.IRETURN;
+import static com.nickrobison.tuple.codegen.ClassFileWriter.RETURN;
+import static com.nickrobison.tuple.codegen.TupleBytecodeGenerator.descriptor;
+import static com.nickrobison.tuple.codegen.TupleBytecodeGenerator.internalName;
+import static com.nickrobison.tuple.codegen.TupleBytecodeGenerator.loadOpcode;
+import static com.nickrobison.tuple.codegen.TupleBytecodeGenerator.returnOpcode;
+
+/**
+ * Generates the {@link TupleField} handles of a tuple class. Each handle is a subclass of the typed handle for
+ * the field, such as {@link TupleField.LongField}, whose methods cast the tuple to the tuple class and invoke
+ * the accessors generated for the field.
+ * <p>
+ * Handles are defined as hidden classes next to the tuple class, see {@link TupleLookups}. Otherwise every handle
+ * of a tuple class shares one class loader, a child of the tuple class' loader, so they are unloaded together with
+ * the tuple class without creating a loader per field.
+ */
+public final class TupleFieldGenerator {
+    private static final int MAX_STACK = 4;
+    private static final int TUPLE = 1;
+    private static final int VALUE = 2;
+    private static final AtomicLong counter = new AtomicLong(0L);
+    private static final ClassValue<TupleBytecodeGenerator.GeneratedClassLoader> loaders = new ClassValue<TupleBytecodeGenerator.GeneratedClassLoader>() {
+        @Override
+        protected TupleBytecodeGenerator.GeneratedClassLoader computeValue(Class<?> tupleClass) {
+            return new TupleBytecodeGenerator.GeneratedClassLoader(tupleClass.getClassLoader());
+        }
+    };
+
+    private TupleFieldGenerator() {
+        // Not used
+    }
+
+    /**
+     * @param tupleClass - generated tuple class, which declares public accessors for the field
+     * @param name       - field name
+     * @param index      - 1-based index of the field
+     * @param type       - primitive field type
+     * @return - the {@link TupleField}, which can be cast to the typed handle matching the field type
+     * @throws ReflectiveOperationException - if the handle cannot be instantiated
+     */
+    public static TupleField generate(Class<?> tupleClass, String name, int index, Class<?> type) throws ReflectiveOperationException {
+        final String superName = internalName(handleClass(type));
+        final String tuple = internalName(tupleClass);
+        // Hidden classes must be in the package of their host, which differs for precompiled tuples
+        final String className = tuple.substring(0, tuple.lastIndexOf('/') + 1) + "FastTupleField" + counter.getAndIncrement();
+        final String value = descriptor(type);
+
+        final ClassFileWriter writer = new ClassFileWriter(className, superName);
+        final String constructor = "(" + descriptor(String.class) + "I)V";
+        writer.method(ACC_PUBLIC, "<init>", constructor, MAX_STACK)
+                .op(ALOAD_0)
+                .local(ALOAD, 1)
+                .local(ILOAD, 2)
+                .op(INVOKESPECIAL, writer.methodRef(superName, "<init>", constructor))
+                .op(RETURN);
+        writer.method(ACC_PUBLIC, "get", "(" + descriptor(FastTuple.class) + ")" + value, MAX_STACK)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, name, "()" + value))
+                .op(returnOpcode(type));
+        writer.method(ACC_PUBLIC, "set", "(" + descriptor(FastTuple.class) + value + ")V", MAX_STACK)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .local(loadOpcode(type), VALUE)
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, name, "(" + value + ")V"))
+                .op(RETURN);
+
+        if (TupleBytecodeGenerator.isAtomic(type) && hasAtomicAccessors(tupleClass, name, type)) {
+            generateAtomicOverrides(writer, tuple, name, type);
+        }
+
+        final byte[] bytecode = writer.toByteArray();
+        Class<?> handle = TupleLookups.define(tupleClass, bytecode);
+        if (handle == null) {
+            handle = loaders.get(tupleClass).define(className, bytecode);
+        }
+        return (TupleField) handle.getConstructor(String.class, Integer.TYPE).newInstance(name, index);
+    }
+
+    private static boolean hasAtomicAccessors(Class<?> tupleClass, String name, Class<?> type) {
+        try {
+            tupleClass.getMethod(TupleBytecodeGenerator.atomicAccessor("compareAndSet", name), type, type);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void generateAtomicOverrides(ClassFileWriter writer, String tuple, String name, Class<?> type) {
+        final String value = descriptor(type);
+        final String fastTuple = descriptor(FastTuple.class);
+        final int load = loadOpcode(type);
+        final int second = VALUE + (type.equals(Long.TYPE) || type.equals(Double.TYPE) ? 2 : 1);
+
+        writer.method(ACC_PUBLIC, "compareAndSet", "(" + fastTuple + value + value + ")Z", MAX_STACK + 2)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .local(load, VALUE)
+                .local(load, second)
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, TupleBytecodeGenerator.atomicAccessor("compareAndSet", name), "(" + value + value + ")Z"))
+                .op(IRETURN);
+        writer.method(ACC_PUBLIC, "getAndAdd", "(" + fastTuple + value + ")" + value, MAX_STACK)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .local(load, VALUE)
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, TupleBytecodeGenerator.atomicAccessor("getAndAdd", name), "(" + value + ")" + value))
+                .op(returnOpcode(type));
+        writer.method(ACC_PUBLIC, "getVolatile", "(" + fastTuple + ")" + value, MAX_STACK)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, TupleBytecodeGenerator.atomicAccessor("getVolatile", name), "()" + value))
+                .op(returnOpcode(type));
+        writer.method(ACC_PUBLIC, "setRelease", "(" + fastTuple + value + ")V", MAX_STACK)
+                .local(ALOAD, TUPLE)
+                .op(CHECKCAST, writer.classRef(tuple))
+                .local(load, VALUE)
+                .op(INVOKEVIRTUAL, writer.methodRef(tuple, TupleBytecodeGenerator.atomicAccessor("setRelease", name), "(" + value + ")V"))
+                .op(RETURN);
+    }
+
+    private static Class<?> handleClass(Class<?> type) {
+        if (type.equals(Long.TYPE)) return TupleField.LongField.class;
+        if (type.equals(Integer.TYPE)) return TupleField.IntField.class;
+        if (type.equals(Short.TYPE)) return TupleField.ShortField.class;
+        if (type.equals(Character.TYPE)) return TupleField.CharField.class;
+        if (type.equals(Byte.TYPE)) return TupleField.ByteField.class;
+        if (type.equals(Float.TYPE)) return TupleField.FloatField.class;
+        if (type.equals(Double.TYPE)) return TupleField.DoubleField.class;
+        throw new IllegalArgumentException("Unsupported field type " + type);
+    }
+}
@@ -0,0 +1,124 @@
+package com.nickrobison.tuple.codegen;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+/**
+ * Reads the full privilege lookup of each generated tuple class, and uses it to define classes which operate on the
+ * tuple class as hidden classes next to it, on Java 15 and later. Tuple classes create the lookup in their static
+ * initializer and keep it in a private static field, so it is never handed out through a public method. The field
+ * is read reflectively, which the JVM only allows when the tuple class's package is open to this library, as it is
+ * for generated classes and any other class in an unnamed module.
+ * <p>
+ * This class must not depend on Janino, as tuple classes and field handles emitted as bytecode rely on it.
+ * Classes compiled by Janino are defined through {@link HiddenClasses}.
+ */
+final class TupleLookups {
+    /**
+     * Name of the private static final {@link MethodHandles.Lookup} field which generated tuple classes initialize
+     * with {@link MethodHandles#lookup()}
+     */
+    static final String FIELD = "$lookup";
+    private static final int FULL_PRIVILEGE = MethodHandles.Lookup.PRIVATE | MethodHandles.Lookup.MODULE;
+    private static final Method DEFINE_HIDDEN_CLASS;
+    private static final Object NO_OPTIONS;
+    // Values live in the class they describe, so reading a lookup does not keep its class from being unloaded
+    private static final ClassValue<Optional<MethodHandles.Lookup>> lookups = new ClassValue<Optional<MethodHandles.Lookup>>() {
+        @Override
+        protected Optional<MethodHandles.Lookup> computeValue(Class<?> type) {
+            return Optional.ofNullable(read(type));
+        }
+    };
+
+    static {
+        Method define = null;
+        Object options = null;
+        if (Boolean.parseBoolean(System.getProperty("com.nickrobison.tuple.hiddenClasses", "true"))) {
+            try {
+                final Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+                options = Array.newInstance(classOption, 0);
+                define = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, Boolean.TYPE, options.getClass());
+            } catch (ReflectiveOperationException e) {
+                // Hidden classes are only available from Java 15
+                define = null;
+            }
+        }
+        DEFINE_HIDDEN_CLASS = define;
+        NO_OPTIONS = options;
+    }
+
+    private TupleLookups() {
+        // Not used
+    }
+
+    static boolean isSupported() {
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * @param host - class which may declare a lookup
+     * @return - the lookup on the class, or null if the class does not declare one
+     */
+    static MethodHandles.Lookup lookup(Class<?> host) {
+        return lookups.get(host).orElse(null);
+    }
+
+    private static MethodHandles.Lookup read(Class<?> host) {
+        final Object lookup;
+        try {
+            final Field field = host.getDeclaredField(FIELD);
+            if (!Modifier.isStatic(field.getModifiers())) {
+                return null;
+            }
+            field.setAccessible(true);
+            // Initializes the tuple class, if it has not been already
+            lookup = field.get(null);
+        } catch (ReflectiveOperationException | InaccessibleObjectException | SecurityException | LinkageError e) {
+            return null;
+        }
+        // Only a lookup the class created for itself has full privilege access on it
+        if (!(lookup instanceof MethodHandles.Lookup)
+                || ((MethodHandles.Lookup) lookup).lookupClass() != host
+                || (((MethodHandles.Lookup) lookup).lookupModes() & FULL_PRIVILEGE) != FULL_PRIVILEGE) {
+            return null;
+        }
+        return (MethodHandles.Lookup) lookup;
+    }
+
+    /**
+     * @param host     - class which declares a lookup, in the same package as the new class
+     * @param bytecode - class file to define
+     * @return - the hidden class, or null if the host does not declare a lookup or hidden classes are unsupported
+     * @throws LinkageError - if the class file is invalid
+     */
+    static Class<?> define(Class<?> host, byte[] bytecode) {
+        final MethodHandles.Lookup lookup = isSupported() ? lookup(host) : null;
+        if (lookup == null) {
+            return null;
+        }
+        try {
+            return ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(lookup, bytecode, true, NO_OPTIONS)).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to call defineHiddenClass", e);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UnsupportedOperationException) {
+                // The VM does not support hidden classes after all
+                return null;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to define hidden class next to " + host.getName(), cause);
+        }
+    }
+}
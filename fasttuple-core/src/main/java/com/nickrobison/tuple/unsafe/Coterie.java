@@ -3,18 +3,22 @@ package com.nickrobison.tuple.unsafe;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 /**
  * Created by cliff on 5/2/14.
  */
 public class Coterie {
     private static final Unsafe theUnsafe;
+    private static final long bufferAddressOffset;
 
     static {
         try {
             Field field = Unsafe.class.getDeclaredField("theUnsafe");
             field.setAccessible(true);
             theUnsafe = (Unsafe) field.get(null);
+            bufferAddressOffset = theUnsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -94,22 +98,59 @@ public class Coterie {
         theUnsafe.putLong(obj, offset, value);
     }
 
+    public static Object getObject(Object obj, long offset) {
+        return theUnsafe.getObject(obj, offset);
+    }
+
+    public static void putObject(Object obj, long offset, Object value) {
+        theUnsafe.putObject(obj, offset, value);
+    }
+
     // --- Memory management ---
 
     public static long allocateMemory(long bytes) {
         return theUnsafe.allocateMemory(bytes);
     }
 
+    public static long reallocateMemory(long address, long bytes) {
+        return theUnsafe.reallocateMemory(address, bytes);
+    }
+
+    public static void setMemory(long address, long bytes, byte value) {
+        theUnsafe.setMemory(address, bytes, value);
+    }
+
     public static void freeMemory(long address) {
         theUnsafe.freeMemory(address);
     }
 
+    // --- Direct buffer helpers ---
+
+    public static long getBufferAddress(Buffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer is not direct");
+        }
+        return theUnsafe.getLong(buffer, bufferAddressOffset);
+    }
+
+    public static void invokeCleaner(ByteBuffer buffer) {
+        theUnsafe.invokeCleaner(buffer);
+    }
+
     // --- Reflection helpers ---
 
     public static long objectFieldOffset(Field field) {
         return theUnsafe.objectFieldOffset(field);
     }
 
+    public static long objectFieldOffset(Class<?> clazz, String name) {
+        try {
+            return objectFieldOffset(clazz.getField(name));
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalArgumentException("No public field " + name + " in " + clazz.getName(), ex);
+        }
+    }
+
     // --- Array helpers ---
 
     public static int arrayBaseOffset(Class<?> arrayClass) {
@@ -129,4 +170,159 @@ public class Coterie {
     public static void putOrderedObject(Object o, long offset, Object update) {
         theUnsafe.putOrderedObject(o, offset, update);
     }
+
+    public static boolean compareAndSwapLong(Object o, long offset, long expected, long update) {
+        return theUnsafe.compareAndSwapLong(o, offset, expected, update);
+    }
+
+    public static boolean compareAndSwapInt(Object o, long offset, int expected, int update) {
+        return theUnsafe.compareAndSwapInt(o, offset, expected, update);
+    }
+
+    public static long getAndAddLong(Object o, long offset, long delta) {
+        return theUnsafe.getAndAddLong(o, offset, delta);
+    }
+
+    public static int getAndAddInt(Object o, long offset, int delta) {
+        return theUnsafe.getAndAddInt(o, offset, delta);
+    }
+
+    public static long getLongVolatile(Object o, long offset) {
+        return theUnsafe.getLongVolatile(o, offset);
+    }
+
+    public static int getIntVolatile(Object o, long offset) {
+        return theUnsafe.getIntVolatile(o, offset);
+    }
+
+    public static void putOrderedLong(Object o, long offset, long value) {
+        theUnsafe.putOrderedLong(o, offset, value);
+    }
+
+    public static void putOrderedInt(Object o, long offset, int value) {
+        theUnsafe.putOrderedInt(o, offset, value);
+    }
+
+    public static boolean compareAndSwapDouble(Object o, long offset, double expected, double update) {
+        return compareAndSwapLong(o, offset, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(update));
+    }
+
+    public static boolean compareAndSwapFloat(Object o, long offset, float expected, float update) {
+        return compareAndSwapInt(o, offset, Float.floatToRawIntBits(expected), Float.floatToRawIntBits(update));
+    }
+
+    public static double getAndAddDouble(Object o, long offset, double delta) {
+        long current;
+        do {
+            current = getLongVolatile(o, offset);
+        } while (!compareAndSwapLong(o, offset, current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta)));
+        return Double.longBitsToDouble(current);
+    }
+
+    public static float getAndAddFloat(Object o, long offset, float delta) {
+        int current;
+        do {
+            current = getIntVolatile(o, offset);
+        } while (!compareAndSwapInt(o, offset, current, Float.floatToRawIntBits(Float.intBitsToFloat(current) + delta)));
+        return Float.intBitsToFloat(current);
+    }
+
+    public static double getDoubleVolatile(Object o, long offset) {
+        return Double.longBitsToDouble(getLongVolatile(o, offset));
+    }
+
+    public static float getFloatVolatile(Object o, long offset) {
+        return Float.intBitsToFloat(getIntVolatile(o, offset));
+    }
+
+    public static void putOrderedDouble(Object o, long offset, double value) {
+        putOrderedLong(o, offset, Double.doubleToRawLongBits(value));
+    }
+
+    public static void putOrderedFloat(Object o, long offset, float value) {
+        putOrderedInt(o, offset, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Prevents loads before the fence from being reordered with loads and stores after it.
+     */
+    public static void loadFence() {
+        theUnsafe.loadFence();
+    }
+
+    // Raw addresses must be naturally aligned for the atomic operations
+
+    public static boolean compareAndSwapLong(long address, long expected, long update) {
+        return theUnsafe.compareAndSwapLong(null, address, expected, update);
+    }
+
+    public static boolean compareAndSwapInt(long address, int expected, int update) {
+        return theUnsafe.compareAndSwapInt(null, address, expected, update);
+    }
+
+    public static long getAndAddLong(long address, long delta) {
+        return theUnsafe.getAndAddLong(null, address, delta);
+    }
+
+    public static int getAndAddInt(long address, int delta) {
+        return theUnsafe.getAndAddInt(null, address, delta);
+    }
+
+    public static long getLongVolatile(long address) {
+        return theUnsafe.getLongVolatile(null, address);
+    }
+
+    public static int getIntVolatile(long address) {
+        return theUnsafe.getIntVolatile(null, address);
+    }
+
+    public static void putOrderedLong(long address, long value) {
+        theUnsafe.putOrderedLong(null, address, value);
+    }
+
+    public static void putOrderedInt(long address, int value) {
+        theUnsafe.putOrderedInt(null, address, value);
+    }
+
+    // Floating point values are compared by their raw bits, as with VarHandle.compareAndSet
+
+    public static boolean compareAndSwapDouble(long address, double expected, double update) {
+        return compareAndSwapLong(address, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(update));
+    }
+
+    public static boolean compareAndSwapFloat(long address, float expected, float update) {
+        return compareAndSwapInt(address, Float.floatToRawIntBits(expected), Float.floatToRawIntBits(update));
+    }
+
+    public static double getAndAddDouble(long address, double delta) {
+        long current;
+        do {
+            current = getLongVolatile(address);
+        } while (!compareAndSwapLong(address, current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta)));
+        return Double.longBitsToDouble(current);
+    }
+
+    public static float getAndAddFloat(long address, float delta) {
+        int current;
+        do {
+            current = getIntVolatile(address);
+        } while (!compareAndSwapInt(address, current, Float.floatToRawIntBits(Float.intBitsToFloat(current) + delta)));
+        return Float.intBitsToFloat(current);
+    }
+
+    public static double getDoubleVolatile(long address) {
+        return Double.longBitsToDouble(getLongVolatile(address));
+    }
+
+    public static float getFloatVolatile(long address) {
+        return Float.intBitsToFloat(getIntVolatile(address));
+    }
+
+    public static void putOrderedDouble(long address, double value) {
+        putOrderedLong(address, Double.doubleToRawLongBits(value));
+    }
+
+    public static void putOrderedFloat(long address, float value) {
+        putOrderedInt(address, Float.floatToRawIntBits(value));
+    }
 }
@@ -0,0 +1,83 @@
+package com.nickrobison.tuple.unsafe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and writes primitives at arbitrary byte offsets of an on-heap byte[] slab, in native byte order.
+ * This is the on-heap counterpart of the raw address accessors in {@link Coterie}, and is built on
+ * byte array view {@link VarHandle}s so it does not need any unsupported APIs.
+ */
+public final class Slabs {
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.nativeOrder());
+    private static final VarHandle CHAR = MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.nativeOrder());
+    private static final VarHandle FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.nativeOrder());
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.nativeOrder());
+
+    private Slabs() {
+        // Not used
+    }
+
+    // --- Slab getters ---
+
+    public static long getLong(byte[] slab, long offset) {
+        return (long) LONG.get(slab, (int) offset);
+    }
+
+    public static int getInt(byte[] slab, long offset) {
+        return (int) INT.get(slab, (int) offset);
+    }
+
+    public static short getShort(byte[] slab, long offset) {
+        return (short) SHORT.get(slab, (int) offset);
+    }
+
+    public static char getChar(byte[] slab, long offset) {
+        return (char) CHAR.get(slab, (int) offset);
+    }
+
+    public static byte getByte(byte[] slab, long offset) {
+        return slab[(int) offset];
+    }
+
+    public static float getFloat(byte[] slab, long offset) {
+        return (float) FLOAT.get(slab, (int) offset);
+    }
+
+    public static double getDouble(byte[] slab, long offset) {
+        return (double) DOUBLE.get(slab, (int) offset);
+    }
+
+    // --- Slab setters ---
+
+    public static void putLong(byte[] slab, long offset, long value) {
+        LONG.set(slab, (int) offset, value);
+    }
+
+    public static void putInt(byte[] slab, long offset, int value) {
+        INT.set(slab, (int) offset, value);
+    }
+
+    public static void putShort(byte[] slab, long offset, short value) {
+        SHORT.set(slab, (int) offset, value);
+    }
+
+    public static void putChar(byte[] slab, long offset, char value) {
+        CHAR.set(slab, (int) offset, value);
+    }
+
+    public static void putByte(byte[] slab, long offset, byte value) {
+        slab[(int) offset] = value;
+    }
+
+    public static void putFloat(byte[] slab, long offset, float value) {
+        FLOAT.set(slab, (int) offset, value);
+    }
+
+    public static void putDouble(byte[] slab, long offset, double value) {
+        DOUBLE.set(slab, (int) offset, value);
+    }
+}
@@ -6,4 +6,6 @@ module com.nickrobison.fasttuple {
     exports com.nickrobison.tuple;
     exports com.nickrobison.tuple.codegen;
     exports com.nickrobison.tuple.unsafe;
+
+    uses com.nickrobison.tuple.ColumnKernels;
 }
@@ -0,0 +1,498 @@
+package com.nickrobison.tuple.unsafe;
+
+import sun.misc.Unsafe;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Foreign Function and Memory API implementation of {@link Coterie}, selected automatically from the
+ * multi-release jar on Java 22 and later.
+ * <p>
+ * Raw addresses are read and written through a single segment spanning the whole address space, using
+ * unaligned value layouts, and memory is allocated with malloc/free downcalls so addresses remain plain longs
+ * and generated code is unchanged. Object field offsets are indices into a table of {@link VarHandle}s held by
+ * each class through a {@link ClassValue}, so the tables never keep generated classes or their loaders alive.
+ * Only public fields (such as the fields of generated tuples) can be accessed. Flyweight tuples are re-pointed by
+ * their generated allocators rather than through this table, so the indirection stays off the hot paths.
+ * <p>
+ * This backend removes the dependency on Unsafe for memory access, but not the Unsafe memory model: the global
+ * segment is not bounds checked and memory is not owned by an {@link java.lang.foreign.Arena}, so use after free
+ * is as undetected as before.
+ * The array helpers and {@link #unsafe()} still require sun.misc.Unsafe and are only used by the benchmarks.
+ */
+public class Coterie {
+    private static final MemorySegment ALL = MemorySegment.NULL.reinterpret(Long.MAX_VALUE);
+    private static final VarHandle LONG = ValueLayout.JAVA_LONG.varHandle();
+    private static final VarHandle INT = ValueLayout.JAVA_INT.varHandle();
+    private static final MethodHandle MALLOC;
+    private static final MethodHandle REALLOC;
+    private static final MethodHandle FREE;
+    private static final ClassValue<FieldTable> fieldTables = new ClassValue<FieldTable>() {
+        @Override
+        protected FieldTable computeValue(Class<?> type) {
+            return new FieldTable(type);
+        }
+    };
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        MALLOC = linker.downcallHandle(linker.defaultLookup().find("malloc").orElseThrow(),
+                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_LONG));
+        REALLOC = linker.downcallHandle(linker.defaultLookup().find("realloc").orElseThrow(),
+                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG));
+        FREE = linker.downcallHandle(linker.defaultLookup().find("free").orElseThrow(),
+                FunctionDescriptor.ofVoid(ValueLayout.ADDRESS));
+    }
+
+    private static final class UnsafeHolder {
+        private static final Unsafe theUnsafe;
+
+        static {
+            try {
+                Field field = Unsafe.class.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                theUnsafe = (Unsafe) field.get(null);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    /**
+     * The public instance fields of a class and its superclasses, starting from the root of the hierarchy and
+     * sorted by name within each class. A superclass' table is therefore a prefix of its subclasses' tables,
+     * so an offset looked up on the declaring class of a field is valid for any instance of that class.
+     */
+    private static final class FieldTable {
+        private final Field[] fields;
+        private final VarHandle[] handles;
+        // Plain reads and writes, which flyweights use to re-point tuples, are adapted to Object receivers
+        // once here so they can be invoked exactly rather than going through an inexact VarHandle call
+        private final MethodHandle[] getters;
+        private final MethodHandle[] setters;
+
+        FieldTable(Class<?> type) {
+            final Deque<Class<?>> hierarchy = new ArrayDeque<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                hierarchy.push(c);
+            }
+            final List<Field> fields = new ArrayList<>();
+            for (Class<?> c : hierarchy) {
+                final List<Field> declared = new ArrayList<>();
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isPublic(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
+                        declared.add(field);
+                    }
+                }
+                declared.sort(Comparator.comparing(Field::getName));
+                fields.addAll(declared);
+            }
+            this.fields = fields.toArray(new Field[0]);
+            this.handles = new VarHandle[this.fields.length];
+            this.getters = new MethodHandle[this.fields.length];
+            this.setters = new MethodHandle[this.fields.length];
+            for (int i = 0; i < handles.length; i++) {
+                final Field field = this.fields[i];
+                final Class<?> value = field.getType().isPrimitive() ? field.getType() : Object.class;
+                try {
+                    handles[i] = MethodHandles.publicLookup().unreflectVarHandle(field);
+                    getters[i] = MethodHandles.publicLookup().unreflectGetter(field).asType(MethodType.methodType(value, Object.class));
+                    setters[i] = MethodHandles.publicLookup().unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, value));
+                } catch (IllegalAccessException ex) {
+                    // Left null, so only using the field fails
+                }
+            }
+        }
+
+        int indexOf(Field field) {
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].equals(field)) {
+                    if (handles[i] == null) {
+                        throw new IllegalArgumentException("Unable to access field " + field);
+                    }
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Field " + field + " is not public");
+        }
+    }
+
+    private static VarHandle handle(Object obj, long offset) {
+        return fieldTables.get(obj.getClass()).handles[(int) offset];
+    }
+
+    private static MethodHandle getter(Object obj, long offset) {
+        return fieldTables.get(obj.getClass()).getters[(int) offset];
+    }
+
+    private static MethodHandle setter(Object obj, long offset) {
+        return fieldTables.get(obj.getClass()).setters[(int) offset];
+    }
+
+    private static IllegalStateException fieldAccessFailed(Throwable t) {
+        return new IllegalStateException("Unable to access field", t);
+    }
+
+    public static Unsafe unsafe() {
+        return UnsafeHolder.theUnsafe;
+    }
+
+    // --- Raw memory getters ---
+
+    public static long getLong(long address) {
+        return ALL.get(ValueLayout.JAVA_LONG_UNALIGNED, address);
+    }
+
+    public static int getInt(long address) {
+        return ALL.get(ValueLayout.JAVA_INT_UNALIGNED, address);
+    }
+
+    public static short getShort(long address) {
+        return ALL.get(ValueLayout.JAVA_SHORT_UNALIGNED, address);
+    }
+
+    public static char getChar(long address) {
+        return ALL.get(ValueLayout.JAVA_CHAR_UNALIGNED, address);
+    }
+
+    public static byte getByte(long address) {
+        return ALL.get(ValueLayout.JAVA_BYTE, address);
+    }
+
+    public static float getFloat(long address) {
+        return ALL.get(ValueLayout.JAVA_FLOAT_UNALIGNED, address);
+    }
+
+    public static double getDouble(long address) {
+        return ALL.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, address);
+    }
+
+    // --- Raw memory setters ---
+
+    public static void putLong(long address, long value) {
+        ALL.set(ValueLayout.JAVA_LONG_UNALIGNED, address, value);
+    }
+
+    public static void putInt(long address, int value) {
+        ALL.set(ValueLayout.JAVA_INT_UNALIGNED, address, value);
+    }
+
+    public static void putShort(long address, short value) {
+        ALL.set(ValueLayout.JAVA_SHORT_UNALIGNED, address, value);
+    }
+
+    public static void putChar(long address, char value) {
+        ALL.set(ValueLayout.JAVA_CHAR_UNALIGNED, address, value);
+    }
+
+    public static void putByte(long address, byte value) {
+        ALL.set(ValueLayout.JAVA_BYTE, address, value);
+    }
+
+    public static void putFloat(long address, float value) {
+        ALL.set(ValueLayout.JAVA_FLOAT_UNALIGNED, address, value);
+    }
+
+    public static void putDouble(long address, double value) {
+        ALL.set(ValueLayout.JAVA_DOUBLE_UNALIGNED, address, value);
+    }
+
+    // --- Object field accessors ---
+
+    public static long getLong(Object obj, long offset) {
+        try {
+            return (long) getter(obj, offset).invokeExact(obj);
+        } catch (Throwable t) {
+            throw fieldAccessFailed(t);
+        }
+    }
+
+    public static void putLong(Object obj, long offset, long value) {
+        try {
+            setter(obj, offset).invokeExact(obj, value);
+        } catch (Throwable t) {
+            throw fieldAccessFailed(t);
+        }
+    }
+
+    public static Object getObject(Object obj, long offset) {
+        try {
+            return (Object) getter(obj, offset).invokeExact(obj);
+        } catch (Throwable t) {
+            throw fieldAccessFailed(t);
+        }
+    }
+
+    public static void putObject(Object obj, long offset, Object value) {
+        try {
+            setter(obj, offset).invokeExact(obj, value);
+        } catch (Throwable t) {
+            throw fieldAccessFailed(t);
+        }
+    }
+
+    // --- Memory management ---
+
+    public static long allocateMemory(long bytes) {
+        final MemorySegment segment;
+        try {
+            segment = (MemorySegment) MALLOC.invokeExact(bytes);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to allocate memory", t);
+        }
+        if (segment.address() == 0 && bytes != 0) {
+            throw new OutOfMemoryError("Unable to allocate " + bytes + " bytes");
+        }
+        return segment.address();
+    }
+
+    public static long reallocateMemory(long address, long bytes) {
+        final MemorySegment segment;
+        try {
+            segment = (MemorySegment) REALLOC.invokeExact(MemorySegment.ofAddress(address), bytes);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to reallocate memory", t);
+        }
+        if (segment.address() == 0 && bytes != 0) {
+            throw new OutOfMemoryError("Unable to allocate " + bytes + " bytes");
+        }
+        return segment.address();
+    }
+
+    public static void setMemory(long address, long bytes, byte value) {
+        ALL.asSlice(address, bytes).fill(value);
+    }
+
+    public static void freeMemory(long address) {
+        try {
+            FREE.invokeExact(MemorySegment.ofAddress(address));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to free memory", t);
+        }
+    }
+
+    // --- Direct buffer helpers ---
+
+    public static long getBufferAddress(Buffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer is not direct");
+        }
+        return MemorySegment.ofBuffer(buffer).address();
+    }
+
+    public static void invokeCleaner(ByteBuffer buffer) {
+        unsafe().invokeCleaner(buffer);
+    }
+
+    // --- Reflection helpers ---
+
+    public static long objectFieldOffset(Field field) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            throw new IllegalArgumentException("Field " + field + " is static");
+        }
+        return fieldTables.get(field.getDeclaringClass()).indexOf(field);
+    }
+
+    public static long objectFieldOffset(Class<?> clazz, String name) {
+        try {
+            return objectFieldOffset(clazz.getField(name));
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalArgumentException("No public field " + name + " in " + clazz.getName(), ex);
+        }
+    }
+
+    // --- Array helpers ---
+
+    public static int arrayBaseOffset(Class<?> arrayClass) {
+        return unsafe().arrayBaseOffset(arrayClass);
+    }
+
+    public static int arrayIndexScale(Class<?> arrayClass) {
+        return unsafe().arrayIndexScale(arrayClass);
+    }
+
+    // --- Atomic operations ---
+
+    public static boolean compareAndSwapObject(Object o, long offset, Object expected, Object update) {
+        return unsafe().compareAndSwapObject(o, offset, expected, update);
+    }
+
+    public static void putOrderedObject(Object o, long offset, Object update) {
+        unsafe().putOrderedObject(o, offset, update);
+    }
+
+    public static boolean compareAndSwapLong(Object o, long offset, long expected, long update) {
+        return handle(o, offset).compareAndSet(o, expected, update);
+    }
+
+    public static boolean compareAndSwapInt(Object o, long offset, int expected, int update) {
+        return handle(o, offset).compareAndSet(o, expected, update);
+    }
+
+    public static long getAndAddLong(Object o, long offset, long delta) {
+        return (long) handle(o, offset).getAndAdd(o, delta);
+    }
+
+    public static int getAndAddInt(Object o, long offset, int delta) {
+        return (int) handle(o, offset).getAndAdd(o, delta);
+    }
+
+    public static long getLongVolatile(Object o, long offset) {
+        return (long) handle(o, offset).getVolatile(o);
+    }
+
+    public static int getIntVolatile(Object o, long offset) {
+        return (int) handle(o, offset).getVolatile(o);
+    }
+
+    public static void putOrderedLong(Object o, long offset, long value) {
+        handle(o, offset).setRelease(o, value);
+    }
+
+    public static void putOrderedInt(Object o, long offset, int value) {
+        handle(o, offset).setRelease(o, value);
+    }
+
+    // Field handles of floating point fields compare by raw bits, but have no numeric atomic updates
+
+    public static boolean compareAndSwapDouble(Object o, long offset, double expected, double update) {
+        return handle(o, offset).compareAndSet(o, expected, update);
+    }
+
+    public static boolean compareAndSwapFloat(Object o, long offset, float expected, float update) {
+        return handle(o, offset).compareAndSet(o, expected, update);
+    }
+
+    public static double getAndAddDouble(Object o, long offset, double delta) {
+        final VarHandle handle = handle(o, offset);
+        double current;
+        do {
+            current = (double) handle.getVolatile(o);
+        } while (!handle.compareAndSet(o, current, current + delta));
+        return current;
+    }
+
+    public static float getAndAddFloat(Object o, long offset, float delta) {
+        final VarHandle handle = handle(o, offset);
+        float current;
+        do {
+            current = (float) handle.getVolatile(o);
+        } while (!handle.compareAndSet(o, current, current + delta));
+        return current;
+    }
+
+    public static double getDoubleVolatile(Object o, long offset) {
+        return (double) handle(o, offset).getVolatile(o);
+    }
+
+    public static float getFloatVolatile(Object o, long offset) {
+        return (float) handle(o, offset).getVolatile(o);
+    }
+
+    public static void putOrderedDouble(Object o, long offset, double value) {
+        handle(o, offset).setRelease(o, value);
+    }
+
+    public static void putOrderedFloat(Object o, long offset, float value) {
+        handle(o, offset).setRelease(o, value);
+    }
+
+    /**
+     * Prevents loads before the fence from being reordered with loads and stores after it.
+     */
+    public static void loadFence() {
+        VarHandle.acquireFence();
+    }
+
+    // Raw addresses must be naturally aligned for the atomic operations
+
+    public static boolean compareAndSwapLong(long address, long expected, long update) {
+        return LONG.compareAndSet(ALL, address, expected, update);
+    }
+
+    public static boolean compareAndSwapInt(long address, int expected, int update) {
+        return INT.compareAndSet(ALL, address, expected, update);
+    }
+
+    public static long getAndAddLong(long address, long delta) {
+        return (long) LONG.getAndAdd(ALL, address, delta);
+    }
+
+    public static int getAndAddInt(long address, int delta) {
+        return (int) INT.getAndAdd(ALL, address, delta);
+    }
+
+    public static long getLongVolatile(long address) {
+        return (long) LONG.getVolatile(ALL, address);
+    }
+
+    public static int getIntVolatile(long address) {
+        return (int) INT.getVolatile(ALL, address);
+    }
+
+    public static void putOrderedLong(long address, long value) {
+        LONG.setRelease(ALL, address, value);
+    }
+
+    public static void putOrderedInt(long address, int value) {
+        INT.setRelease(ALL, address, value);
+    }
+
+    // Floating point values are compared by their raw bits, as with VarHandle.compareAndSet
+
+    public static boolean compareAndSwapDouble(long address, double expected, double update) {
+        return compareAndSwapLong(address, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(update));
+    }
+
+    public static boolean compareAndSwapFloat(long address, float expected, float update) {
+        return compareAndSwapInt(address, Float.floatToRawIntBits(expected), Float.floatToRawIntBits(update));
+    }
+
+    public static double getAndAddDouble(long address, double delta) {
+        long current;
+        do {
+            current = getLongVolatile(address);
+        } while (!compareAndSwapLong(address, current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta)));
+        return Double.longBitsToDouble(current);
+    }
+
+    public static float getAndAddFloat(long address, float delta) {
+        int current;
+        do {
+            current = getIntVolatile(address);
+        } while (!compareAndSwapInt(address, current, Float.floatToRawIntBits(Float.intBitsToFloat(current) + delta)));
+        return Float.intBitsToFloat(current);
+    }
+
+    public static double getDoubleVolatile(long address) {
+        return Double.longBitsToDouble(getLongVolatile(address));
+    }
+
+    public static float getFloatVolatile(long address) {
+        return Float.intBitsToFloat(getIntVolatile(address));
+    }
+
+    public static void putOrderedDouble(long address, double value) {
+        putOrderedLong(address, Double.doubleToRawLongBits(value));
+    }
+
+    public static void putOrderedFloat(long address, float value) {
+        putOrderedInt(address, Float.floatToRawIntBits(value));
+    }
+}
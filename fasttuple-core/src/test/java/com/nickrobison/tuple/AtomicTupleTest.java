@@ -0,0 +1,172 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.DirectTupleCodeGenerator;
+import com.nickrobison.tuple.codegen.HeapTupleCodeGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicTupleTest {
+    private static final int THREADS = 4;
+    private static final int INCREMENTS = 10_000;
+
+    public interface Counters {
+        long hits();
+
+        boolean compareAndSetHits(long expected, long update);
+
+        long getAndAddHits(long delta);
+
+        long getVolatileHits();
+
+        void setReleaseHits(long value);
+
+        int errors();
+
+        int getAndAddErrors(int delta);
+
+        int getVolatileErrors();
+
+        double ratio();
+
+        boolean compareAndSetRatio(double expected, double update);
+
+        double getAndAddRatio(double delta);
+
+        void setReleaseRatio(double value);
+    }
+
+    @Test
+    void testHeapAtomics() throws Exception {
+        assertAtomics(builder().heapMemory().build());
+    }
+
+    @Test
+    void testDirectAtomics() throws Exception {
+        DirectTupleSchema schema = builder().directMemory().build();
+        assertAtomics(schema);
+    }
+
+    @Test
+    void testHeapConcurrentIncrements() throws Exception {
+        assertConcurrentIncrements(builder().heapMemory().build());
+    }
+
+    @Test
+    void testDirectConcurrentIncrements() throws Exception {
+        assertConcurrentIncrements(builder().directMemory().build());
+    }
+
+    @Test
+    void testFieldHandleAtomics() throws Exception {
+        TupleSchema schema = builder().directMemory().build();
+        FastTuple tuple = schema.createTuple();
+        TupleField.LongField hits = schema.longField("hits");
+        TupleField.IntField errors = schema.intField("errors");
+        hits.setRelease(tuple, 5L);
+        assertTrue(hits.compareAndSet(tuple, 5L, 6L));
+        assertFalse(hits.compareAndSet(tuple, 5L, 7L));
+        assertEquals(6L, hits.getAndAdd(tuple, 4L));
+        assertEquals(10L, hits.getVolatile(tuple));
+        errors.set(tuple, 1);
+        assertEquals(1, errors.getAndAdd(tuple, 1));
+        assertEquals(2, errors.getVolatile(tuple));
+        TupleField.DoubleField ratio = schema.doubleField("ratio");
+        ratio.setRelease(tuple, 0.5);
+        assertTrue(ratio.compareAndSet(tuple, 0.5, 1.5));
+        assertEquals(1.5, ratio.getAndAdd(tuple, 0.25));
+        assertEquals(1.75, ratio.getVolatile(tuple));
+        schema.destroyTuple(tuple);
+    }
+
+    @Test
+    void testPackedHeapHasNoAtomics() throws Exception {
+        TupleSchema schema = TupleSchema.builder().addField("hits", Long.TYPE).packedHeapMemory().build();
+        FastTuple tuple = schema.createTuple();
+        assertThrows(UnsupportedOperationException.class, () -> schema.longField("hits").getAndAdd(tuple, 1L));
+    }
+
+    @Test
+    void testJaninoGeneratorsMatch() throws Exception {
+        String[] names = {"hits", "errors", "ratio"};
+        Class<?>[] types = {Long.TYPE, Integer.TYPE, Double.TYPE};
+        Class<?> heap = new HeapTupleCodeGenerator(Counters.class, names, types).cookToClass();
+        Class<?> direct = new DirectTupleCodeGenerator(Counters.class, names, types, new int[]{0, 8, 16}).cookToClass();
+        for (Class<?> clazz : new Class<?>[]{heap, direct}) {
+            assertNotNull(clazz.getMethod("compareAndSetErrors", Integer.TYPE, Integer.TYPE));
+            assertNotNull(clazz.getMethod("setReleaseErrors", Integer.TYPE));
+            assertNotNull(clazz.getMethod("getAndAddRatio", Double.TYPE));
+        }
+        FastTuple tuple = (FastTuple) heap.getConstructor().newInstance();
+        Counters counters = (Counters) tuple;
+        counters.setReleaseHits(3L);
+        assertEquals(3L, counters.getAndAddHits(2L));
+        assertEquals(5L, counters.getVolatileHits());
+        counters.setReleaseRatio(1.0);
+        assertEquals(1.0, counters.getAndAddRatio(0.5));
+        assertEquals(1.5, counters.ratio());
+    }
+
+    private static TupleSchema.Builder builder() {
+        return TupleSchema.builder().
+                addField("hits", Long.TYPE).
+                addField("errors", Integer.TYPE).
+                addField("ratio", Double.TYPE).
+                implementInterface(Counters.class);
+    }
+
+    private static void assertAtomics(TupleSchema schema) throws Exception {
+        FastTuple tuple = schema.createTuple();
+        Counters counters = (Counters) tuple;
+        counters.setReleaseHits(41L);
+        assertEquals(41L, counters.hits());
+        assertTrue(counters.compareAndSetHits(41L, 42L));
+        assertFalse(counters.compareAndSetHits(41L, 43L));
+        assertEquals(42L, counters.getVolatileHits());
+        assertEquals(42L, counters.getAndAddHits(8L));
+        assertEquals(50L, tuple.getLong(1));
+
+        tuple.setInt(2, 7);
+        assertEquals(7, counters.getAndAddErrors(-2));
+        assertEquals(5, counters.getVolatileErrors());
+        assertEquals(5, counters.errors());
+
+        counters.setReleaseRatio(0.0);
+        assertFalse(counters.compareAndSetRatio(-0.0, 1.0), "Doubles should be compared by their raw bits");
+        assertTrue(counters.compareAndSetRatio(0.0, 1.0));
+        assertEquals(1.0, counters.getAndAddRatio(0.5));
+        assertEquals(1.5, tuple.getDouble(3));
+        schema.destroyTuple(tuple);
+    }
+
+    private static void assertConcurrentIncrements(TupleSchema schema) throws Exception {
+        FastTuple tuple = schema.createTuple();
+        Counters counters = (Counters) tuple;
+        // Direct records are not zeroed when allocated
+        tuple.setLong(1, 0L);
+        tuple.setInt(2, 0);
+        tuple.setDouble(3, 0.0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < INCREMENTS; i++) {
+                    counters.getAndAddHits(1L);
+                    counters.getAndAddErrors(2);
+                    counters.getAndAddRatio(0.5);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) THREADS * INCREMENTS, counters.getVolatileHits());
+        assertEquals(THREADS * INCREMENTS * 2, counters.getVolatileErrors());
+        assertEquals(THREADS * INCREMENTS * 0.5, counters.ratio());
+        schema.destroyTuple(tuple);
+    }
+}
@@ -0,0 +1,50 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnKernelsTest {
+
+    @Test
+    void scalarFallbackTest() {
+        // The vector module is not on the core test classpath
+        assertSame(ColumnKernels.scalar(), ColumnKernels.get());
+    }
+
+    @Test
+    void scalarKernelsTest() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder().
+                addField("id", Long.TYPE).
+                addField("x", Double.TYPE).
+                addField("y", Double.TYPE).
+                columnar().
+                build();
+
+        long[] columns = schema.createColumns(100);
+        for (int i = 0; i < 100; i++) {
+            schema.setLong(columns, i, 0, i - 50);
+            schema.setDouble(columns, i, 1, i * 0.5);
+            schema.setDouble(columns, i, 2, 1.0);
+        }
+
+        ColumnKernels kernels = ColumnKernels.scalar();
+        assertEquals(-50L, kernels.sumLong(columns[0], 100));
+        assertEquals(-50L, kernels.minLong(columns[0], 100));
+        assertEquals(49L, kernels.maxLong(columns[0], 100));
+        assertEquals(2475.0, kernels.sumDouble(columns[1], 100), 0.0001);
+        assertEquals(0.0, kernels.minDouble(columns[1], 100));
+        assertEquals(49.5, kernels.maxDouble(columns[1], 100));
+
+        int[] selection = new int[100];
+        assertEquals(11, kernels.filterLongRange(columns[0], 100, 0, 10, selection));
+        assertEquals(50, selection[0]);
+        assertEquals(60, selection[10]);
+        assertEquals(3, kernels.filterDoubleRange(columns[1], 100, 1.0, 2.0, selection));
+        assertEquals(2, selection[0]);
+
+        kernels.axpyDouble(2.0, columns[1], columns[2], 100);
+        assertEquals(100.0, schema.getDouble(columns, 99, 2));
+        schema.destroyColumns(columns);
+    }
+}
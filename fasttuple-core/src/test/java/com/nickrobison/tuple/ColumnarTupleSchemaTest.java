@@ -0,0 +1,120 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.unsafe.Coterie;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarTupleSchemaTest {
+
+    @Test
+    void widthsTest() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                columnar().
+                build();
+
+        assertArrayEquals(new int[]{1, 2, 4, 2, 4, 8, 8}, schema.getWidths());
+    }
+
+    @Test
+    void createTupleArrayTest() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                columnar().
+                build();
+
+        FastTuple[] tuples = schema.createTupleArray(10);
+        assertEquals(10, tuples.length);
+
+        for (int i = 0; i < 10; i++) {
+            tuples[i].setByte(1, (byte) i);
+            tuples[i].setChar(2, 'b');
+            tuples[i].setInt(3, i * 4);
+            tuples[i].setShort(4, (short) 6);
+            tuples[i].setFloat(5, 0.125f);
+            tuples[i].setLong(6, i * 1000000L);
+            tuples[i].setDouble(7, 0.125);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, tuples[i].getByte(1));
+            assertEquals('b', tuples[i].getChar(2));
+            assertEquals(i * 4, tuples[i].getInt(3));
+            assertEquals(6, tuples[i].getShort(4));
+            assertEquals(0.125f, tuples[i].getFloat(5), 0.001);
+            assertEquals(i * 1000000L, tuples[i].getLong(6));
+            assertEquals(0.125, tuples[i].getDouble(7), 0.001);
+        }
+        schema.destroyTupleArray(tuples);
+    }
+
+    @Test
+    void columnsAreContiguousTest() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder().
+                addField("aInt", Integer.TYPE).
+                addField("aLong", Long.TYPE).
+                columnar().
+                build();
+
+        long[] columns = schema.createColumns(100);
+        for (int row = 0; row < 100; row++) {
+            FastTuple tuple = schema.createTuple(columns, row);
+            tuple.setInt(1, row);
+            tuple.setLong(2, row * 10L);
+        }
+
+        long sum = 0;
+        for (int row = 0; row < 100; row++) {
+            assertEquals(row, Coterie.getInt(columns[0] + row * 4L));
+            sum += Coterie.getLong(columns[1] + row * 8L);
+        }
+        assertEquals(49500L, sum);
+        assertEquals(990L, schema.getLong(columns, 99, 1));
+
+        schema.setInt(columns, 5, 0, 42);
+        assertEquals(42, schema.createTuple(columns, 5).getInt(1));
+        schema.destroyColumns(columns);
+    }
+
+    @Test
+    void createTypedTupleTest() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                implementInterface(TypedTuple.class).
+                columnar().
+                build();
+
+        TypedTuple[] tuples = schema.createTypedTupleArray(TypedTuple.class, 3);
+        for (TypedTuple tuple : tuples) {
+            tuple.aLong(1000000L);
+            tuple.aDouble(0.5);
+            assertEquals(1000000L, tuple.aLong());
+            assertEquals(0.5, tuple.aDouble(), 0.001);
+        }
+        schema.destroyTypedTupleArray(tuples);
+
+        TypedTuple single = schema.createTypedTuple(TypedTuple.class);
+        single.aInt(7);
+        assertEquals(7, single.aInt());
+        schema.destroyTypedTuple(single);
+    }
+}
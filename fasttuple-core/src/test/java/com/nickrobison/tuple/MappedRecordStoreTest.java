@@ -0,0 +1,123 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRecordStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordsSurviveRemapping() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .addField("b", Integer.TYPE)
+                .directMemory()
+                .build();
+        Path file = tempDir.resolve("records.dat");
+
+        try (MappedRecordStore store = schema.mapRecordArray(file, 1000)) {
+            assertEquals(1000, store.size());
+            for (long i = 0; i < store.size(); i++) {
+                FastTuple tuple = store.createTuple(i);
+                tuple.setLong(1, i * 3);
+                tuple.setInt(2, (int) i);
+            }
+        }
+        assertEquals(MappedRecordStore.HEADER_SIZE + 1000L * schema.getByteSize(), Files.size(file));
+
+        try (MappedRecordStore store = schema.mapRecordArray(file, 1000)) {
+            for (long i = 0; i < store.size(); i++) {
+                assertEquals(i * 3, schema.getLong(store.address(i), 0));
+                assertEquals((int) i, store.createTuple(i).getInt(2));
+            }
+        }
+    }
+
+    @Test
+    void testRecordsAreAdjacent() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .directMemory()
+                .padToWordSize(64)
+                .build();
+
+        try (MappedRecordStore store = schema.mapRecordArray(tempDir.resolve("adjacent.dat"), 10)) {
+            assertEquals(64, store.address(1) - store.address(0));
+            assertSame(schema, store.getSchema());
+        }
+    }
+
+    @Test
+    void testOutOfBounds() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .directMemory()
+                .build();
+
+        try (MappedRecordStore store = schema.mapRecordArray(tempDir.resolve("bounds.dat"), 10)) {
+            assertThrows(IndexOutOfBoundsException.class, () -> store.address(10));
+            assertThrows(IndexOutOfBoundsException.class, () -> store.address(-1));
+        }
+        assertThrows(IllegalArgumentException.class, () -> schema.mapRecordArray(tempDir.resolve("empty.dat"), 0));
+    }
+
+    @Test
+    void testClosedStoreThrows() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .directMemory()
+                .build();
+
+        MappedRecordStore store = schema.mapRecordArray(tempDir.resolve("closed.dat"), 10);
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.address(0));
+        assertThrows(IllegalStateException.class, () -> store.createTuple(0));
+        assertThrows(IllegalStateException.class, store::force);
+        store.close();
+    }
+
+    @Test
+    void testHeaderRejectsOtherSchemas() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .addField("b", Integer.TYPE)
+                .directMemory()
+                .build();
+        Path file = tempDir.resolve("header.dat");
+        schema.mapRecordArray(file, 10).close();
+
+        // Same record size, but the fields are in a different order
+        DirectTupleSchema reordered = TupleSchema.builder()
+                .addField("b", Integer.TYPE)
+                .addField("a", Long.TYPE)
+                .directMemory()
+                .build();
+        assertEquals(schema.getByteSize(), reordered.getByteSize());
+        assertThrows(IllegalArgumentException.class, () -> reordered.mapRecordArray(file, 10));
+
+        DirectTupleSchema padded = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .addField("b", Integer.TYPE)
+                .directMemory()
+                .padToWordSize(64)
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> padded.mapRecordArray(file, 10));
+
+        // Equal schemas can re-map the file, and extend it
+        try (MappedRecordStore store = schema.mapRecordArray(file, 20)) {
+            assertEquals(20, store.size());
+        }
+
+        Path other = tempDir.resolve("other.dat");
+        Files.write(other, new byte[MappedRecordStore.HEADER_SIZE]);
+        assertThrows(IOException.class, () -> schema.mapRecordArray(other, 10));
+    }
+}
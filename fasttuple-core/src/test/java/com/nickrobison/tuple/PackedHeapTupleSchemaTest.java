@@ -0,0 +1,103 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedHeapTupleSchemaTest {
+
+    @Test
+    void layoutMatchesDirectTest() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE);
+        PackedHeapTupleSchema packed = builder.packedHeapMemory().build();
+        DirectTupleSchema direct = builder.directMemory().build();
+
+        assertArrayEquals(direct.getLayout(), packed.getLayout());
+        assertEquals(direct.getByteSize(), packed.getByteSize());
+        assertEquals(64, builder.packedHeapMemory().padToWordSize(64).build().getByteSize());
+    }
+
+    @Test
+    void createTupleArrayTest() throws Exception {
+        PackedHeapTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                packedHeapMemory().
+                build();
+
+        FastTuple[] tuples = schema.createTupleArray(10);
+        for (int i = 0; i < 10; i++) {
+            tuples[i].setByte(1, (byte) 1);
+            tuples[i].setChar(2, 'b');
+            tuples[i].setInt(3, i);
+            tuples[i].setShort(4, (short) 6);
+            tuples[i].setFloat(5, 0.125f);
+            tuples[i].setLong(6, i * 1000000L);
+            tuples[i].setDouble(7, 0.125);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, tuples[i].getByte(1));
+            assertEquals('b', tuples[i].getChar(2));
+            assertEquals(i, tuples[i].getInt(3));
+            assertEquals(6, tuples[i].getShort(4));
+            assertEquals(0.125f, tuples[i].getFloat(5), 0.001);
+            assertEquals(i * 1000000L, tuples[i].getLong(6));
+            assertEquals(0.125, tuples[i].getDouble(7), 0.001);
+        }
+    }
+
+    @Test
+    void slabCursorTest() throws Exception {
+        PackedHeapTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                implementInterface(TypedTuple.class).
+                packedHeapMemory().
+                build();
+
+        byte[] slab = schema.createSlab(1000);
+        assertEquals(1000 * schema.getByteSize(), slab.length);
+        TupleCursor cursor = schema.cursor(slab);
+        TypedTuple tuple = cursor.tuple(TypedTuple.class);
+        while (cursor.next()) {
+            tuple.aLong(cursor.index());
+            tuple.aDouble(0.5);
+        }
+
+        double sum = 0;
+        cursor.reset();
+        while (cursor.next()) {
+            sum += tuple.aLong() * tuple.aDouble();
+        }
+        assertEquals(249750.0, sum, 0.0001);
+        assertEquals(999L, schema.getLong(slab, 999L * schema.getByteSize(), 5));
+        assertEquals(500L, schema.createTuple(slab, 500).getLong(6));
+    }
+
+    @Test
+    void slabTooLargeTest() throws Exception {
+        PackedHeapTupleSchema schema = TupleSchema.builder().
+                addField("aLong", Long.TYPE).
+                packedHeapMemory().
+                build();
+
+        assertThrows(IllegalArgumentException.class, () -> schema.createSlab(Integer.MAX_VALUE));
+    }
+}
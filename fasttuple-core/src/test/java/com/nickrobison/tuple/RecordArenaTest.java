@@ -0,0 +1,134 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordArenaTest {
+
+    @Test
+    void arenaRecordsTest() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                addField("c", Short.TYPE).
+                directMemory().
+                arenaAllocator(4).
+                build();
+
+        Set<Long> records = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            long record = schema.createRecord();
+            schema.setLong(record, 0, i);
+            schema.setInt(record, 1, i * 2);
+            schema.setShort(record, 2, (short) (i * 3));
+            assertTrue(records.add(record), "Records should not overlap");
+        }
+        for (long record : records) {
+            long i = schema.getLong(record, 0);
+            assertEquals(i * 2, schema.getInt(record, 1));
+            assertEquals((short) (i * 3), schema.getShort(record, 2));
+        }
+
+        for (long record : records) {
+            schema.destroy(record);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(records.contains(schema.createRecord()), "Freed records should be re-used");
+        }
+        schema.destroyArena();
+    }
+
+    @Test
+    void arenaTupleTest() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Long.TYPE).
+                directMemory().
+                arenaAllocator(16).
+                build();
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(2, 42L);
+        assertEquals(42L, tuple.getLong(2));
+        schema.destroyTuple(tuple);
+
+        // The free list is threaded through the first word of a freed record, so only later fields are left intact
+        FastTuple second = schema.createTuple();
+        assertEquals(42L, second.getLong(2), "Destroyed record should be recycled");
+        schema.destroyArena();
+
+        FastTuple fresh = schema.createTuple();
+        fresh.setLong(1, 7L);
+        assertEquals(7L, fresh.getLong(1));
+        schema.destroyArena();
+    }
+
+    @Test
+    void arenaCrossThreadFreeTest() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                directMemory().
+                arenaAllocator(4).
+                build();
+
+        Set<Long> records = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            records.add(schema.createRecord());
+        }
+        Thread consumer = new Thread(() -> records.forEach(schema::destroy));
+        consumer.start();
+        consumer.join();
+
+        // The consumer keeps at most two batches, the rest flow back to the producer
+        for (int i = 0; i < 32; i++) {
+            assertTrue(records.contains(schema.createRecord()), "Records freed on another thread should be re-used");
+        }
+        schema.destroyArena();
+    }
+
+    @Test
+    void arenaForeignTupleTest() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                directMemory().
+                arenaAllocator(4).
+                build();
+
+        long first = schema.createRecord();
+        long block = schema.createRecordArray(1);
+        // Not carved out of a slab, so it has to go back to the system allocator rather than onto the free list
+        schema.destroyTuple(schema.createTuple(block));
+        long second = schema.createRecord();
+        assertNotEquals(block, second);
+        assertEquals(first + schema.getByteSize(), second);
+        schema.destroyArena();
+    }
+
+    @Test
+    void arenaAlignmentTest() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                directMemory().
+                padToWordSize(64).
+                arenaAllocator(3).
+                build();
+
+        // Spans several slabs, each of which has to start on a cache line
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, schema.createRecord() % 64, "Padded records should be aligned to the word size");
+        }
+        schema.destroyArena();
+    }
+
+    @Test
+    void invalidArenaTest() {
+        assertThrows(IllegalArgumentException.class, () -> TupleSchema.builder().
+                addField("a", Long.TYPE).
+                directMemory().
+                arenaAllocator(0));
+    }
+}
@@ -0,0 +1,160 @@
+package com.nickrobison.tuple;
+
+import com.nickrobison.tuple.codegen.DirectTupleCodeGenerator;
+import com.nickrobison.tuple.codegen.TupleBytecodeGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceLockTest {
+
+    public interface Quote extends SequenceLock {
+        long bid();
+
+        void bid(long bid);
+
+        long ask();
+
+        void ask(long ask);
+    }
+
+    @Test
+    void testLayoutReservesVersionWord() throws Exception {
+        DirectTupleSchema unlocked = TupleSchema.builder().
+                addField("bid", Long.TYPE).
+                addField("ask", Long.TYPE).
+                directMemory().
+                build();
+        DirectTupleSchema locked = builder().directMemory().sequenceLocked().build();
+        assertFalse(unlocked.isSequenceLocked());
+        assertTrue(locked.isSequenceLocked());
+        assertNotEquals(unlocked, locked);
+        assertNotSame(unlocked.tupleClass(), locked.tupleClass());
+        for (int offset : locked.getLayout()) {
+            assertTrue(offset >= 8, "Fields should follow the version word");
+        }
+        assertEquals(0, locked.getByteSize() % 8);
+        assertTrue(locked.getByteSize() >= unlocked.getByteSize() + 8);
+        assertFalse(SequenceLock.class.isAssignableFrom(unlocked.tupleClass()));
+    }
+
+    @Test
+    void testLockMethodsRequireLockedSchema() {
+        assertThrows(IllegalArgumentException.class, () -> builder().directMemory().build());
+    }
+
+    @Test
+    void testWriteAndValidate() throws Exception {
+        DirectTupleSchema schema = builder().directMemory().sequenceLocked().build();
+        long record = schema.createRecord();
+        Quote quote = (Quote) schema.createTuple(record);
+
+        long stamp = quote.beginRead();
+        assertEquals(0L, stamp);
+        assertTrue(quote.validate(stamp));
+
+        assertEquals(1L, quote.beginWrite());
+        quote.bid(99L);
+        quote.ask(101L);
+        assertFalse(quote.validate(stamp), "A write in progress should fail validation");
+        quote.commitWrite();
+        assertFalse(quote.validate(stamp), "A committed write should fail validation");
+
+        stamp = quote.beginRead();
+        assertEquals(2L, stamp);
+        assertEquals(99L, quote.bid());
+        assertEquals(101L, quote.ask());
+        assertTrue(quote.validate(stamp));
+
+        // The lock can also be driven from the record address
+        assertEquals(stamp, SequenceLocks.beginRead(record));
+        assertEquals(3L, SequenceLocks.beginWrite(record));
+        SequenceLocks.commitWrite(record);
+        assertEquals(4L, SequenceLocks.beginRead(record));
+        schema.destroy(record);
+    }
+
+    @Test
+    void testReadersSeeConsistentSnapshots() throws Exception {
+        DirectTupleSchema schema = builder().directMemory().sequenceLocked().build();
+        long record = schema.createRecord();
+        Quote writer = (Quote) schema.createTuple(record);
+        Quote reader = (Quote) schema.createTuple(record);
+        // Readers may run before the first write, so they must start from a consistent snapshot
+        writer.bid(0);
+        writer.ask(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong torn = new AtomicLong();
+
+        Thread readerThread = new Thread(() -> {
+            while (!done.get()) {
+                long stamp;
+                long bid;
+                long ask;
+                do {
+                    stamp = reader.beginRead();
+                    bid = reader.bid();
+                    ask = reader.ask();
+                } while (!reader.validate(stamp));
+                if (ask != bid + 1) {
+                    torn.incrementAndGet();
+                }
+            }
+        });
+        readerThread.start();
+        for (long i = 0; i < 200_000; i++) {
+            writer.beginWrite();
+            writer.bid(i);
+            writer.ask(i + 1);
+            writer.commitWrite();
+        }
+        done.set(true);
+        readerThread.join();
+        assertEquals(0L, torn.get());
+        schema.destroy(record);
+    }
+
+    @Test
+    void testAllocationsStartStable() throws Exception {
+        DirectTupleSchema schema = builder().directMemory().sequenceLocked().arenaAllocator(4).build();
+        long record = schema.createRecord();
+        assertEquals(0L, SequenceLocks.beginRead(record));
+        SequenceLocks.beginWrite(record);
+        // Freeing threads the arena's free list through the version word
+        schema.destroy(record);
+        long recycled = schema.createRecord();
+        assertEquals(record, recycled);
+        assertEquals(0L, SequenceLocks.beginRead(recycled));
+        schema.destroy(recycled);
+
+        FastTuple[] tuples = schema.createTupleArray(3);
+        for (FastTuple tuple : tuples) {
+            assertEquals(0L, ((Quote) tuple).beginRead());
+        }
+        schema.destroyTupleArray(tuples);
+        schema.destroyArena();
+    }
+
+    @Test
+    void testJaninoGeneratorImplementsLock() throws Exception {
+        Class<?> clazz = new DirectTupleCodeGenerator(Quote.class, new String[]{"bid", "ask"}, new Class<?>[]{Long.TYPE, Long.TYPE}, new int[]{8, 16}, true).cookToClass();
+        assertTrue(SequenceLock.class.isAssignableFrom(clazz));
+        assertNotNull(clazz.getMethod("validate", Long.TYPE));
+    }
+
+    @Test
+    void testHeapTuplesCannotBeLocked() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new TupleBytecodeGenerator(null, new String[]{"bid"}, new Class<?>[]{Long.TYPE}, null, true));
+    }
+
+    private static TupleSchema.Builder builder() {
+        return TupleSchema.builder().
+                addField("bid", Long.TYPE).
+                addField("ask", Long.TYPE).
+                implementInterface(Quote.class);
+    }
+}
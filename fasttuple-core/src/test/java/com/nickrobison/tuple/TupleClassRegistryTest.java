@@ -0,0 +1,67 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleClassRegistryTest {
+
+    @Test
+    void equalSchemasShareClassTest() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("aLong", Long.TYPE).
+                addField("aInt", Integer.TYPE);
+        DirectTupleSchema first = builder.directMemory().build();
+        DirectTupleSchema second = builder.directMemory().build();
+        assertSame(first.tupleClass(), second.tupleClass());
+        assertSame(first.getClassLoader(), second.getClassLoader());
+
+        // Padding the record does not change the generated code
+        assertSame(first.tupleClass(), builder.directMemory().padToWordSize(64).build().tupleClass());
+
+        // Schemas still allocate their own memory
+        FastTuple a = first.createTuple();
+        FastTuple b = second.createTuple();
+        a.setLong(1, 1L);
+        b.setLong(1, 2L);
+        assertEquals(1L, a.getLong(1));
+        assertEquals(2L, b.getLong(1));
+        first.destroyTuple(a);
+        second.destroyTuple(b);
+    }
+
+    @Test
+    void differentSchemasDoNotShareClassTest() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("aLong", Long.TYPE).
+                addField("aInt", Integer.TYPE);
+        Class<?> direct = builder.directMemory().build().tupleClass();
+
+        assertNotSame(direct, builder.heapMemory().build().tupleClass());
+        assertNotSame(direct, builder.packedHeapMemory().build().tupleClass());
+        assertNotSame(direct, TupleSchema.builder().
+                addField("aInt", Integer.TYPE).
+                addField("aLong", Long.TYPE).
+                directMemory().
+                build().
+                tupleClass());
+        assertNotSame(direct, TupleSchema.builder().
+                addField("aLong", Long.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                directMemory().
+                build().
+                tupleClass());
+    }
+
+    @Test
+    void clearInternedClassesTest() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("aLong", Long.TYPE);
+        HeapTupleSchema first = builder.heapMemory().build();
+        assertTrue(TupleClassRegistry.size() > 0);
+
+        TupleSchema.clearInternedClasses();
+        assertNotSame(first.tupleClass(), builder.heapMemory().build().tupleClass());
+    }
+}
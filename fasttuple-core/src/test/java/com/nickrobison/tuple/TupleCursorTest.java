@@ -0,0 +1,84 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleCursorTest {
+
+    @Test
+    void testDirectCursorScan() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .addField("b", Integer.TYPE)
+                .directMemory()
+                .build();
+
+        long records = schema.createRecordArray(100);
+        TupleCursor cursor = schema.cursor(records, 100);
+        assertEquals(-1, cursor.index());
+        assertEquals(100, cursor.size());
+        while (cursor.next()) {
+            cursor.tuple().setLong(1, cursor.index());
+            cursor.tuple().setInt(2, 2);
+        }
+        assertEquals(99, cursor.index());
+        assertFalse(cursor.next());
+
+        cursor.reset();
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.tuple().getLong(1) * cursor.tuple().getInt(2);
+        }
+        assertEquals(9900L, sum);
+        assertEquals(42L, schema.getLong(records + 42L * schema.getByteSize(), 0));
+        schema.destroyRecordArray(records);
+    }
+
+    @Test
+    void testTypedCursor() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("aByte", Byte.TYPE).
+                addField("aChar", Character.TYPE).
+                addField("aInt", Integer.TYPE).
+                addField("aShort", Short.TYPE).
+                addField("aFloat", Float.TYPE).
+                addField("aLong", Long.TYPE).
+                addField("aDouble", Double.TYPE).
+                implementInterface(TypedTuple.class).
+                directMemory().
+                build();
+
+        long records = schema.createRecordArray(10);
+        TupleCursor cursor = schema.cursor(records, 10);
+        TypedTuple tuple = cursor.tuple(TypedTuple.class);
+        assertSame(cursor.tuple(), tuple);
+        for (int i = 0; i < 10; i++) {
+            cursor.moveTo(i);
+            tuple.aInt(i * 2);
+        }
+        cursor.moveTo(7);
+        assertEquals(14, tuple.aInt());
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(-1));
+        schema.destroyRecordArray(records);
+    }
+
+    @Test
+    void testColumnarCursor() throws Exception {
+        ColumnarTupleSchema schema = TupleSchema.builder()
+                .addField("a", Long.TYPE)
+                .addField("b", Double.TYPE)
+                .columnar()
+                .build();
+
+        long[] columns = schema.createColumns(50);
+        TupleCursor cursor = schema.cursor(columns, 50);
+        while (cursor.next()) {
+            cursor.tuple().setDouble(2, cursor.index() * 0.5);
+        }
+        assertEquals(24.5, schema.getDouble(columns, 49, 1), 0.0001);
+        assertEquals(2.0, cursor.moveTo(4).getDouble(2), 0.0001);
+        schema.destroyColumns(columns);
+    }
+}
@@ -0,0 +1,101 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleFieldTest {
+
+    @Test
+    void testHeapFields() throws Exception {
+        assertRoundTrip(builder().heapMemory().build());
+    }
+
+    @Test
+    void testDirectFields() throws Exception {
+        DirectTupleSchema schema = builder().directMemory().build();
+        assertRoundTrip(schema);
+    }
+
+    @Test
+    void testPackedHeapFields() throws Exception {
+        assertRoundTrip(builder().packedHeapMemory().build());
+    }
+
+    @Test
+    void testHandlesAreCached() throws Exception {
+        TupleSchema schema = builder().heapMemory().build();
+        TupleField.LongField a = schema.longField("a");
+        assertSame(a, schema.longField("a"));
+        assertSame(a, schema.field("a"));
+        assertEquals("a", a.name());
+        assertEquals(1, a.index());
+        assertEquals(Long.TYPE, a.type());
+    }
+
+    @Test
+    void testHandlesShareLoader() throws Exception {
+        TupleSchema schema = builder().heapMemory().build();
+        // Handles live next to the tuple class, either as hidden classes or in one shared loader
+        ClassLoader loader = schema.field("a").getClass().getClassLoader();
+        assertSame(loader, schema.field("b").getClass().getClassLoader());
+        assertSame(loader, schema.field("g").getClass().getClassLoader());
+        assertEquals(schema.tupleClass().getPackage().getName(), schema.field("a").getClass().getPackage().getName());
+    }
+
+    @Test
+    void testInvalidFields() throws Exception {
+        TupleSchema schema = builder().heapMemory().build();
+        assertThrows(IllegalArgumentException.class, () -> schema.longField("nope"));
+        assertThrows(IllegalArgumentException.class, () -> schema.intField("a"));
+        assertThrows(IllegalArgumentException.class, () -> schema.doubleField("f"));
+    }
+
+    @Test
+    void testForeignTuple() throws Exception {
+        TupleSchema schema = builder().heapMemory().build();
+        TupleSchema other = TupleSchema.builder().addField("a", Long.TYPE).heapMemory().build();
+        TupleField.LongField a = schema.longField("a");
+        assertThrows(ClassCastException.class, () -> a.get(other.createTuple()));
+    }
+
+    private static TupleSchema.Builder builder() {
+        return TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                addField("c", Short.TYPE).
+                addField("d", Character.TYPE).
+                addField("e", Byte.TYPE).
+                addField("f", Float.TYPE).
+                addField("g", Double.TYPE);
+    }
+
+    private static void assertRoundTrip(TupleSchema schema) throws Exception {
+        FastTuple tuple = schema.createTuple();
+        schema.longField("a").set(tuple, 100L);
+        schema.intField("b").set(tuple, 40);
+        schema.shortField("c").set(tuple, (short) 10);
+        schema.charField("d").set(tuple, 'j');
+        schema.byteField("e").set(tuple, (byte) 255);
+        schema.floatField("f").set(tuple, 0.125f);
+        schema.doubleField("g").set(tuple, 0.25);
+
+        assertEquals(100L, tuple.getLong(1));
+        assertEquals(40, tuple.getInt(2));
+        assertEquals((short) 10, tuple.getShort(3));
+        assertEquals('j', tuple.getChar(4));
+        assertEquals((byte) 255, tuple.getByte(5));
+        assertEquals(0.125f, tuple.getFloat(6));
+        assertEquals(0.25, tuple.getDouble(7));
+
+        tuple.setLong(1, 7L);
+        assertEquals(7L, schema.longField("a").get(tuple));
+        assertEquals(40, schema.intField("b").get(tuple));
+        assertEquals((short) 10, schema.shortField("c").get(tuple));
+        assertEquals('j', schema.charField("d").get(tuple));
+        assertEquals((byte) 255, schema.byteField("e").get(tuple));
+        assertEquals(0.125f, schema.floatField("f").get(tuple));
+        assertEquals(0.25, schema.doubleField("g").get(tuple));
+        schema.destroyTuple(tuple);
+    }
+}
@@ -3,6 +3,12 @@ package com.nickrobison.tuple;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -98,6 +104,87 @@ public class TuplePoolTest {
         assertTrue(destroyed.get());
     }
 
+    @Test
+    void releaseAfterCloseTest() throws Exception {
+        TuplePool<Long> pool = new TuplePool<>(4, true,
+                size -> {
+                    Long[] ary = new Long[size];
+                    Arrays.fill(ary, 0L);
+                    return ary;
+                },
+                ary -> {
+
+                });
+
+        // The other thread already has magazines of its own, releasing into them must still fail once closed
+        final ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            final Long value = other.submit(pool::checkout).get();
+            pool.close();
+            final ExecutionException exn = assertThrows(ExecutionException.class, () -> other.submit(() -> pool.release(value)).get());
+            assertTrue(exn.getCause() instanceof IllegalStateException);
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void crossThreadReleaseTest() throws Exception {
+        TuplePool<Long> pool = new TuplePool<>(10, true,
+                size -> {
+                    Long[] ary = new Long[size];
+                    Arrays.fill(ary, 0L);
+                    return ary;
+                },
+                ary -> {
+
+                });
+
+        // Tuples are only ever checked out on this thread, and only ever released on the consumer
+        final BlockingQueue<Long> handoff = new ArrayBlockingQueue<>(5);
+        final ExecutorService consumer = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> released = consumer.submit(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    pool.release(handoff.take());
+                }
+                return null;
+            });
+            for (int i = 0; i < 100000; i++) {
+                handoff.put(pool.checkout());
+            }
+            released.get();
+        } finally {
+            consumer.shutdown();
+        }
+        assertTrue(pool.getSize() <= 100, "Released tuples should be recycled, rather than reloaded");
+        pool.close();
+    }
+
+    @Test
+    void stripedPoolTest() throws Exception {
+        TuplePool<Long> pool = new TuplePool<>(10, false, true,
+                size -> {
+                    Long[] ary = new Long[size];
+                    Arrays.fill(ary, 0L);
+                    return ary;
+                },
+                ary -> {
+
+                }, null);
+
+        // A thread local pool would load a fresh set of tuples for every one of these threads
+        for (int i = 0; i < 1000; i++) {
+            final Thread thread = new Thread(() -> pool.release(pool.checkout()));
+            thread.start();
+            thread.join();
+        }
+        assertTrue(pool.getSize() <= 10 * 2 * Runtime.getRuntime().availableProcessors(),
+                "Pooled tuples should scale with cores, not threads");
+        pool.close();
+        assertThrows(IllegalStateException.class, pool::checkout);
+    }
+
     @Test
     void testBadClass() {
         TuplePool<TypedTuple> pool = new TuplePool<>(1, true,
@@ -0,0 +1,146 @@
+package com.nickrobison.tuple;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleRingTest {
+
+    private static DirectTupleSchema schema() throws Exception {
+        return TupleSchema.builder().
+                addField("producer", Integer.TYPE).
+                addField("value", Long.TYPE).
+                directMemory().
+                build();
+    }
+
+    @Test
+    void testCapacityMustBePowerOfTwo() throws Exception {
+        DirectTupleSchema schema = schema();
+        assertThrows(IllegalArgumentException.class, () -> schema.createRing(0));
+        assertThrows(IllegalArgumentException.class, () -> schema.createRing(12));
+        assertThrows(IllegalArgumentException.class, () -> schema.createMultiProducerRing(-4));
+    }
+
+    @Test
+    void testFillAndDrain() throws Exception {
+        try (TupleRing ring = schema().createRing(4)) {
+            assertEquals(4, ring.capacity());
+            assertFalse(ring.isMultiProducer());
+            TupleRing.Producer producer = ring.producer();
+            assertThrows(IllegalStateException.class, producer::publish);
+            for (int i = 0; i < 4; i++) {
+                FastTuple tuple = producer.tryClaim();
+                assertNotNull(tuple);
+                assertEquals(i, producer.sequence());
+                tuple.setLong(2, i * 10L);
+                producer.publish();
+            }
+            assertNull(producer.tryClaim());
+            assertEquals(4, ring.size());
+
+            List<Long> values = new ArrayList<>();
+            assertEquals(3, ring.poll((tuple, sequence) -> values.add(tuple.getLong(2)), 3));
+            assertEquals(1, ring.size());
+
+            // Consumed slots are reused, wrapping around the ring
+            for (int i = 4; i < 7; i++) {
+                producer.claim().setLong(2, i * 10L);
+                producer.publish();
+            }
+            assertNull(producer.tryClaim());
+            assertEquals(4, ring.poll((tuple, sequence) -> values.add(tuple.getLong(2)), 16));
+            assertEquals(0, ring.poll((tuple, sequence) -> fail("Ring should be empty"), 16));
+            assertEquals(List.of(0L, 10L, 20L, 30L, 40L, 50L, 60L), values);
+        }
+    }
+
+    @Test
+    void testUnpublishedSlotsAreNotConsumed() throws Exception {
+        try (TupleRing ring = schema().createMultiProducerRing(8)) {
+            long first = ring.claim();
+            long second = ring.claim();
+            ring.publish(second);
+            // The consumer stops at the first gap, so slots are always consumed in sequence order
+            assertEquals(0, ring.poll((tuple, sequence) -> fail("First slot is not published"), 8));
+            ring.publish(first);
+            List<Long> sequences = new ArrayList<>();
+            assertEquals(2, ring.poll((tuple, sequence) -> sequences.add(sequence), 8));
+            assertEquals(List.of(first, second), sequences);
+        }
+    }
+
+    // A lost publication would otherwise spin forever, so the pipelines run on a separate thread which can be abandoned
+    @Test
+    @Timeout(value = 60, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void testSingleProducerPipeline() throws Exception {
+        final long count = 1_000_000;
+        try (TupleRing ring = schema().createRing(1024)) {
+            Thread producerThread = new Thread(() -> {
+                TupleRing.Producer producer = ring.producer();
+                for (long i = 0; i < count; i++) {
+                    producer.claim().setLong(2, i);
+                    producer.publish();
+                }
+            });
+            producerThread.setDaemon(true);
+            producerThread.start();
+
+            long[] expected = {0};
+            while (expected[0] < count) {
+                ring.poll((tuple, sequence) -> {
+                    assertEquals(expected[0], sequence);
+                    assertEquals(expected[0]++, tuple.getLong(2));
+                }, 256);
+            }
+            producerThread.join();
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    @Timeout(value = 60, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void testMultiProducerPipeline() throws Exception {
+        final int producers = 4;
+        final int count = 100_000;
+        try (TupleRing ring = schema().createMultiProducerRing(256)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int id = p;
+                Thread thread = new Thread(() -> {
+                    TupleRing.Producer producer = ring.producer();
+                    for (long i = 0; i < count; i++) {
+                        FastTuple tuple = producer.claim();
+                        tuple.setInt(1, id);
+                        tuple.setLong(2, i);
+                        producer.publish();
+                    }
+                });
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+
+            // Each producer's records arrive in the order that producer published them
+            long[] next = new long[producers];
+            long[] consumed = {0};
+            while (consumed[0] < (long) producers * count) {
+                ring.poll((tuple, sequence) -> {
+                    int id = tuple.getInt(1);
+                    assertEquals(next[id]++, tuple.getLong(2));
+                    consumed[0]++;
+                }, 64);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int p = 0; p < producers; p++) {
+                assertEquals(count, next[p]);
+            }
+        }
+    }
+}
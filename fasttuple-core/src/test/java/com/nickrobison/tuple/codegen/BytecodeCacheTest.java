@@ -0,0 +1,118 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BytecodeCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void enableCache() {
+        System.setProperty(BytecodeCache.DIRECTORY_PROPERTY, directory.toString());
+        // Only classes compiled by Janino are cached
+        System.setProperty(TupleBytecodeGenerator.ENABLED_PROPERTY, "false");
+        TupleSchema.clearInternedClasses();
+    }
+
+    @AfterEach
+    void disableCache() {
+        System.clearProperty(BytecodeCache.DIRECTORY_PROPERTY);
+        System.clearProperty(TupleBytecodeGenerator.ENABLED_PROPERTY);
+        TupleSchema.clearInternedClasses();
+    }
+
+    @Test
+    void testReloadFromCache() throws Exception {
+        TupleSchema first = schema();
+        TupleExpressionGenerator.LongTupleExpression firstSum = sum(first);
+        assertEquals(3, entries().size());
+
+        // Generated names are unique per compilation, so a reloaded class keeps the name it was compiled with
+        TupleSchema.clearInternedClasses();
+        TupleSchema second = schema();
+        assertNotSame(first.tupleClass(), second.tupleClass());
+        assertEquals(first.tupleClass().getName(), second.tupleClass().getName());
+        assertEquals(3, entries().size());
+
+        TupleExpressionGenerator.LongTupleExpression secondSum = sum(second);
+        assertNotSame(firstSum, secondSum);
+        FastTuple tuple = second.createTuple();
+        tuple.setLong(1, 40L);
+        tuple.setInt(2, 2);
+        assertEquals(42L, secondSum.evaluate(tuple));
+    }
+
+    @Test
+    void testEqualLayoutsShareEntries() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE);
+        builder.directMemory().build();
+        builder.directMemory().padToWordSize(64).build();
+        builder.heapMemory().build();
+        // Padding does not change the layout, so the direct tuple class is shared
+        assertEquals(4, entries().size());
+    }
+
+    @Test
+    void testCorruptEntriesAreRegenerated() throws Exception {
+        TupleSchema first = schema();
+        for (Path entry : entries()) {
+            Files.write(entry, new byte[]{1, 2, 3});
+        }
+
+        TupleSchema.clearInternedClasses();
+        TupleSchema second = schema();
+        assertNotEquals(first.tupleClass().getName(), second.tupleClass().getName());
+        FastTuple tuple = second.createTuple();
+        tuple.setLong(1, 42L);
+        assertEquals(42L, tuple.getLong(1));
+    }
+
+    @Test
+    void testEntriesFromOtherVersionsAreRegenerated() throws Exception {
+        TupleSchema first = schema();
+        for (Path entry : entries()) {
+            // The generator version follows the magic number
+            final byte[] bytes = Files.readAllBytes(entry);
+            bytes[7]--;
+            Files.write(entry, bytes);
+        }
+
+        TupleSchema.clearInternedClasses();
+        TupleSchema second = schema();
+        assertNotEquals(first.tupleClass().getName(), second.tupleClass().getName());
+    }
+
+    private static TupleSchema schema() throws Exception {
+        return TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                directMemory().
+                build();
+    }
+
+    private static TupleExpressionGenerator.LongTupleExpression sum(TupleSchema schema) throws Exception {
+        return TupleExpressionGenerator.builder().expression("tuple.a() + tuple.b()").schema(schema).returnLong();
+    }
+
+    private List<Path> entries() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
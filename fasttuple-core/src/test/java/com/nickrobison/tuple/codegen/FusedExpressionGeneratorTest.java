@@ -0,0 +1,173 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FusedExpressionGeneratorTest {
+
+    @Test
+    public void testEvaluateIntoTuple() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                heapMemory().
+                build();
+
+        FusedTupleExpression fused = FusedExpressionGenerator.builder().
+                schema(schema).
+                expression("sum", "tuple.a + tuple.b", Long.TYPE).
+                expression("ratio", "tuple.a / (double) tuple.b", Double.TYPE).
+                expression("small", "tuple.b", Short.TYPE).
+                build();
+        // Only expressions over a direct schema can be evaluated over blocks of records
+        assertFalse(fused instanceof DirectFusedTupleExpression);
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 100L);
+        tuple.setInt(2, 4);
+
+        TupleSchema outputSchema = fused.getOutputSchema();
+        assertArrayEquals(new String[]{"sum", "ratio", "small"}, outputSchema.getFieldNames());
+        FastTuple output = outputSchema.createTuple();
+        fused.evaluate(tuple, output);
+        assertEquals(104L, output.getLong(1));
+        assertEquals(25.0, output.getDouble(2), 0.0001);
+        assertEquals(4, output.getShort(3));
+    }
+
+    @Test
+    public void testExistingOutputSchema() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+        DirectTupleSchema outputSchema = TupleSchema.builder().
+                addField("unused", Integer.TYPE).
+                addField("doubled", Long.TYPE).
+                directMemory().
+                build();
+
+        FusedTupleExpression fused = FusedExpressionGenerator.builder().
+                schema(schema).
+                outputSchema(outputSchema).
+                expression("doubled", "tuple.a * 2", Long.TYPE).
+                build();
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 21L);
+        FastTuple output = outputSchema.createTuple();
+        fused.evaluate(tuple, output);
+        assertEquals(42L, output.getLong(2));
+        outputSchema.destroyTuple(output);
+
+        assertThrows(IllegalArgumentException.class, () -> FusedExpressionGenerator.builder().
+                schema(schema).
+                outputSchema(outputSchema).
+                expression("doubled", "tuple.a * 2", Integer.TYPE).
+                build());
+    }
+
+    @Test
+    public void testColumnsFollowExpressionOrder() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                directMemory().
+                build();
+        TupleSchema outputSchema = TupleSchema.builder().
+                addField("unused", Integer.TYPE).
+                addField("half", Double.TYPE).
+                addField("doubled", Long.TYPE).
+                heapMemory().
+                build();
+
+        DirectFusedTupleExpression fused = FusedExpressionGenerator.builder().
+                schema(schema).
+                outputSchema(outputSchema).
+                expression("doubled", "tuple.a() * 2", Long.TYPE).
+                expression("half", "tuple.a() / 2.0", Double.TYPE).
+                build();
+
+        assertArrayEquals(new String[]{"doubled", "half"}, fused.getNames());
+        Object[] columns = fused.createColumns(4);
+        assertEquals(2, columns.length);
+        FastTuple[] tuples = schema.createTupleArray(4);
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i].setLong(1, i);
+        }
+        fused.evaluateAll(tuples, columns);
+        assertArrayEquals(new long[]{0, 2, 4, 6}, (long[]) columns[0]);
+        assertArrayEquals(new double[]{0, 0.5, 1, 1.5}, (double[]) columns[1], 0.0001);
+
+        long records = schema.createRecordArray(4);
+        for (int i = 0; i < 4; i++) {
+            schema.setLong(records + (long) i * schema.getByteSize(), 0, i + 1);
+        }
+        fused.evaluateRange(records, 4, columns);
+        assertArrayEquals(new long[]{2, 4, 6, 8}, (long[]) columns[0]);
+        assertArrayEquals(new double[]{0.5, 1, 1.5, 2}, (double[]) columns[1], 0.0001);
+        schema.destroyRecordArray(records);
+        schema.destroyTupleArray(tuples);
+    }
+
+    @Test
+    public void testEvaluateColumns() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Double.TYPE).
+                directMemory().
+                build();
+
+        DirectFusedTupleExpression fused = FusedExpressionGenerator.builder().
+                schema(schema).
+                expression("a2", "tuple.a() * 2", Long.TYPE).
+                expression("ab", "tuple.a() * tuple.b()", Double.TYPE).
+                build();
+
+        FastTuple[] tuples = schema.createTupleArray(10);
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i].setLong(1, i);
+            tuples[i].setDouble(2, 0.5);
+        }
+        Object[] columns = fused.createColumns(10);
+        fused.evaluateAll(tuples, columns);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i * 2L, ((long[]) columns[0])[i]);
+            assertEquals(i * 0.5, ((double[]) columns[1])[i], 0.0001);
+        }
+
+        long records = schema.createRecordArray(10);
+        for (int i = 0; i < 10; i++) {
+            FastTuple record = schema.createTuple(records + (long) i * schema.getByteSize());
+            record.setLong(1, i + 1);
+            record.setDouble(2, 2.0);
+        }
+        fused.evaluateRange(records, 10, columns);
+        for (int i = 0; i < 10; i++) {
+            assertEquals((i + 1) * 2L, ((long[]) columns[0])[i]);
+            assertEquals((i + 1) * 2.0, ((double[]) columns[1])[i], 0.0001);
+        }
+        schema.destroyRecordArray(records);
+        schema.destroyTupleArray(tuples);
+    }
+
+    @Test
+    public void testInvalidExpressions() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+
+        assertThrows(IllegalArgumentException.class, () -> FusedExpressionGenerator.builder().schema(schema).build());
+        assertThrows(IllegalArgumentException.class, () -> FusedExpressionGenerator.builder().schema(schema).
+                expression("x", "tuple.a", Long.TYPE).
+                expression("x", "tuple.a", Long.TYPE).
+                build());
+        assertThrows(IllegalArgumentException.class, () -> FusedExpressionGenerator.builder().schema(schema).
+                expression("x", "tuple.a > 0", Boolean.TYPE).
+                build());
+    }
+}
@@ -0,0 +1,102 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HiddenClassesTest {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @Test
+    void tupleClassDeclaresLookup() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+
+        MethodHandles.Lookup lookup = TupleLookups.lookup(schema.tupleClass());
+        assertEquals(schema.tupleClass(), lookup.lookupClass());
+        // The lookup is never handed out
+        assertTrue(Modifier.isPrivate(schema.tupleClass().getDeclaredField(TupleLookups.FIELD).getModifiers()));
+        for (Method method : schema.tupleClass().getMethods()) {
+            assertNotEquals(MethodHandles.Lookup.class, method.getReturnType());
+        }
+    }
+
+    @Test
+    void lookupRequiresFullPrivilegeOnItsClass() {
+        assertNull(TupleLookups.lookup(String.class));
+        assertNull(TupleLookups.lookup(PublicLookup.class));
+        assertNull(TupleLookups.lookup(ForeignLookup.class));
+    }
+
+    @Test
+    void tupleClassesShareLoader() {
+        // Enough tuple classes to fill a loader spans exactly two of them
+        Set<ClassLoader> loaders = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i <= TupleBytecodeGenerator.GeneratedClassLoader.SHARED_CLASSES; i++) {
+            loaders.add(TupleBytecodeGenerator.GeneratedClassLoader.shared());
+        }
+        assertEquals(2, loaders.size());
+    }
+
+    @Test
+    void expressionsAreHidden() throws Exception {
+        assumeTrue(TupleLookups.isSupported());
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Long.TYPE).
+                heapMemory().
+                build();
+
+        TupleExpressionGenerator.LongTupleExpression sum = TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(schema).returnLong();
+        // Defined next to the tuple class, rather than in a class loader of its own
+        assertSame(schema.getClassLoader(), sum.getClass().getClassLoader());
+        assertEquals(Boolean.TRUE, Class.class.getMethod("isHidden").invoke(sum.getClass()));
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 40L);
+        tuple.setLong(2, 2L);
+        assertEquals(42L, sum.evaluate(tuple));
+
+        FusedTupleExpression fused = FusedExpressionGenerator.builder().
+                schema(schema).
+                expression("product", "tuple.a * tuple.b", Long.TYPE).
+                build();
+        assertSame(schema.getClassLoader(), fused.getClass().getClassLoader());
+    }
+
+    @Test
+    void classesWithoutLookupAreNotHidden() {
+        assertNull(TupleLookups.define(String.class, new byte[0]));
+    }
+
+    @Test
+    void invalidClassesAreNotSilentlyLoaded() throws Exception {
+        assumeTrue(TupleLookups.isSupported());
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+
+        assertThrows(ClassFormatError.class, () -> TupleLookups.define(schema.tupleClass(), new byte[]{1, 2, 3}));
+    }
+
+    private static final class PublicLookup {
+        private static final MethodHandles.Lookup $lookup = MethodHandles.publicLookup();
+    }
+
+    private static final class ForeignLookup {
+        private static final MethodHandles.Lookup $lookup = LOOKUP;
+    }
+}
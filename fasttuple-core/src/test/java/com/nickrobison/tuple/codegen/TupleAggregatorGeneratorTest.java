@@ -0,0 +1,113 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleAggregator;
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleAggregator;
+import com.nickrobison.tuple.TupleCursor;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TupleAggregatorGeneratorTest {
+
+    @Test
+    public void testGroupBy() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("region", Integer.TYPE).
+                addField("price", Double.TYPE).
+                addField("quantity", Long.TYPE).
+                heapMemory().
+                build();
+
+        FastTuple[] tuples = schema.createTupleArray(1000);
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i].setInt(1, i % 7);
+            tuples[i].setDouble(2, 0.5);
+            tuples[i].setLong(3, i);
+        }
+
+        // Start small, so the table has to grow
+        try (TupleAggregator aggregator = TupleAggregatorGenerator.builder().
+                schema(schema).
+                groupBy("region").
+                count("count").
+                sum("total", "tuple.price * tuple.quantity", Double.TYPE).
+                min("smallest", "tuple.quantity", Long.TYPE).
+                max("largest", "tuple.quantity", Long.TYPE).
+                expectedGroups(2).
+                build()) {
+            // Only aggregators over a direct schema can add blocks of records
+            assertFalse(aggregator instanceof DirectTupleAggregator);
+            aggregator.addAll(tuples);
+            assertEquals(7, aggregator.size());
+
+            Map<Integer, Long> counts = new HashMap<>();
+            TupleCursor cursor = aggregator.cursor();
+            FastTuple row = cursor.tuple();
+            while (cursor.next()) {
+                int region = row.getInt(1);
+                counts.put(region, row.getLong(2));
+                long expectedTotal = 0;
+                for (int i = region; i < tuples.length; i += 7) {
+                    expectedTotal += i;
+                }
+                assertEquals(expectedTotal * 0.5, row.getDouble(3), 0.0001);
+                assertEquals(region, row.getLong(4));
+                assertEquals(region + ((tuples.length - 1 - region) / 7) * 7L, row.getLong(5));
+            }
+            assertEquals(7, counts.size());
+            assertEquals(1000L, counts.values().stream().mapToLong(Long::longValue).sum());
+
+            aggregator.clear();
+            assertEquals(0, aggregator.size());
+            aggregator.add(tuples[0]);
+            assertEquals(1, aggregator.size());
+        }
+    }
+
+    @Test
+    public void testAddRange() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Double.TYPE).
+                directMemory().
+                build();
+
+        long records = schema.createRecordArray(100);
+        for (int i = 0; i < 100; i++) {
+            FastTuple tuple = schema.createTuple(records + (long) i * schema.getByteSize());
+            tuple.setLong(1, i % 2);
+            tuple.setDouble(2, Double.NaN);
+        }
+
+        try (DirectTupleAggregator aggregator = TupleAggregatorGenerator.builder().
+                schema(schema).
+                groupBy("a", "b").
+                sum("sum", "tuple.a()", Long.TYPE).
+                build()) {
+            aggregator.addRange(records, 100);
+            // NaN keys group together
+            assertEquals(2, aggregator.size());
+        } finally {
+            schema.destroyRecordArray(records);
+        }
+    }
+
+    @Test
+    public void testInvalidAggregates() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+
+        assertThrows(IllegalArgumentException.class, () -> TupleAggregatorGenerator.builder().schema(schema).groupBy("a").build());
+        assertThrows(IllegalArgumentException.class, () -> TupleAggregatorGenerator.builder().schema(schema).groupBy("a").count("a").build());
+        assertThrows(IllegalArgumentException.class, () -> TupleAggregatorGenerator.builder().schema(schema).sum("s", "tuple.a", Boolean.TYPE).build());
+        assertThrows(IllegalArgumentException.class, () -> TupleAggregatorGenerator.builder().schema(schema).groupBy("missing").count("c").build());
+    }
+}
@@ -0,0 +1,106 @@
+package com.nickrobison.tuple.codegen;
+
+import com.nickrobison.tuple.DirectTupleSchema;
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleBytecodeGeneratorTest {
+
+    public interface Point {
+        long x();
+
+        void x(long x);
+
+        double y();
+
+        void y(double y);
+    }
+
+    public interface Unimplemented {
+        long z();
+    }
+
+    @Test
+    void testHeapRoundTrip() throws Exception {
+        TupleBytecodeGenerator generator = new TupleBytecodeGenerator(Point.class, new String[]{"x", "y"}, new Class<?>[]{Long.TYPE, Double.TYPE}, null);
+        Class<?> clazz = generator.generateClass();
+        assertTrue(Point.class.isAssignableFrom(clazz));
+
+        FastTuple tuple = generator.createAllocator().allocate();
+        Point point = (Point) tuple;
+        point.x(42L);
+        point.y(0.5);
+        assertEquals(42L, tuple.getLong(1));
+        assertEquals(0.5, tuple.getDouble(2));
+        tuple.set(1, 7L);
+        assertEquals(7L, tuple.get(1));
+        assertEquals(7L, point.x());
+        assertThrows(IllegalArgumentException.class, () -> tuple.getLong(3));
+    }
+
+    @Test
+    void testDirectRoundTrip() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                addField("c", Short.TYPE).
+                addField("d", Character.TYPE).
+                addField("e", Byte.TYPE).
+                addField("f", Float.TYPE).
+                addField("g", Double.TYPE).
+                directMemory().
+                build();
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 100L);
+        tuple.setInt(2, 40);
+        tuple.setShort(3, (short) 10);
+        tuple.setChar(4, 'j');
+        tuple.setByte(5, (byte) 255);
+        tuple.setFloat(6, 0.125f);
+        tuple.setDouble(7, 0.125);
+        assertEquals(100L, tuple.get(1));
+        assertEquals(40, tuple.getInt(2));
+        assertEquals((short) 10, tuple.getShort(3));
+        assertEquals('j', tuple.getChar(4));
+        assertEquals((byte) 255, tuple.getByte(5));
+        assertEquals(0.125f, tuple.getFloat(6));
+        assertEquals(0.125, tuple.getDouble(7));
+        schema.destroyTuple(tuple);
+    }
+
+    @Test
+    void testWideSchema() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder();
+        for (int i = 0; i < 500; i++) {
+            builder.addField("f" + i, Long.TYPE);
+        }
+        TupleSchema schema = builder.heapMemory().build();
+        FastTuple tuple = schema.createTuple();
+        for (int i = 1; i <= 500; i++) {
+            tuple.setLong(i, i);
+        }
+        assertEquals(500L, tuple.getLong(500));
+        assertEquals(250L, tuple.get(250));
+    }
+
+    @Test
+    void testInvalidFieldName() {
+        TupleBytecodeGenerator generator = new TupleBytecodeGenerator(null, new String[]{"not valid"}, new Class<?>[]{Long.TYPE}, null);
+        assertThrows(IllegalArgumentException.class, generator::generateClass);
+    }
+
+    @Test
+    void testUnimplementedInterface() {
+        TupleBytecodeGenerator generator = new TupleBytecodeGenerator(Unimplemented.class, new String[]{"a"}, new Class<?>[]{Long.TYPE}, null);
+        assertThrows(IllegalArgumentException.class, generator::generateClass);
+    }
+
+    @Test
+    void testAllocatorRequiresClass() {
+        TupleBytecodeGenerator generator = new TupleBytecodeGenerator(null, new String[]{"a"}, new Class<?>[]{Long.TYPE}, null);
+        assertThrows(IllegalStateException.class, generator::createAllocator);
+    }
+}
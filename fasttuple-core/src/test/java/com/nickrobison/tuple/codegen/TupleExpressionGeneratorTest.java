@@ -1,10 +1,13 @@
 package com.nickrobison.tuple.codegen;
 
+import com.nickrobison.tuple.DirectTupleSchema;
 import com.nickrobison.tuple.FastTuple;
 import com.nickrobison.tuple.TupleSchema;
 import org.codehaus.commons.compiler.CompileException;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -236,11 +239,265 @@ public class TupleExpressionGeneratorTest {
         TupleExpressionGenerator.TupleExpression expr3 = TupleExpressionGenerator.builder().expression("tuple.a(100), tuple.b(200), tuple.c(500)").schema(schema).returnVoid();
         assertFalse(expr1.equals("Hello"));
         assertTrue(expr1.equals(expr1));
-        assertFalse(expr1.hashCode() == expr2.hashCode());
-        assertFalse(expr1.equals(expr2));
-        assertFalse(expr1.hashCode() == expr2.hashCode());
+        // Identical expressions are served from the cache
+        assertTrue(expr1.equals(expr2));
+        assertTrue(expr1.hashCode() == expr2.hashCode());
         assertFalse(expr1.equals(expr3));
         assertFalse(expr1.hashCode() == expr3.hashCode());
 
     }
+
+    @Test
+    void testExpressionCache() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Long.TYPE).
+                heapMemory().
+                build();
+        TupleSchema equal = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Long.TYPE).
+                heapMemory().
+                build();
+        TupleSchema other = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Long.TYPE).
+                addField("c", Long.TYPE).
+                heapMemory().
+                build();
+
+        TupleExpressionGenerator.LongTupleExpression sum = TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(schema).returnLong();
+        assertSame(sum, TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(schema).returnLong());
+        assertNotSame(sum, TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(schema).returnDouble());
+        // Equal schemas share their tuple class, and therefore their evaluators
+        assertSame(sum, TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(equal).returnLong());
+        assertNotSame(sum, TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(other).returnLong());
+        assertTrue(TupleExpressionGenerator.cacheSize() > 0);
+
+        TupleExpressionGenerator.clearCache();
+        assertEquals(0, TupleExpressionGenerator.cacheSize());
+        TupleExpressionGenerator.LongTupleExpression recompiled = TupleExpressionGenerator.builder().expression("tuple.a + tuple.b").schema(schema).returnLong();
+        assertNotSame(sum, recompiled);
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 10L);
+        tuple.setLong(2, 32L);
+        assertEquals(42L, recompiled.evaluate(tuple));
+    }
+
+    @Test
+    void testEvaluateAll() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                heapMemory().
+                build();
+
+        FastTuple[] tuples = schema.createTupleArray(10);
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i].setLong(1, i);
+            tuples[i].setInt(2, 2);
+        }
+
+        TupleExpressionGenerator.LongTupleExpression product = TupleExpressionGenerator.builder().expression("tuple.a * tuple.b").schema(schema).returnLong();
+        long[] out = new long[10];
+        product.evaluateAll(tuples, out);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(i * 2L, out[i]);
+        }
+
+        TupleExpressionGenerator.TupleExpression increment = TupleExpressionGenerator.builder().expression("tuple.b(tuple.b() + 1)").schema(schema).returnVoid();
+        increment.evaluateAll(tuples);
+        assertEquals(3, tuples[9].getInt(2));
+
+        // Only expressions compiled against a direct schema can walk blocks of records
+        assertFalse(product instanceof TupleExpressionGenerator.DirectLongTupleExpression);
+    }
+
+    @Test
+    void testEvaluateRange() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Double.TYPE).
+                directMemory().
+                build();
+
+        long records = schema.createRecordArray(100);
+        for (int i = 0; i < 100; i++) {
+            long address = records + (long) i * schema.getByteSize();
+            schema.setLong(address, 0, i);
+            schema.setDouble(address, 1, 0.5);
+        }
+
+        TupleExpressionGenerator.DirectDoubleTupleExpression scaled = TupleExpressionGenerator.builder().expression("tuple.a() * tuple.b()").schema(schema).returnDouble();
+        double[] out = new double[100];
+        scaled.evaluateRange(records, 100, out);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(i * 0.5, out[i], 0.0001);
+        }
+
+        TupleExpressionGenerator.DirectBooleanTupleExpression even = TupleExpressionGenerator.builder().expression("tuple.a() % 2 == 0").schema(schema).returnBoolean();
+        boolean[] matches = new boolean[100];
+        even.evaluateRange(records, 100, matches);
+        assertTrue(matches[98]);
+        assertFalse(matches[99]);
+
+        TupleExpressionGenerator.DirectTupleExpression reset = TupleExpressionGenerator.builder().expression("tuple.a(0L)").schema(schema).returnVoid();
+        reset.evaluateRange(records, 100);
+        assertEquals(0L, schema.getLong(records + 99L * schema.getByteSize(), 0));
+        schema.destroyRecordArray(records);
+    }
+
+    @Test
+    void testEvaluateRangeOverPaddedSchemas() throws Exception {
+        TupleSchema.Builder builder = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE);
+        DirectTupleSchema packed = builder.directMemory().build();
+        DirectTupleSchema padded = builder.directMemory().padToWordSize(64).build();
+        // Padding does not change the tuple class, only the distance between records
+        assertSame(packed.tupleClass(), padded.tupleClass());
+        assertNotEquals(packed.getByteSize(), padded.getByteSize());
+
+        for (DirectTupleSchema schema : new DirectTupleSchema[]{packed, padded}) {
+            long records = schema.createRecordArray(10);
+            for (int i = 0; i < 10; i++) {
+                long address = records + (long) i * schema.getByteSize();
+                schema.setLong(address, 0, i);
+                schema.setInt(address, 1, i % 2);
+            }
+
+            TupleExpressionGenerator.DirectLongTupleExpression doubled = TupleExpressionGenerator.builder().expression("tuple.a() * 2").schema(schema).returnLong();
+            long[] out = new long[10];
+            doubled.evaluateRange(records, 10, out);
+            assertArrayEquals(new long[]{0, 2, 4, 6, 8, 10, 12, 14, 16, 18}, out);
+
+            TupleExpressionGenerator.DirectTupleFilter odd = TupleExpressionGenerator.builder().expression("tuple.b() == 1").schema(schema).returnFilter();
+            int[] selection = new int[10];
+            assertEquals(5, odd.selectRange(records, 10, selection));
+            assertArrayEquals(new int[]{1, 3, 5, 7, 9}, Arrays.copyOf(selection, 5));
+            schema.destroyRecordArray(records);
+        }
+    }
+
+    @Test
+    void testFilterSelection() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                directMemory().
+                build();
+
+        long records = schema.createRecordArray(20);
+        FastTuple[] tuples = new FastTuple[20];
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i] = schema.createTuple(records + (long) i * schema.getByteSize());
+            tuples[i].setLong(1, i);
+            tuples[i].setInt(2, i % 3);
+        }
+
+        TupleExpressionGenerator.DirectTupleFilter filter = TupleExpressionGenerator.builder().expression("tuple.b() == 0 && tuple.a() > 5").schema(schema).returnFilter();
+        assertTrue(filter.evaluate(tuples[6]));
+        assertFalse(filter.evaluate(tuples[3]));
+
+        int[] selection = new int[tuples.length];
+        int count = filter.select(tuples, selection);
+        assertEquals(5, count);
+        assertArrayEquals(new int[]{6, 9, 12, 15, 18}, Arrays.copyOf(selection, count));
+
+        int[] rangeSelection = new int[tuples.length];
+        assertEquals(count, filter.selectRange(records, tuples.length, rangeSelection));
+        assertArrayEquals(Arrays.copyOf(selection, count), Arrays.copyOf(rangeSelection, count));
+
+        // Filters and plain boolean expressions over the same text are cached separately
+        assertFalse(TupleExpressionGenerator.builder().expression("tuple.b() == 0 && tuple.a() > 5").schema(schema).returnBoolean() instanceof TupleExpressionGenerator.TupleFilter);
+        schema.destroyRecordArray(records);
+    }
+
+    @Test
+    void testParameters() throws Exception {
+        TupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Double.TYPE).
+                heapMemory().
+                build();
+
+        FastTuple tuple = schema.createTuple();
+        tuple.setLong(1, 500L);
+        tuple.setDouble(2, 0.5);
+
+        TupleExpressionGenerator.BooleanTupleExpression above = TupleExpressionGenerator.builder().
+                expression("tuple.a > threshold").
+                parameter("threshold", Long.TYPE).
+                schema(schema).
+                returnBoolean();
+        assertTrue(above.evaluate(tuple));
+        TupleExpressionGenerator.BooleanTupleExpression bound = TupleExpressionGenerator.bind(above, 1000L);
+        assertFalse(bound.evaluate(tuple));
+        assertTrue(TupleExpressionGenerator.bind(above, 100).evaluate(tuple));
+        assertSame(above.getClass(), bound.getClass());
+
+        TupleExpressionGenerator.DoubleTupleExpression scaled = TupleExpressionGenerator.builder().
+                expression("tuple.b * scale + offset").
+                parameter("scale", Double.TYPE).
+                parameter("offset", Integer.TYPE).
+                schema(schema).
+                returnDouble();
+        assertEquals(12.0, TupleExpressionGenerator.bind(scaled, 4.0, 10).evaluate(tuple), 0.0001);
+
+        assertThrows(IllegalArgumentException.class, () -> TupleExpressionGenerator.bind(scaled, 4.0));
+        assertThrows(IllegalArgumentException.class, () -> TupleExpressionGenerator.bind(
+                TupleExpressionGenerator.builder().expression("tuple.b").schema(schema).returnDouble(), 1.0));
+        assertThrows(IllegalArgumentException.class, () -> TupleExpressionGenerator.builder().parameter("tuple", Long.TYPE));
+        assertThrows(IllegalArgumentException.class, () -> TupleExpressionGenerator.builder().parameter("x", String.class));
+    }
+
+    @Test
+    void testEvaluateAddress() throws Exception {
+        DirectTupleSchema schema = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                addField("b", Integer.TYPE).
+                addField("c", Double.TYPE).
+                directMemory().
+                build();
+
+        long records = schema.createRecordArray(10);
+        for (int i = 0; i < 10; i++) {
+            long address = records + (long) i * schema.getByteSize();
+            schema.setLong(address, 0, i);
+            schema.setInt(address, 1, 3);
+        }
+        long address = records + 4L * schema.getByteSize();
+
+        TupleExpressionGenerator.DirectLongTupleExpression product = TupleExpressionGenerator.builder().expression("tuple.a() * tuple.b()").schema(schema).returnLong();
+        assertEquals(12L, product.evaluate(address));
+
+        TupleExpressionGenerator.DirectTupleExpression update = TupleExpressionGenerator.builder().expression("tuple.c(tuple.a() / 2.0), tuple.b(tuple.b() + 1)").schema(schema).returnVoid();
+        update.evaluate(address);
+        assertEquals(2.0, schema.getDouble(address, 2), 0.0001);
+        assertEquals(4, schema.getInt(address, 1));
+
+        TupleExpressionGenerator.DirectBooleanTupleExpression above = TupleExpressionGenerator.builder().
+                expression("tuple.a() > threshold").
+                parameter("threshold", Long.TYPE).
+                schema(schema).
+                returnBoolean();
+        assertTrue(TupleExpressionGenerator.bind(above, 3L).evaluate(address));
+        assertFalse(TupleExpressionGenerator.bind(above, 4L).evaluate(address));
+
+        // Expressions which use the tuple as more than a set of accessors can also be evaluated by address
+        TupleExpressionGenerator.DirectLongTupleExpression indexed = TupleExpressionGenerator.builder().expression("tuple.getLong(1) + 1").schema(schema).returnLong();
+        assertEquals(5L, indexed.evaluate(address));
+        long[] out = new long[10];
+        indexed.evaluateRange(records, 10, out);
+        assertEquals(10L, out[9]);
+        schema.destroyRecordArray(records);
+
+        TupleSchema heap = TupleSchema.builder().
+                addField("a", Long.TYPE).
+                heapMemory().
+                build();
+        TupleExpressionGenerator.LongTupleExpression heapExpression = TupleExpressionGenerator.builder().expression("tuple.a").schema(heap).returnLong();
+        assertFalse(heapExpression instanceof TupleExpressionGenerator.DirectLongTupleExpression);
+    }
 }
@@ -22,4 +22,56 @@ class CoterieTest {
 
         Coterie.freeMemory(address);
     }
+
+    @Test
+    void testObjectFieldOffsets() {
+        long a = Coterie.objectFieldOffset(Base.class, "a");
+        long b = Coterie.objectFieldOffset(Derived.class, "b");
+        long c = Coterie.objectFieldOffset(Derived.class, "c");
+
+        // Offsets resolved on the declaring class are valid for instances of subclasses
+        Derived derived = new Derived();
+        Coterie.putLong(derived, a, 1L);
+        Coterie.putLong(derived, b, 2L);
+        Coterie.putObject(derived, c, "c");
+        assertEquals(1L, derived.a);
+        assertEquals(2L, derived.b);
+        assertEquals("c", Coterie.getObject(derived, c));
+
+        assertTrue(Coterie.compareAndSwapLong(derived, b, 2L, 3L));
+        assertFalse(Coterie.compareAndSwapLong(derived, b, 2L, 4L));
+        assertEquals(3L, Coterie.getLongVolatile(derived, b));
+        assertEquals(1L, Coterie.getAndAddLong(derived, a, 1L));
+        assertEquals(2L, Coterie.getLong(derived, a));
+
+        assertThrows(IllegalArgumentException.class, () -> Coterie.objectFieldOffset(Base.class, "missing"));
+    }
+
+    @Test
+    void testFloatingPointAtomics() {
+        long d = Coterie.objectFieldOffset(Derived.class, "d");
+        Derived derived = new Derived();
+        Coterie.putOrderedDouble(derived, d, 1.0);
+        assertTrue(Coterie.compareAndSwapDouble(derived, d, 1.0, 2.0));
+        assertFalse(Coterie.compareAndSwapDouble(derived, d, 1.0, 3.0));
+        assertEquals(2.0, Coterie.getAndAddDouble(derived, d, 0.5));
+        assertEquals(2.5, Coterie.getDoubleVolatile(derived, d));
+
+        long address = Coterie.allocateMemory(8);
+        Coterie.putOrderedFloat(address, 0.0f);
+        assertFalse(Coterie.compareAndSwapFloat(address, -0.0f, 1.0f), "Floats should be compared by their raw bits");
+        assertEquals(0.0f, Coterie.getAndAddFloat(address, 1.5f));
+        assertEquals(1.5f, Coterie.getFloatVolatile(address));
+        Coterie.freeMemory(address);
+    }
+
+    public static class Base {
+        public long a;
+    }
+
+    public static class Derived extends Base {
+        public long b;
+        public Object c;
+        public double d;
+    }
 }
@@ -0,0 +1,20 @@
+// Annotation processor which generates tuple classes for @GenerateTuple interfaces at build time,
+// so that schemas built from them no longer need to run Janino on startup.
+
+val junitVersion = "5.12.1"
+
+dependencies {
+    implementation(project(":fasttuple-core"))
+    testImplementation("org.junit.jupiter:junit-jupiter-api:$junitVersion")
+    testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:$junitVersion")
+}
+
+tasks.jar {
+    manifest {
+        attributes("Automatic-Module-Name" to "com.nickrobison.fasttuple.processor")
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
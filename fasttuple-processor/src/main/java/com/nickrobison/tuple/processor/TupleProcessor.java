@@ -0,0 +1,181 @@
+package com.nickrobison.tuple.processor;
+
+import com.nickrobison.tuple.GenerateTuple;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates tuple classes at build time for interfaces annotated with {@link GenerateTuple}.
+ * See {@link TupleSourceGenerator} for the classes which are emitted.
+ */
+public class TupleProcessor extends AbstractProcessor {
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GenerateTuple.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateTuple.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@GenerateTuple can only be applied to interfaces");
+                continue;
+            }
+            final TypeElement iface = (TypeElement) element;
+            final List<TupleSourceGenerator.Field> fields = readFields(iface);
+            if (fields == null) {
+                continue;
+            }
+            try {
+                generate(iface, fields);
+            } catch (IOException e) {
+                error(iface, "Unable to write generated tuple classes: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pairs up the getters and setters of the interface into fields, in getter declaration order.
+     * Atomic accessors of a field, such as {@code compareAndSetCount} for a long field {@code count},
+     * are implemented by the generated classes and do not declare fields of their own.
+     *
+     * @return - the fields, or null if the interface cannot be implemented by a tuple
+     */
+    private List<TupleSourceGenerator.Field> readFields(TypeElement iface) {
+        final List<ExecutableElement> methods = new ArrayList<>();
+        final Map<String, TypeKind> getters = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(iface))) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            methods.add(method);
+            if (method.getParameters().isEmpty() && isFieldType(method.getReturnType().getKind())) {
+                getters.put(method.getSimpleName().toString(), method.getReturnType().getKind());
+            }
+        }
+        // getVolatileCount looks like a getter, so atomic accessors are picked out before the remaining methods
+        final List<ExecutableElement> atomics = new ArrayList<>();
+        for (ExecutableElement method : methods) {
+            if (isAtomicAccessor(method, getters)) {
+                atomics.add(method);
+            }
+        }
+        for (ExecutableElement method : atomics) {
+            getters.remove(method.getSimpleName().toString());
+        }
+
+        final Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+        boolean valid = true;
+        for (ExecutableElement method : methods) {
+            final String name = method.getSimpleName().toString();
+            final TypeMirror returnType = method.getReturnType();
+            if (atomics.contains(method) || getters.containsKey(name) && method.getParameters().isEmpty()) {
+                continue;
+            }
+            if (method.getParameters().size() == 1 && returnType.getKind() == TypeKind.VOID
+                    && isFieldType(method.getParameters().get(0).asType().getKind())) {
+                setters.put(name, method);
+            } else {
+                error(method, "Tuple interfaces may only declare primitive getters, setters and atomic accessors");
+                valid = false;
+            }
+        }
+        for (Map.Entry<String, ExecutableElement> setter : setters.entrySet()) {
+            final TypeKind type = setter.getValue().getParameters().get(0).asType().getKind();
+            if (getters.get(setter.getKey()) != type) {
+                error(setter.getValue(), "Setter " + setter.getKey() + " has no matching getter");
+                valid = false;
+            }
+        }
+        if (getters.isEmpty()) {
+            error(iface, "Tuple interfaces must declare at least one getter");
+            valid = false;
+        }
+        if (!valid) {
+            return null;
+        }
+        final List<TupleSourceGenerator.Field> fields = new ArrayList<>();
+        for (Map.Entry<String, TypeKind> getter : getters.entrySet()) {
+            fields.add(new TupleSourceGenerator.Field(getter.getKey(), getter.getValue()));
+        }
+        return fields;
+    }
+
+    private void generate(TypeElement iface, List<TupleSourceGenerator.Field> fields) throws IOException {
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(iface).toString();
+        final TupleSourceGenerator generator = new TupleSourceGenerator(binaryName, iface.getQualifiedName().toString(), fields);
+        for (Map.Entry<String, String> source : generator.generate().entrySet()) {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(source.getKey(), iface);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.getValue());
+            }
+        }
+    }
+
+    private static boolean isFieldType(TypeKind kind) {
+        return kind.isPrimitive() && kind != TypeKind.BOOLEAN;
+    }
+
+    /**
+     * Matches the compareAndSet, getAndAdd, getVolatile and setRelease accessors which TupleSourceGenerator
+     * generates for each long, int, double and float field.
+     */
+    private static boolean isAtomicAccessor(ExecutableElement method, Map<String, TypeKind> getters) {
+        final String name = method.getSimpleName().toString();
+        final TypeKind returnType = method.getReturnType().getKind();
+        final List<TypeKind> parameters = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            parameters.add(parameter.asType().getKind());
+        }
+        for (Map.Entry<String, TypeKind> getter : getters.entrySet()) {
+            final TypeKind type = getter.getValue();
+            if (!TupleSourceGenerator.isAtomic(type)) {
+                continue;
+            }
+            final String field = getter.getKey();
+            if (name.equals(TupleSourceGenerator.atomicAccessor("compareAndSet", field))) {
+                return parameters.equals(Arrays.asList(type, type)) && returnType == TypeKind.BOOLEAN;
+            } else if (name.equals(TupleSourceGenerator.atomicAccessor("getAndAdd", field))) {
+                return parameters.equals(Collections.singletonList(type)) && returnType == type;
+            } else if (name.equals(TupleSourceGenerator.atomicAccessor("getVolatile", field))) {
+                return parameters.isEmpty() && returnType == type;
+            } else if (name.equals(TupleSourceGenerator.atomicAccessor("setRelease", field))) {
+                return parameters.equals(Collections.singletonList(type)) && returnType == TypeKind.VOID;
+            }
+        }
+        return false;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
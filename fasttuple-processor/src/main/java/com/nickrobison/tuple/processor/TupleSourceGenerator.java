@@ -0,0 +1,347 @@
+package com.nickrobison.tuple.processor;
+
+import javax.lang.model.type.TypeKind;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the source of the classes generated for a tuple interface. These mirror the classes which the runtime
+ * code generators would otherwise compile for a schema with the same fields:
+ * <ul>
+ * <li>{@code <Name>HeapTuple} and {@code <Name>DirectTuple}, the heap and direct tuple classes</li>
+ * <li>{@code <Name>HeapTupleAllocator} and {@code <Name>DirectTupleAllocator}, their allocators</li>
+ * <li>{@code <Name>TupleSchemas}, which creates schema builders with the fields in the right order</li>
+ * </ul>
+ * where the name is the binary name of the interface, with nested class separators replaced by underscores.
+ * The direct layout must match the one computed by DirectTupleSchema, otherwise the runtime ignores the class.
+ * <p>
+ * Like the runtime generators, the tuple classes implement compareAndSet, getAndAdd, getVolatile and setRelease
+ * accessors for each long, int, double and float field, through a VarHandle on heap tuples and {@code Coterie}
+ * on direct tuples.
+ */
+final class TupleSourceGenerator {
+    private static final TypeKind[] TYPES = {
+            TypeKind.LONG, TypeKind.INT, TypeKind.SHORT, TypeKind.CHAR, TypeKind.BYTE, TypeKind.FLOAT, TypeKind.DOUBLE
+    };
+    private static final String COTERIE = "com.nickrobison.tuple.unsafe.Coterie";
+    private static final String VAR_HANDLE = "java.lang.invoke.VarHandle";
+    private static final String HANDLE_SUFFIX = "$handle";
+    // Matches the field core's TupleLookups reads
+    private static final String LOOKUP_FIELD = "$lookup";
+
+    static final class Field {
+        final String name;
+        final TypeKind type;
+
+        Field(String name, TypeKind type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        String typeName() {
+            return type.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String packageName;
+    private final String prefix;
+    private final String iface;
+    private final List<Field> fields;
+    private final int[] layout;
+
+    /**
+     * @param binaryName    - binary name of the interface
+     * @param canonicalName - canonical name of the interface
+     * @param fields        - fields of the tuple, in order
+     */
+    TupleSourceGenerator(String binaryName, String canonicalName, List<Field> fields) {
+        final int pkg = binaryName.lastIndexOf('.');
+        this.packageName = pkg < 0 ? "" : binaryName.substring(0, pkg);
+        this.prefix = binaryName.substring(pkg + 1).replace('$', '_');
+        this.iface = canonicalName;
+        this.fields = new ArrayList<>(fields);
+        this.layout = layout(this.fields);
+    }
+
+    /**
+     * @return - source of each generated class, keyed by its fully qualified name
+     */
+    Map<String, String> generate() {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(qualify(prefix + "HeapTuple"), tupleClass(prefix + "HeapTuple", false));
+        sources.put(qualify(prefix + "HeapTupleAllocator"), allocatorClass(prefix + "HeapTuple", false));
+        sources.put(qualify(prefix + "DirectTuple"), tupleClass(prefix + "DirectTuple", true));
+        sources.put(qualify(prefix + "DirectTupleAllocator"), allocatorClass(prefix + "DirectTuple", true));
+        sources.put(qualify(prefix + "TupleSchemas"), schemasClass());
+        return sources;
+    }
+
+    /**
+     * Same packing as DirectTupleSchema, largest fields first, keeping declaration order between fields of equal size.
+     */
+    static int[] layout(List<Field> fields) {
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt((Integer i) -> sizeOf(fields.get(i).type)).reversed());
+        final int[] layout = new int[fields.size()];
+        int offset = 0;
+        for (int i : order) {
+            layout[i] = offset;
+            offset += sizeOf(fields.get(i).type);
+        }
+        return layout;
+    }
+
+    private static int sizeOf(TypeKind type) {
+        switch (type) {
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    private String qualify(String className) {
+        return packageName.isEmpty() ? className : packageName + "." + className;
+    }
+
+    private StringBuilder header() {
+        final StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        return src.append("// Generated by com.nickrobison.tuple.processor.TupleProcessor, do not edit\n");
+    }
+
+    private String tupleClass(String className, boolean direct) {
+        final StringBuilder src = header();
+        src.append("public class ").append(className).append(" extends com.nickrobison.tuple.FastTuple implements ").append(iface).append(" {\n");
+        if (direct) {
+            src.append("    public long address;\n");
+        } else {
+            for (Field field : fields) {
+                src.append("    public ").append(field.typeName()).append(' ').append(field.name).append(";\n");
+            }
+            for (Field field : fields) {
+                if (isAtomic(field.type)) {
+                    src.append("    private static final ").append(VAR_HANDLE).append(' ').append(field.name).append(HANDLE_SUFFIX).append(";\n");
+                }
+            }
+        }
+        // Read reflectively by the core library, to define expressions as hidden classes next to the tuple class
+        src.append("    private static final java.lang.invoke.MethodHandles.Lookup ").append(LOOKUP_FIELD).append(" = java.lang.invoke.MethodHandles.lookup();\n");
+        src.append("\n    public ").append(className).append("() {\n    }\n\n");
+
+        if (!direct && fields.stream().anyMatch(field -> isAtomic(field.type))) {
+            // Looked up once, the static final handles are constants to the JIT
+            src.append("    static {\n        try {\n");
+            for (Field field : fields) {
+                if (isAtomic(field.type)) {
+                    src.append("            ").append(field.name).append(HANDLE_SUFFIX).append(" = ").append(LOOKUP_FIELD).append(".findVarHandle(")
+                            .append(className).append(".class, \"").append(field.name).append("\", ").append(field.typeName()).append(".class);\n");
+                }
+            }
+            src.append("        } catch (ReflectiveOperationException e) {\n")
+                    .append("            throw new ExceptionInInitializerError(e);\n        }\n    }\n\n");
+        }
+        src.append("    public static String[] $fieldNames() {\n        return new String[]{");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append('"').append(fields.get(i).name).append('"');
+        }
+        src.append("};\n    }\n\n");
+        src.append("    public static Class<?>[] $fieldTypes() {\n        return new Class<?>[]{");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append(fields.get(i).typeName()).append(".class");
+        }
+        src.append("};\n    }\n\n");
+        if (direct) {
+            src.append("    public static int[] $layout() {\n        return new int[]{");
+            for (int i = 0; i < layout.length; i++) {
+                src.append(i == 0 ? "" : ", ").append(layout[i]);
+            }
+            src.append("};\n    }\n\n");
+        }
+
+        for (int i = 0; i < fields.size(); i++) {
+            final Field field = fields.get(i);
+            src.append("    public ").append(field.typeName()).append(' ').append(field.name).append("() {\n")
+                    .append("        return ").append(read(i, direct)).append(";\n    }\n\n");
+            src.append("    public void ").append(field.name).append('(').append(field.typeName()).append(" value) {\n")
+                    .append("        ").append(write(i, direct, "value")).append(";\n    }\n\n");
+            if (isAtomic(field.type)) {
+                atomicAccessors(src, i, direct);
+            }
+        }
+
+        src.append("    @Override\n    public Object get(int index) {\n        switch (index) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append("            case ").append(i + 1).append(":\n                return ").append(read(i, direct)).append(";\n");
+        }
+        src.append("            default:\n                throw new IllegalArgumentException();\n        }\n    }\n\n");
+
+        src.append("    @Override\n    public void set(int index, Object value) {\n        switch (index) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append("            case ").append(i + 1).append(":\n                ")
+                    .append(write(i, direct, "(" + boxedName(fields.get(i).type) + ") value")).append(";\n                break;\n");
+        }
+        src.append("            default:\n                throw new IllegalArgumentException();\n        }\n    }\n\n");
+
+        for (TypeKind type : TYPES) {
+            final String typeName = type.name().toLowerCase(Locale.ROOT);
+            final String accessor = accessorName(type);
+            src.append("    @Override\n    public ").append(typeName).append(" get").append(accessor).append("(int index) {\n        switch (index) {\n");
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).type == type) {
+                    src.append("            case ").append(i + 1).append(":\n                return ").append(read(i, direct)).append(";\n");
+                }
+            }
+            src.append("            default:\n                throw new IllegalArgumentException();\n        }\n    }\n\n");
+
+            src.append("    @Override\n    public void set").append(accessor).append("(int index, ").append(typeName).append(" value) {\n        switch (index) {\n");
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).type == type) {
+                    src.append("            case ").append(i + 1).append(":\n                ").append(write(i, direct, "value")).append(";\n                break;\n");
+                }
+            }
+            src.append("            default:\n                throw new IllegalArgumentException();\n        }\n    }\n\n");
+        }
+        src.setLength(src.length() - 1);
+        return src.append("}\n").toString();
+    }
+
+    /**
+     * Heap tuples invoke the access modes of the field's handle, except for floating point getAndAdd, which field
+     * handles do not support, direct tuples the atomic operations of Coterie on the field's address.
+     */
+    private void atomicAccessors(StringBuilder src, int index, boolean direct) {
+        final Field field = fields.get(index);
+        final String type = field.typeName();
+        final String accessor = accessorName(field.type);
+
+        src.append("    public boolean ").append(atomicAccessor("compareAndSet", field.name)).append('(').append(type).append(" expected, ")
+                .append(type).append(" update) {\n        return ")
+                .append(atomicCall(index, direct, "compareAndSwap" + accessor, "compareAndSet")).append("expected, update);\n    }\n\n");
+
+        src.append("    public ").append(type).append(' ').append(atomicAccessor("getAndAdd", field.name)).append('(').append(type)
+                .append(" delta) {\n        return ");
+        if (!direct && (field.type == TypeKind.DOUBLE || field.type == TypeKind.FLOAT)) {
+            src.append("com.nickrobison.tuple.codegen.TupleBytecodeGenerator.getAndAdd").append(accessor)
+                    .append('(').append(field.name).append(HANDLE_SUFFIX).append(", this, ");
+        } else {
+            src.append(direct ? "" : "(" + type + ") ").append(atomicCall(index, direct, "getAndAdd" + accessor, "getAndAdd"));
+        }
+        src.append("delta);\n    }\n\n");
+
+        src.append("    public ").append(type).append(' ').append(atomicAccessor("getVolatile", field.name)).append("() {\n        return ");
+        if (direct) {
+            src.append(COTERIE).append(".get").append(accessor).append("Volatile(address + ").append(layout[index]).append(')');
+        } else {
+            src.append('(').append(type).append(") ").append(field.name).append(HANDLE_SUFFIX).append(".getVolatile(this)");
+        }
+        src.append(";\n    }\n\n");
+
+        src.append("    public void ").append(atomicAccessor("setRelease", field.name)).append('(').append(type).append(" value) {\n        ")
+                .append(atomicCall(index, direct, "putOrdered" + accessor, "setRelease")).append("value);\n    }\n\n");
+    }
+
+    /**
+     * @return - the start of a call to an atomic operation on a field, up to and including the separator before its arguments
+     */
+    private String atomicCall(int index, boolean direct, String coterieMethod, String handleMethod) {
+        if (direct) {
+            return COTERIE + "." + coterieMethod + "(address + " + layout[index] + ", ";
+        }
+        return fields.get(index).name + HANDLE_SUFFIX + "." + handleMethod + "(this, ";
+    }
+
+    /**
+     * Same widths as the runtime generators, which both heap and direct memory support atomically.
+     */
+    static boolean isAtomic(TypeKind type) {
+        return type == TypeKind.LONG || type == TypeKind.INT || type == TypeKind.DOUBLE || type == TypeKind.FLOAT;
+    }
+
+    /**
+     * @return - the name of an atomic accessor, such as {@code compareAndSetCount} for a field named {@code count}
+     */
+    static String atomicAccessor(String operation, String fieldName) {
+        return operation + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    }
+
+    /**
+     * Direct tuples get a flyweight allocator, which re-points them by writing their address field directly.
+     */
+    private String allocatorClass(String tupleClass, boolean direct) {
+        final StringBuilder src = header()
+                .append("public class ").append(tupleClass).append("Allocator implements com.nickrobison.tuple.codegen.TupleAllocatorGenerator.")
+                .append(direct ? "FlyweightAllocator" : "TupleAllocator").append(" {\n")
+                .append("    @Override\n    public com.nickrobison.tuple.FastTuple allocate() {\n")
+                .append("        return new ").append(tupleClass).append("();\n    }\n");
+        if (direct) {
+            src.append("\n    @Override\n    public void moveTo(com.nickrobison.tuple.FastTuple tuple, long position) {\n")
+                    .append("        ((").append(tupleClass).append(") tuple).address = position;\n    }\n")
+                    .append("\n    @Override\n    public long position(com.nickrobison.tuple.FastTuple tuple) {\n")
+                    .append("        return ((").append(tupleClass).append(") tuple).address;\n    }\n");
+        }
+        return src.append("}\n").toString();
+    }
+
+    private String schemasClass() {
+        final StringBuilder src = header();
+        src.append("public final class ").append(prefix).append("TupleSchemas {\n\n")
+                .append("    private ").append(prefix).append("TupleSchemas() {\n    }\n\n")
+                .append("    /**\n     * @return - a schema builder with the fields of {@link ").append(iface)
+                .append("}, which builds schemas from the generated classes\n     */\n")
+                .append("    public static com.nickrobison.tuple.TupleSchema.Builder builder() {\n")
+                .append("        return com.nickrobison.tuple.TupleSchema.builder()");
+        for (Field field : fields) {
+            src.append("\n                .addField(\"").append(field.name).append("\", ").append(field.typeName()).append(".class)");
+        }
+        src.append("\n                .implementInterface(").append(iface).append(".class);\n    }\n}\n");
+        return src.toString();
+    }
+
+    private String read(int index, boolean direct) {
+        final Field field = fields.get(index);
+        if (direct) {
+            return COTERIE + ".get" + accessorName(field.type) + "(address + " + layout[index] + ")";
+        }
+        return "this." + field.name;
+    }
+
+    private String write(int index, boolean direct, String value) {
+        final Field field = fields.get(index);
+        if (direct) {
+            return COTERIE + ".put" + accessorName(field.type) + "(address + " + layout[index] + ", " + value + ")";
+        }
+        return "this." + field.name + " = " + value;
+    }
+
+    private static String accessorName(TypeKind type) {
+        final String name = type.name().toLowerCase(Locale.ROOT);
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String boxedName(TypeKind type) {
+        switch (type) {
+            case INT:
+                return "Integer";
+            case CHAR:
+                return "Character";
+            default:
+                return accessorName(type);
+        }
+    }
+}
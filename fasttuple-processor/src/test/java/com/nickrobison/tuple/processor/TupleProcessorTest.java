@@ -0,0 +1,133 @@
+package com.nickrobison.tuple.processor;
+
+import com.nickrobison.tuple.FastTuple;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.lang.model.type.TypeKind;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleProcessorTest {
+
+    private static final String POINT = "package test;\n" +
+            "@com.nickrobison.tuple.GenerateTuple\n" +
+            "public interface Point {\n" +
+            "    byte flag();\n" +
+            "    void flag(byte value);\n" +
+            "    int x();\n" +
+            "    void x(int value);\n" +
+            "    long id();\n" +
+            "    void id(long value);\n" +
+            "    double weight();\n" +
+            "    void weight(double value);\n" +
+            "    long getAndAddId(long delta);\n" +
+            "    int getVolatileX();\n" +
+            "    void setReleaseX(int value);\n" +
+            "    boolean compareAndSetWeight(double expected, double update);\n" +
+            "    double getAndAddWeight(double delta);\n" +
+            "}\n";
+
+    @TempDir
+    static Path dir;
+    private static URLClassLoader loader;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        final Path source = dir.resolve("src/test/Point.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, POINT.getBytes(StandardCharsets.UTF_8));
+        final Path classes = Files.createDirectories(dir.resolve("classes"));
+
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int result = compiler.run(null, null, errors,
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", TupleProcessor.class.getName(),
+                "-d", classes.toString(),
+                source.toString());
+        assertEquals(0, result, errors.toString());
+        loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, TupleProcessorTest.class.getClassLoader());
+    }
+
+    @Test
+    void testHeapSchema() throws Exception {
+        final TupleSchema schema = builder().heapMemory().build();
+        assertEquals(loader.loadClass("test.PointHeapTuple"), schema.tupleClass());
+
+        final FastTuple tuple = schema.createTuple();
+        tuple.setInt(2, 7);
+        tuple.set(3, 42L);
+        assertEquals(7, tuple.get(2));
+        assertEquals(42L, tuple.getLong(3));
+        assertThrows(IllegalArgumentException.class, () -> tuple.getLong(1));
+    }
+
+    @Test
+    void testDirectSchema() throws Exception {
+        final TupleSchema schema = builder().directMemory().build();
+        assertEquals(loader.loadClass("test.PointDirectTuple"), schema.tupleClass());
+
+        final FastTuple[] tuples = schema.createTupleArray(4);
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i].setByte(1, (byte) i);
+            tuples[i].setDouble(4, i * 0.5);
+        }
+        for (int i = 0; i < tuples.length; i++) {
+            assertEquals((byte) i, tuples[i].getByte(1));
+            assertEquals(i * 0.5, tuples[i].getDouble(4), 0.0001);
+        }
+        schema.destroyTupleArray(tuples);
+    }
+
+    @Test
+    void testAtomicAccessors() throws Exception {
+        final Method getAndAddId = loader.loadClass("test.Point").getMethod("getAndAddId", Long.TYPE);
+        final Method getVolatileX = loader.loadClass("test.Point").getMethod("getVolatileX");
+        final Method setReleaseX = loader.loadClass("test.Point").getMethod("setReleaseX", Integer.TYPE);
+        final Method compareAndSetWeight = loader.loadClass("test.Point").getMethod("compareAndSetWeight", Double.TYPE, Double.TYPE);
+        final Method getAndAddWeight = loader.loadClass("test.Point").getMethod("getAndAddWeight", Double.TYPE);
+        for (TupleSchema schema : new TupleSchema[]{builder().heapMemory().build(), builder().directMemory().build()}) {
+            // The accessors are not fields of their own
+            assertEquals(4, schema.getFieldNames().length);
+            final FastTuple tuple = schema.createTuple();
+            tuple.setLong(3, 40L);
+            assertEquals(40L, getAndAddId.invoke(tuple, 2L));
+            assertEquals(42L, tuple.getLong(3));
+            setReleaseX.invoke(tuple, 7);
+            assertEquals(7, getVolatileX.invoke(tuple));
+            tuple.setDouble(4, 1.0);
+            assertEquals(true, compareAndSetWeight.invoke(tuple, 1.0, 2.0));
+            assertEquals(false, compareAndSetWeight.invoke(tuple, 1.0, 3.0));
+            assertEquals(2.0, getAndAddWeight.invoke(tuple, 0.5));
+            assertEquals(2.5, tuple.getDouble(4));
+            schema.destroyTuple(tuple);
+        }
+    }
+
+    @Test
+    void testLayout() {
+        final int[] layout = TupleSourceGenerator.layout(Arrays.asList(
+                new TupleSourceGenerator.Field("flag", TypeKind.BYTE),
+                new TupleSourceGenerator.Field("x", TypeKind.INT),
+                new TupleSourceGenerator.Field("id", TypeKind.LONG),
+                new TupleSourceGenerator.Field("weight", TypeKind.DOUBLE)));
+        assertArrayEquals(new int[]{20, 16, 0, 8}, layout);
+    }
+
+    private static TupleSchema.Builder builder() throws Exception {
+        return (TupleSchema.Builder) loader.loadClass("test.PointTupleSchemas").getMethod("builder").invoke(null);
+    }
+}
@@ -0,0 +1,59 @@
+// SIMD implementations of the core column kernels, built on the incubating Vector API.
+// The kernels access columns as MemorySegments, so they are packaged as the Java 22 classes of a multi-release jar.
+// They also need --add-modules jdk.incubator.vector at runtime, otherwise core falls back to scalar loops.
+
+val junitVersion = "5.12.1"
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+dependencies {
+    implementation(project(":fasttuple-core"))
+    testImplementation("org.junit.jupiter:junit-jupiter-api:$junitVersion")
+    testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:$junitVersion")
+}
+
+// Java 22+ kernels, packaged into META-INF/versions/22. The main source set holds no classes, only the service
+// registration, so on older JVMs the provider fails to load and core falls back to its scalar kernels.
+val java22: SourceSet by sourceSets.creating {
+    java.srcDir("src/main/java22")
+    compileClasspath += sourceSets.main.get().compileClasspath
+}
+
+sourceSets.test {
+    compileClasspath += java22.output
+}
+
+tasks.named<JavaCompile>(java22.compileJavaTaskName) {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(22))
+    })
+    options.release = 22
+    options.compilerArgs.addAll(vectorModule)
+}
+
+tasks.compileTestJava {
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(22))
+    })
+    options.release = 22
+    options.compilerArgs.addAll(vectorModule)
+}
+
+tasks.jar {
+    into("META-INF/versions/22") {
+        from(java22.output)
+    }
+    manifest {
+        attributes("Automatic-Module-Name" to "com.nickrobison.fasttuple.vector")
+        attributes("Multi-Release" to "true")
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+    // Tests run against the multi-release jar on Java 22, so the Vector API kernels are the ones exercised
+    classpath = files(tasks.jar) + sourceSets.test.get().runtimeClasspath - sourceSets.main.get().output
+    jvmArgs(vectorModule + "--enable-native-access=ALL-UNNAMED")
+    javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(22))
+    })
+}
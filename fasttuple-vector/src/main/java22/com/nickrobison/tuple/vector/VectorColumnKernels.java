@@ -0,0 +1,205 @@
+package com.nickrobison.tuple.vector;
+
+import com.nickrobison.tuple.ColumnKernels;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ColumnKernels} implemented with the incubating Vector API, processing as many values per instruction as the
+ * preferred species of the host CPU allows.
+ * <p>
+ * Columns are read through native {@link MemorySegment}s spanning the column memory, so this implementation is only
+ * packaged for Java 22 and later, and needs {@code --add-modules jdk.incubator.vector} at runtime. Older JVMs cannot
+ * find the provider named by the service registration, so the core module falls back to its scalar implementation.
+ */
+public final class VectorColumnKernels implements ColumnKernels {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    private static MemorySegment column(long address, long rows) {
+        return MemorySegment.ofAddress(address).reinterpret(rows * 8);
+    }
+
+    /**
+     * Lane counts are powers of two, so this is the largest multiple of the lane count no greater than rows.
+     */
+    private static long loopBound(VectorSpecies<?> species, long rows) {
+        return rows & -species.length();
+    }
+
+    @Override
+    public long sumLong(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(LONGS, rows);
+        LongVector acc = LongVector.zero(LONGS);
+        long i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            acc = acc.add(LongVector.fromMemorySegment(LONGS, values, i * 8, ORDER));
+        }
+        long sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < rows; i++) {
+            sum += values.get(ValueLayout.JAVA_LONG_UNALIGNED, i * 8);
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumDouble(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(DOUBLES, rows);
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        long i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.add(DoubleVector.fromMemorySegment(DOUBLES, values, i * 8, ORDER));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < rows; i++) {
+            sum += values.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8);
+        }
+        return sum;
+    }
+
+    @Override
+    public long minLong(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(LONGS, rows);
+        LongVector acc = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        long i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            acc = acc.min(LongVector.fromMemorySegment(LONGS, values, i * 8, ORDER));
+        }
+        long min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < rows; i++) {
+            min = Math.min(min, values.get(ValueLayout.JAVA_LONG_UNALIGNED, i * 8));
+        }
+        return min;
+    }
+
+    @Override
+    public long maxLong(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(LONGS, rows);
+        LongVector acc = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        long i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            acc = acc.max(LongVector.fromMemorySegment(LONGS, values, i * 8, ORDER));
+        }
+        long max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < rows; i++) {
+            max = Math.max(max, values.get(ValueLayout.JAVA_LONG_UNALIGNED, i * 8));
+        }
+        return max;
+    }
+
+    @Override
+    public double minDouble(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(DOUBLES, rows);
+        DoubleVector acc = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        long i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.min(DoubleVector.fromMemorySegment(DOUBLES, values, i * 8, ORDER));
+        }
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < rows; i++) {
+            min = Math.min(min, values.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8));
+        }
+        return min;
+    }
+
+    @Override
+    public double maxDouble(long column, long rows) {
+        final MemorySegment values = column(column, rows);
+        final long bound = loopBound(DOUBLES, rows);
+        DoubleVector acc = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        long i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.max(DoubleVector.fromMemorySegment(DOUBLES, values, i * 8, ORDER));
+        }
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < rows; i++) {
+            max = Math.max(max, values.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8));
+        }
+        return max;
+    }
+
+    @Override
+    public int filterLongRange(long column, int rows, long min, long max, int[] selection) {
+        final MemorySegment values = column(column, rows);
+        final int bound = LONGS.loopBound(rows);
+        int count = 0;
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            final LongVector vector = LongVector.fromMemorySegment(LONGS, values, i * 8L, ORDER);
+            final VectorMask<Long> matches = vector.compare(VectorOperators.GE, min)
+                    .and(vector.compare(VectorOperators.LE, max));
+            count = select(matches.toLong(), i, selection, count);
+        }
+        for (; i < rows; i++) {
+            final long value = values.get(ValueLayout.JAVA_LONG_UNALIGNED, i * 8L);
+            if (value >= min && value <= max) {
+                selection[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int filterDoubleRange(long column, int rows, double min, double max, int[] selection) {
+        final MemorySegment values = column(column, rows);
+        final int bound = DOUBLES.loopBound(rows);
+        int count = 0;
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            final DoubleVector vector = DoubleVector.fromMemorySegment(DOUBLES, values, i * 8L, ORDER);
+            final VectorMask<Double> matches = vector.compare(VectorOperators.GE, min)
+                    .and(vector.compare(VectorOperators.LE, max));
+            count = select(matches.toLong(), i, selection, count);
+        }
+        for (; i < rows; i++) {
+            final double value = values.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8L);
+            if (value >= min && value <= max) {
+                selection[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void axpyDouble(double a, long x, long y, long rows) {
+        final MemorySegment xs = column(x, rows);
+        final MemorySegment ys = column(y, rows);
+        final DoubleVector scale = DoubleVector.broadcast(DOUBLES, a);
+        final long bound = loopBound(DOUBLES, rows);
+        long i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            // Multiply then add, rather than fma, so results match the scalar implementation exactly
+            DoubleVector.fromMemorySegment(DOUBLES, xs, i * 8, ORDER)
+                    .mul(scale)
+                    .add(DoubleVector.fromMemorySegment(DOUBLES, ys, i * 8, ORDER))
+                    .intoMemorySegment(ys, i * 8, ORDER);
+        }
+        for (; i < rows; i++) {
+            ys.set(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8, a * xs.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8) + ys.get(ValueLayout.JAVA_DOUBLE_UNALIGNED, i * 8));
+        }
+    }
+
+    /**
+     * Appends the row index of every set lane in the mask to the selection vector.
+     */
+    private static int select(long lanes, int base, int[] selection, int count) {
+        while (lanes != 0) {
+            selection[count++] = base + Long.numberOfTrailingZeros(lanes);
+            lanes &= lanes - 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package com.nickrobison.tuple.vector;
+
+import com.nickrobison.tuple.ColumnKernels;
+import com.nickrobison.tuple.ColumnarTupleSchema;
+import com.nickrobison.tuple.TupleSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorColumnKernelsTest {
+    // Deliberately not a multiple of any vector length, so the scalar tails are exercised
+    private static final int ROWS = 1003;
+
+    private ColumnarTupleSchema schema;
+    private long[] columns;
+
+    @BeforeEach
+    void setup() throws Exception {
+        schema = TupleSchema.builder().
+                addField("id", Long.TYPE).
+                addField("price", Double.TYPE).
+                addField("total", Double.TYPE).
+                columnar().
+                build();
+        columns = schema.createColumns(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            schema.setLong(columns, i, 0, (i * 7919L) % 1000 - 500);
+            schema.setDouble(columns, i, 1, i * 0.25);
+            schema.setDouble(columns, i, 2, 1.0);
+        }
+    }
+
+    @AfterEach
+    void teardown() {
+        schema.destroyColumns(columns);
+    }
+
+    @Test
+    void serviceLoaderTest() {
+        assertInstanceOf(VectorColumnKernels.class, ColumnKernels.get());
+    }
+
+    @Test
+    void matchesScalarTest() {
+        final ColumnKernels vector = new VectorColumnKernels();
+        final ColumnKernels scalar = ColumnKernels.scalar();
+
+        assertEquals(scalar.sumLong(columns[0], ROWS), vector.sumLong(columns[0], ROWS));
+        assertEquals(scalar.minLong(columns[0], ROWS), vector.minLong(columns[0], ROWS));
+        assertEquals(scalar.maxLong(columns[0], ROWS), vector.maxLong(columns[0], ROWS));
+        assertEquals(scalar.sumDouble(columns[1], ROWS), vector.sumDouble(columns[1], ROWS), 0.0001);
+        assertEquals(scalar.minDouble(columns[1], ROWS), vector.minDouble(columns[1], ROWS));
+        assertEquals(scalar.maxDouble(columns[1], ROWS), vector.maxDouble(columns[1], ROWS));
+
+        final int[] expected = new int[ROWS];
+        final int[] actual = new int[ROWS];
+        int count = scalar.filterLongRange(columns[0], ROWS, -100, 100, expected);
+        assertEquals(count, vector.filterLongRange(columns[0], ROWS, -100, 100, actual));
+        assertArrayEquals(expected, actual);
+
+        count = scalar.filterDoubleRange(columns[1], ROWS, 10.0, 20.0, expected);
+        assertEquals(41, count);
+        assertEquals(count, vector.filterDoubleRange(columns[1], ROWS, 10.0, 20.0, actual));
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void axpyTest() {
+        new VectorColumnKernels().axpyDouble(2.0, columns[1], columns[2], ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i * 0.5 + 1.0, schema.getDouble(columns, i, 2));
+        }
+    }
+
+    @Test
+    void emptyColumnTest() {
+        final ColumnKernels vector = new VectorColumnKernels();
+        assertEquals(0L, vector.sumLong(columns[0], 0));
+        assertEquals(Long.MAX_VALUE, vector.minLong(columns[0], 0));
+        assertEquals(Double.NEGATIVE_INFINITY, vector.maxDouble(columns[1], 0));
+        assertEquals(0, vector.filterLongRange(columns[0], 0, 0, 0, new int[0]));
+    }
+}
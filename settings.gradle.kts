@@ -7,5 +7,10 @@
  * in the user manual at https://docs.gradle.org/6.2.2/userguide/multi_project_builds.html
  */
 
+plugins {
+    // Resolves the JDK 22 toolchain used to compile the multi-release classes
+    id("org.gradle.toolchains.foojay-resolver-convention") version "1.0.0"
+}
+
 rootProject.name = "fasttuple"
-include("fasttuple-core", "fasttuple-bench")
\ No newline at end of file
+include("fasttuple-core", "fasttuple-bench", "fasttuple-vector", "fasttuple-processor")
\ No newline at end of file